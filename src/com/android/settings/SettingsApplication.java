@@ -24,6 +24,8 @@ import android.util.FeatureFlagUtils;
 
 import com.android.settings.activityembedding.ActivityEmbeddingRulesController;
 import com.android.settings.activityembedding.ActivityEmbeddingUtils;
+import com.android.settings.applications.AppIconLabelCache;
+import com.android.settings.applications.PackageQueryCache;
 import com.android.settings.core.instrumentation.ElapsedTimeUtils;
 import com.android.settings.homepage.SettingsHomepageActivity;
 import com.android.settings.spa.SettingsSpaEnvironment;
@@ -82,6 +84,8 @@ public class SettingsApplication extends Application {
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
         AppIconCacheManager.getInstance().trimMemory(level);
+        AppIconLabelCache.trimMemory(level);
+        PackageQueryCache.trimMemory(level);
     }
 
     private class DeviceProvisionedObserver extends ContentObserver {
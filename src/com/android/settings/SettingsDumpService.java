@@ -37,6 +37,8 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.core.executor.TaskStats;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
 import com.android.settings.network.MobileNetworkRepository;
@@ -68,6 +70,8 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_EXECUTORS = "executors";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -100,6 +104,7 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
                 dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+                dump.put(KEY_EXECUTORS, dumpExecutors());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
@@ -211,6 +216,24 @@ public class SettingsDumpService extends Service {
         return obj;
     }
 
+    @VisibleForTesting
+    JSONObject dumpExecutors() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (int pool : new int[] {SettingsExecutors.POOL_UI_CRITICAL,
+                SettingsExecutors.POOL_BACKGROUND, SettingsExecutors.POOL_IO}) {
+            final TaskStats stats = SettingsExecutors.getStats(pool);
+            final JSONObject poolObj = new JSONObject();
+            poolObj.put("tasks", stats.getTaskCount());
+            poolObj.put("avg_wait_ms", stats.getAverageWaitMs());
+            poolObj.put("max_wait_ms", stats.getMaxWaitMs());
+            poolObj.put("avg_run_ms", stats.getAverageRunMs());
+            poolObj.put("max_run_ms", stats.getMaxRunMs());
+            obj.put(SettingsExecutors.getPoolName(pool), poolObj);
+        }
+
+        return obj;
+    }
+
     private void dumpMobileNetworkSettings(IndentingPrintWriter writer) {
         MobileNetworkRepository.getInstance(this).dump(writer);
     }
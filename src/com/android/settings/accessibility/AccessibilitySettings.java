@@ -244,6 +244,11 @@ public class AccessibilitySettings extends DashboardFragment {
         return R.xml.accessibility_settings;
     }
 
+    @Override
+    protected boolean isLazyUpdateStateEnabled() {
+        return true;
+    }
+
     @Override
     protected String getLogTag() {
         return TAG;
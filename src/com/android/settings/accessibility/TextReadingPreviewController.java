@@ -109,6 +109,8 @@ class TextReadingPreviewController extends BasePreferenceController implements
                 origConfig.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
         final PreviewPagerAdapter pagerAdapter = new PreviewPagerAdapter(mContext, isLayoutRtl,
                 PREVIEW_SAMPLE_RES_IDS, createConfig(origConfig));
+        // Either slider moves the preview by one display size or one font size step.
+        pagerAdapter.setAdjacentLayerStrides(1, mDisplaySizeData.getValues().size());
         mPreviewPreference.setPreviewAdapter(pagerAdapter);
         mPreviewPreference.setCurrentItem(
                 isLayoutRtl ? PREVIEW_SAMPLE_RES_IDS.length - 1 : FRAME_INITIAL_INDEX);
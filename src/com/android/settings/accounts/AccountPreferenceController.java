@@ -43,7 +43,6 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
 import android.content.res.Resources;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -108,6 +107,8 @@ public class AccountPreferenceController extends AbstractPreferenceController
     private AccountRestrictionHelper mHelper;
     private MetricsFeatureProvider mMetricsFeatureProvider;
     private @ProfileSelectFragment.ProfileType int mType;
+    // Whether the UI was just built by displayPreference and doesn't need to be again on resume.
+    private boolean mUiUpToDate;
 
     /**
      * Holds data related to the accounts belonging to one profile.
@@ -184,6 +185,7 @@ public class AccountPreferenceController extends AbstractPreferenceController
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
         updateUi();
+        mUiUpToDate = true;
     }
 
     @Override
@@ -219,7 +221,10 @@ public class AccountPreferenceController extends AbstractPreferenceController
 
     @Override
     public void onResume() {
-        updateUi();
+        if (!mUiUpToDate) {
+            updateUi();
+        }
+        mUiUpToDate = false;
         mManagedProfileBroadcastReceiver.register(mContext);
         listenToAccountUpdates();
     }
@@ -563,16 +568,17 @@ public class AccountPreferenceController extends AbstractPreferenceController
             if (!accountTypeHasAnyRequestedAuthorities(helper, accountType)) {
                 continue;
             }
-            final CharSequence label = helper.getLabelForType(mContext, accountType);
-            if (label == null) {
+            final AccountTypeMetadataCache.Metadata metadata = AccountTypeMetadataCache
+                    .getInstance().get(mContext, helper, accountType, userHandle);
+            if (metadata == null) {
                 continue;
             }
+            final CharSequence label = metadata.getLabel();
             final String titleResPackageName = helper.getPackageForType(accountType);
             final int titleResId = helper.getLabelIdForType(accountType);
 
             final Account[] accounts = AccountManager.get(mContext)
                     .getAccountsByTypeAsUser(accountType, userHandle);
-            final Drawable icon = helper.getDrawableForType(mContext, accountType);
             final Context prefContext = mFragment.getPreferenceManager().getContext();
 
             // Add a preference row for each individual account
@@ -603,9 +609,9 @@ public class AccountPreferenceController extends AbstractPreferenceController
                 accountTypePreferences.add(new AccountTypePreference(
                         prefContext, mMetricsFeatureProvider.getMetricsCategory(mFragment),
                         account, titleResPackageName, titleResId, label,
-                        AccountDetailDashboardFragment.class.getName(), fragmentArguments, icon));
+                        AccountDetailDashboardFragment.class.getName(), fragmentArguments,
+                        metadata.getIcon()));
             }
-            helper.preloadDrawableForType(mContext, accountType);
         }
         // Sort by label
         Collections.sort(accountTypePreferences, new Comparator<AccountTypePreference>() {
@@ -30,17 +30,19 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
 import android.content.SyncAdapterType;
-import android.content.SyncInfo;
-import android.content.SyncStatusInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.content.pm.UserInfo;
 import android.os.Binder;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -52,6 +54,7 @@ import androidx.preference.Preference;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.widget.EntityHeaderController;
 import com.android.settingslib.widget.FooterPreference;
 
@@ -60,7 +63,6 @@ import com.google.android.collect.Lists;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 
 public class AccountSyncSettings extends AccountPreferenceBase {
 
@@ -69,10 +71,24 @@ public class AccountSyncSettings extends AccountPreferenceBase {
     private static final int MENU_SYNC_CANCEL_ID = Menu.FIRST + 1;
     private static final int CANT_DO_ONETIME_SYNC_DIALOG = 102;
     private static final String UID_REQUEST_KEY = "uid_request_code";
+    @VisibleForTesting
+    static final long SYNC_STATE_UPDATE_DELAY_MS = 300;
+    // Longest an update waits while a burst of them goes on.
+    @VisibleForTesting
+    static final long SYNC_STATE_UPDATE_MAX_DELAY_MS = 1000;
 
     private Account mAccount;
     private ArrayList<SyncAdapterType> mInvisibleAdapters = Lists.newArrayList();
     private HashMap<Integer, Integer> mUidRequestCodeMap = new HashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mLoadSyncState = this::loadSyncState;
+    // Last sync state read, and the state each switch shows by authority.
+    private SyncStateSnapshot mSyncState;
+    private final ArrayMap<String, SyncStateSnapshot.State> mAppliedStates = new ArrayMap<>();
+    private int mSyncStateGeneration;
+    // When the first update not shown yet came.
+    private long mSyncStateUpdatePendingSince;
+    private FooterPreference mFailingFooter;
 
     @Override
     public Dialog onCreateDialog(final int id) {
@@ -188,6 +204,10 @@ public class AccountSyncSettings extends AccountPreferenceBase {
     public void onPause() {
         super.onPause();
         mAuthenticatorHelper.stopListeningToAccountUpdates();
+        mHandler.removeCallbacks(mLoadSyncState);
+        // Drops the state being loaded, and reads it right away when resumed.
+        mSyncStateGeneration++;
+        mSyncState = null;
     }
 
     private void addSyncStateSwitch(Account account, String authority,
@@ -235,8 +255,8 @@ public class AccountSyncSettings extends AccountPreferenceBase {
     public void onPrepareOptionsMenu(Menu menu) {
         super.onPrepareOptionsMenu(menu);
         // Note that this also counts accounts that are not currently displayed
-        boolean syncActive = !ContentResolver.getCurrentSyncsAsUser(
-                mUserHandle.getIdentifier()).isEmpty();
+        boolean syncActive = mSyncState != null ? mSyncState.isSyncActive()
+                : !ContentResolver.getCurrentSyncsAsUser(mUserHandle.getIdentifier()).isEmpty();
         menu.findItem(MENU_SYNC_NOW_ID).setVisible(!syncActive).setEnabled(enabledSyncNowMenu());
         menu.findItem(MENU_SYNC_CANCEL_ID).setVisible(syncActive);
     }
@@ -404,35 +424,74 @@ public class AccountSyncSettings extends AccountPreferenceBase {
         }
     }
 
-    private boolean isSyncing(List<SyncInfo> currentSyncs, Account account, String authority) {
-        for (SyncInfo syncInfo : currentSyncs) {
-            if (syncInfo.account.equals(account) && syncInfo.authority.equals(authority)) {
-                return true;
-            }
+    @Override
+    protected void onSyncStateUpdated() {
+        if (!isSyncStateShown()) return;
+        if (mSyncState == null) {
+            updateSyncStateNow();
+            return;
         }
-        return false;
+        // Updates come in bursts during a sync: the state is shown once a burst is over, and at
+        // least every SYNC_STATE_UPDATE_MAX_DELAY_MS while it goes on.
+        final long now = SystemClock.uptimeMillis();
+        if (!mHandler.hasCallbacks(mLoadSyncState)) {
+            mSyncStateUpdatePendingSince = now;
+        }
+        mHandler.removeCallbacks(mLoadSyncState);
+        final long delay = Math.min(SYNC_STATE_UPDATE_DELAY_MS,
+                mSyncStateUpdatePendingSince + SYNC_STATE_UPDATE_MAX_DELAY_MS - now);
+        mHandler.postDelayed(mLoadSyncState, Math.max(0, delay));
     }
 
-    @Override
-    protected void onSyncStateUpdated() {
-        if (!isResumed()) return;
-        setFeedsState();
-        final Activity activity = getActivity();
-        if (activity != null) {
-            activity.invalidateOptionsMenu();
+    /**
+     * Shows the known sync state right away, e.g. on switches that were just added, and reads the
+     * current one without waiting for a burst of updates to be over.
+     */
+    @VisibleForTesting
+    void updateSyncStateNow() {
+        if (!isSyncStateShown()) return;
+        if (mSyncState != null) {
+            setFeedsState(mSyncState);
         }
+        mHandler.removeCallbacks(mLoadSyncState);
+        loadSyncState();
     }
 
-    private void setFeedsState() {
-        // iterate over all the preferences, setting the state properly for each
-        Date date = new Date();
+    @VisibleForTesting
+    boolean isSyncStateShown() {
+        return isResumed();
+    }
+
+    @VisibleForTesting
+    void loadSyncState() {
+        final int generation = ++mSyncStateGeneration;
+        final Account account = mAccount;
         final int userId = mUserHandle.getIdentifier();
-        List<SyncInfo> currentSyncs = ContentResolver.getCurrentSyncsAsUser(userId);
-        boolean syncIsFailing = false;
+        SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND,
+                "AccountSyncSettings#loadSyncState", () -> {
+                    final SyncStateSnapshot snapshot = SyncStateSnapshot.load(account, userId);
+                    SettingsExecutors.postOnMainThread(() -> {
+                        // Dropped once paused, or if a newer state is on its way.
+                        if (generation == mSyncStateGeneration && isSyncStateShown()) {
+                            setFeedsState(snapshot);
+                        }
+                    });
+                });
+    }
 
-        // Refresh the sync status switches - some syncs may have become active.
-        updateAccountSwitches();
+    @VisibleForTesting
+    void setFeedsState(SyncStateSnapshot snapshot) {
+        final SyncStateSnapshot previous = mSyncState;
+        mSyncState = snapshot;
+        if (previous != null && !previous.getAuthorities().equals(snapshot.getAuthorities())) {
+            // Refresh the sync status switches - some syncs may have become active.
+            updateAccountSwitches();
+        }
 
+        // iterate over all the preferences, only updating those whose state changed
+        Date date = new Date();
+        boolean syncIsFailing = false;
+        boolean changed = previous == null || previous.isSyncActive() != snapshot.isSyncActive();
         for (int i = 0, count = getPreferenceScreen().getPreferenceCount(); i < count; i++) {
             Preference pref = getPreferenceScreen().getPreference(i);
             if (!(pref instanceof SyncStateSwitchPreference)) {
@@ -442,55 +501,52 @@ public class AccountSyncSettings extends AccountPreferenceBase {
 
             String authority = syncPref.getAuthority();
             Account account = syncPref.getAccount();
-
-            SyncStatusInfo status = ContentResolver.getSyncStatusAsUser(account, authority, userId);
-            boolean syncEnabled = ContentResolver.getSyncAutomaticallyAsUser(account, authority,
-                    userId);
-            boolean authorityIsPending = status == null ? false : status.pending;
-            boolean initialSync = status == null ? false : status.initialize;
-
-            boolean activelySyncing = isSyncing(currentSyncs, account, authority);
-            boolean lastSyncFailed = status != null
-                    && status.lastFailureTime != 0
-                    && status.getLastFailureMesgAsInt(0)
-                    != ContentResolver.SYNC_ERROR_SYNC_ALREADY_IN_PROGRESS;
-            if (!syncEnabled) lastSyncFailed = false;
-            if (lastSyncFailed && !activelySyncing && !authorityIsPending) {
+            final SyncStateSnapshot.State state = snapshot.getState(account, authority);
+            if (state == null) {
+                continue;
+            }
+            if (state.isFailing()) {
                 syncIsFailing = true;
             }
+            if (state.equals(mAppliedStates.get(authority))) {
+                continue;
+            }
+            mAppliedStates.put(authority, state);
+            changed = true;
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Update sync status: " + account + " " + authority +
-                        " active = " + activelySyncing + " pend =" + authorityIsPending);
+                        " active = " + state.mActivelySyncing + " pend =" + state.mPending);
             }
 
-            final long successEndTime = (status == null) ? 0 : status.lastSuccessTime;
-            if (!syncEnabled) {
+            if (!state.mSyncEnabled) {
                 syncPref.setSummary(R.string.sync_disabled);
-            } else if (activelySyncing) {
+            } else if (state.mActivelySyncing) {
                 syncPref.setSummary(R.string.sync_in_progress);
-            } else if (successEndTime != 0) {
-                date.setTime(successEndTime);
+            } else if (state.mLastSuccessTime != 0) {
+                date.setTime(state.mLastSuccessTime);
                 final String timeString = formatSyncDate(getContext(), date);
                 syncPref.setSummary(getResources().getString(R.string.last_synced, timeString));
             } else {
                 syncPref.setSummary("");
             }
-            int syncState = ContentResolver.getIsSyncableAsUser(account, authority, userId);
 
-            syncPref.setActive(activelySyncing && (syncState >= 0) &&
-                    !initialSync);
-            syncPref.setPending(authorityIsPending && (syncState >= 0) &&
-                    !initialSync);
+            syncPref.setActive(state.mActivelySyncing && (state.mSyncable >= 0) &&
+                    !state.mInitialSync);
+            syncPref.setPending(state.mPending && (state.mSyncable >= 0) &&
+                    !state.mInitialSync);
 
-            syncPref.setFailed(lastSyncFailed);
-            final boolean oneTimeSyncMode = !ContentResolver.getMasterSyncAutomaticallyAsUser(
-                    userId);
-            syncPref.setOneTimeSyncMode(oneTimeSyncMode);
-            syncPref.setChecked(oneTimeSyncMode || syncEnabled);
+            syncPref.setFailed(state.mLastSyncFailed);
+            syncPref.setOneTimeSyncMode(state.mOneTimeSyncMode);
+            syncPref.setChecked(state.mOneTimeSyncMode || state.mSyncEnabled);
+        }
+        if (syncIsFailing && (mFailingFooter == null || mFailingFooter.getParent() == null)) {
+            mFailingFooter = new FooterPreference.Builder(
+                    getActivity()).setTitle(R.string.sync_is_failing).build();
+            getPreferenceScreen().addPreference(mFailingFooter);
         }
-        if (syncIsFailing) {
-            getPreferenceScreen().addPreference(new FooterPreference.Builder(
-                    getActivity()).setTitle(R.string.sync_is_failing).build());
+        final Activity activity = getActivity();
+        if (changed && activity != null) {
+            activity.invalidateOptionsMenu();
         }
     }
 
@@ -503,7 +559,7 @@ public class AccountSyncSettings extends AccountPreferenceBase {
             return;
         }
         updateAccountSwitches();
-        onSyncStateUpdated();
+        updateSyncStateNow();
     }
 
     private boolean accountExists(Account account) {
@@ -522,6 +578,8 @@ public class AccountSyncSettings extends AccountPreferenceBase {
 
     private void updateAccountSwitches() {
         mInvisibleAdapters.clear();
+        // Switches may be new or set up again.
+        mAppliedStates.clear();
 
         SyncAdapterType[] syncAdapters = ContentResolver.getSyncAdapterTypesAsUser(
                 mUserHandle.getIdentifier());
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.accounts.AuthenticatorHelper;
+
+import java.util.Map;
+
+/**
+ * Labels and icons of account types, resolved once per version of the authenticator package that
+ * provides them and shared by the account pages of every profile.
+ *
+ * <p>{@link AuthenticatorHelper} keeps them only as long as it lives, and the account pages create
+ * a new helper whenever they are resumed.
+ */
+class AccountTypeMetadataCache {
+
+    private static AccountTypeMetadataCache sInstance;
+
+    // Metadata by user id and account type.
+    private final Map<String, Metadata> mCache = new ArrayMap<>();
+
+    static synchronized AccountTypeMetadataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new AccountTypeMetadataCache();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void resetForTesting() {
+        sInstance = null;
+    }
+
+    /**
+     * Returns the label and icon of {@code accountType} for the given user, or null if the type
+     * has no label.
+     */
+    @Nullable
+    synchronized Metadata get(@NonNull Context context, @NonNull AuthenticatorHelper helper,
+            @NonNull String accountType, @NonNull UserHandle user) {
+        final String key = user.getIdentifier() + "/" + accountType;
+        final String version = getVersion(context, helper, accountType, user);
+        final Metadata cached = mCache.get(key);
+        if (cached != null && version != null && version.equals(cached.mVersion)) {
+            return cached;
+        }
+        final CharSequence label = helper.getLabelForType(context, accountType);
+        if (label == null) {
+            mCache.remove(key);
+            return null;
+        }
+        final Metadata metadata = new Metadata(label,
+                helper.getDrawableForType(context, accountType), version);
+        if (version != null) {
+            mCache.put(key, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Identifies what the label and icon are read from: the authenticator, the version of its
+     * package and the locales. Null if it can't be told, in which case nothing is cached.
+     */
+    @Nullable
+    private static String getVersion(Context context, AuthenticatorHelper helper,
+            String accountType, UserHandle user) {
+        final String packageName = helper.getPackageForType(accountType);
+        if (TextUtils.isEmpty(packageName)) {
+            return null;
+        }
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = context.getPackageManager().getPackageInfoAsUser(packageName,
+                    /* flags */ 0, user.getIdentifier());
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        return packageName + ":" + helper.getLabelIdForType(accountType) + ":"
+                + packageInfo.getLongVersionCode() + ":" + packageInfo.lastUpdateTime + ":"
+                + context.getResources().getConfiguration().getLocales().toLanguageTags();
+    }
+
+    /** The label and icon of an account type. */
+    static final class Metadata {
+        private final CharSequence mLabel;
+        @Nullable
+        private final Drawable mIcon;
+        private final String mVersion;
+
+        private Metadata(CharSequence label, @Nullable Drawable icon, String version) {
+            mLabel = label;
+            mIcon = icon;
+            mVersion = version;
+        }
+
+        @NonNull
+        CharSequence getLabel() {
+            return mLabel;
+        }
+
+        /** Returns a new drawable of the icon, so that preferences don't share its state. */
+        @Nullable
+        Drawable getIcon() {
+            if (mIcon == null) {
+                return null;
+            }
+            final Drawable.ConstantState state = mIcon.getConstantState();
+            return state != null ? state.newDrawable() : mIcon;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import android.accounts.Account;
+import android.content.ContentResolver;
+import android.content.SyncAdapterType;
+import android.content.SyncInfo;
+import android.content.SyncStatusInfo;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The sync state of the user visible authorities of an account, read in one pass so that
+ * {@link AccountSyncSettings} can read it off the main thread and only update the switches whose
+ * state changed.
+ */
+class SyncStateSnapshot {
+
+    private final Map<Pair<Account, String>, State> mStates = new ArrayMap<>();
+    private final Set<String> mAuthorities = new ArraySet<>();
+    private boolean mSyncActive;
+
+    private SyncStateSnapshot() {
+    }
+
+    /**
+     * Reads the sync state of the authorities of {@code account} that have a switch, i.e. the
+     * user visible ones that are syncable.
+     */
+    @NonNull
+    @WorkerThread
+    static SyncStateSnapshot load(@NonNull Account account, int userId) {
+        final SyncStateSnapshot snapshot = new SyncStateSnapshot();
+        final List<SyncInfo> currentSyncs = ContentResolver.getCurrentSyncsAsUser(userId);
+        // Note that this also counts accounts that are not currently displayed.
+        snapshot.mSyncActive = !currentSyncs.isEmpty();
+        final Set<Pair<Account, String>> syncing = new ArraySet<>(currentSyncs.size());
+        for (SyncInfo syncInfo : currentSyncs) {
+            syncing.add(Pair.create(syncInfo.account, syncInfo.authority));
+        }
+        final boolean oneTimeSyncMode = !ContentResolver.getMasterSyncAutomaticallyAsUser(userId);
+        for (SyncAdapterType syncAdapter : ContentResolver.getSyncAdapterTypesAsUser(userId)) {
+            if (!syncAdapter.accountType.equals(account.type) || !syncAdapter.isUserVisible()) {
+                continue;
+            }
+            final String authority = syncAdapter.authority;
+            final int syncable = ContentResolver.getIsSyncableAsUser(account, authority, userId);
+            if (syncable <= 0) {
+                continue;
+            }
+            snapshot.mAuthorities.add(authority);
+            final Pair<Account, String> key = Pair.create(account, authority);
+            snapshot.mStates.put(key, new State(
+                    ContentResolver.getSyncStatusAsUser(account, authority, userId),
+                    ContentResolver.getSyncAutomaticallyAsUser(account, authority, userId),
+                    syncing.contains(key), syncable, oneTimeSyncMode));
+        }
+        return snapshot;
+    }
+
+    /** Returns the state of the given authority, or null if it has no switch. */
+    @Nullable
+    State getState(@NonNull Account account, @NonNull String authority) {
+        return mStates.get(Pair.create(account, authority));
+    }
+
+    /** Returns the authorities that have a switch. */
+    @NonNull
+    Set<String> getAuthorities() {
+        return mAuthorities;
+    }
+
+    /** Whether any sync of the user is running. */
+    boolean isSyncActive() {
+        return mSyncActive;
+    }
+
+    /** The state shown by the switch of an authority. */
+    static final class State {
+        final boolean mSyncEnabled;
+        final boolean mActivelySyncing;
+        final boolean mPending;
+        final boolean mInitialSync;
+        final boolean mLastSyncFailed;
+        final long mLastSuccessTime;
+        final int mSyncable;
+        final boolean mOneTimeSyncMode;
+
+        State(@Nullable SyncStatusInfo status, boolean syncEnabled, boolean activelySyncing,
+                int syncable, boolean oneTimeSyncMode) {
+            mSyncEnabled = syncEnabled;
+            mActivelySyncing = activelySyncing;
+            mPending = status != null && status.pending;
+            mInitialSync = status != null && status.initialize;
+            mLastSyncFailed = syncEnabled
+                    && status != null
+                    && status.lastFailureTime != 0
+                    && status.getLastFailureMesgAsInt(0)
+                    != ContentResolver.SYNC_ERROR_SYNC_ALREADY_IN_PROGRESS;
+            mLastSuccessTime = status == null ? 0 : status.lastSuccessTime;
+            mSyncable = syncable;
+            mOneTimeSyncMode = oneTimeSyncMode;
+        }
+
+        /** Whether the last sync failed and no other one is on its way. */
+        boolean isFailing() {
+            return mLastSyncFailed && !mActivelySyncing && !mPending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof State)) {
+                return false;
+            }
+            final State other = (State) o;
+            return mSyncEnabled == other.mSyncEnabled
+                    && mActivelySyncing == other.mActivelySyncing
+                    && mPending == other.mPending
+                    && mInitialSync == other.mInitialSync
+                    && mLastSyncFailed == other.mLastSyncFailed
+                    && mLastSuccessTime == other.mLastSuccessTime
+                    && mSyncable == other.mSyncable
+                    && mOneTimeSyncMode == other.mOneTimeSyncMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mSyncEnabled, mActivelySyncing, mPending, mInitialSync,
+                    mLastSyncFailed, mLastSuccessTime, mSyncable, mOneTimeSyncMode);
+        }
+    }
+}
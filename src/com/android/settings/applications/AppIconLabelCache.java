@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.IconDrawableFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.executor.SettingsExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the badged icons and labels of apps, shared by the list screens of
+ * Settings so that moving between them doesn't load and badge the same drawables again.
+ *
+ * <p>Entries are keyed by package and user, and carry the version code of the app they were
+ * loaded from, so an updated app is never served from the cache. Loads still running when entries
+ * are dropped, e.g. after a component or icon change, don't cache what they read. Concurrent
+ * requests for the same app share a single load. The cache is bounded in bytes by a share of the
+ * memory class of the device, and gives memory back on {@link #trimMemory(int)}.
+ */
+public class AppIconLabelCache {
+
+    private static final String TAG = "AppIconLabelCache";
+    // Share of the heap of the process the cache may use, and its lower bound.
+    private static final int MEMORY_CLASS_DIVIDER = 32;
+    private static final int MIN_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static AppIconLabelCache sInstance;
+
+    private final Context mContext;
+    private final PackageManager mPackageManager;
+    private final IconDrawableFactory mIconDrawableFactory;
+    private final LruCache<String, Entry> mCache;
+    private final ConcurrentHashMap<String, FutureTask<Entry>> mLoading =
+            new ConcurrentHashMap<>();
+    // Callbacks of the asynchronous loads in flight, only used from the main thread.
+    private final Map<String, List<Callback>> mCallbacks = new ArrayMap<>();
+    // Bumped every time entries are dropped, so that loads started before don't cache theirs.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mDeduped = new AtomicLong();
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final int uid = intent.getIntExtra(Intent.EXTRA_UID, -1);
+            if (data != null && uid != -1) {
+                invalidate(data.getSchemeSpecificPart(), UserHandle.getUserId(uid));
+            }
+        }
+    };
+
+    private final BroadcastReceiver mLocaleReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Every label is now in the wrong language.
+            mGeneration.incrementAndGet();
+            mCache.evictAll();
+        }
+    };
+
+    /** Returns the shared instance, creating it on first use. */
+    public static synchronized AppIconLabelCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new AppIconLabelCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Releases memory according to {@code level}, as reported by
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. Does nothing if the cache was never used.
+     */
+    public static void trimMemory(int level) {
+        final AppIconLabelCache cache;
+        synchronized (AppIconLabelCache.class) {
+            cache = sInstance;
+        }
+        if (cache != null) {
+            cache.onTrimMemory(level);
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized void resetForTesting() {
+        sInstance = null;
+    }
+
+    private AppIconLabelCache(Context context) {
+        mContext = context;
+        mPackageManager = context.getPackageManager();
+        mIconDrawableFactory = IconDrawableFactory.newInstance(context);
+        final ActivityManager activityManager = context.getSystemService(ActivityManager.class);
+        final int memoryClassBytes = activityManager != null
+                ? activityManager.getMemoryClass() * 1024 * 1024 : 0;
+        mCache = new LruCache<String, Entry>(
+                Math.max(MIN_SIZE_BYTES, memoryClassBytes / MEMORY_CLASS_DIVIDER)) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.mSizeBytes;
+            }
+        };
+        final IntentFilter packageFilter = new IntentFilter(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, packageFilter, null,
+                null, Context.RECEIVER_EXPORTED_UNAUDITED);
+        context.registerReceiver(mLocaleReceiver,
+                new IntentFilter(Intent.ACTION_LOCALE_CHANGED), Context.RECEIVER_EXPORTED);
+    }
+
+    /**
+     * Returns the icon and label of the given app, loading them if they are not cached yet. If
+     * another thread is already loading them, waits for that load instead of starting another.
+     *
+     * <p>Loading may take a while, so prefer {@link #load} on the main thread.
+     */
+    @NonNull
+    public Entry getEntry(@NonNull ApplicationInfo info, int userId) {
+        final Entry cached = getCachedEntry(info, userId);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            return cached;
+        }
+        final String key = getKey(info.packageName, userId);
+        final FutureTask<Entry> task = new FutureTask<>(() -> loadEntry(info, userId));
+        final FutureTask<Entry> running = mLoading.putIfAbsent(key, task);
+        if (running != null) {
+            mDeduped.incrementAndGet();
+            return waitFor(running, info, userId);
+        }
+        mMisses.incrementAndGet();
+        try {
+            task.run();
+            return waitFor(task, info, userId);
+        } finally {
+            mLoading.remove(key, task);
+        }
+    }
+
+    /**
+     * Loads the icon and label of the given app on a background thread, and passes them to
+     * {@code callback} on the main thread. Requests for an app that is already being loaded are
+     * coalesced with that load. Cached entries are passed right away.
+     */
+    @MainThread
+    public void load(@NonNull ApplicationInfo info, int userId, @NonNull Callback callback) {
+        final Entry cached = getCachedEntry(info, userId);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            callback.onLoaded(cached);
+            return;
+        }
+        final String key = getKey(info.packageName, userId);
+        List<Callback> callbacks = mCallbacks.get(key);
+        if (callbacks != null) {
+            mDeduped.incrementAndGet();
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        mCallbacks.put(key, callbacks);
+        SettingsExecutors.execute(SettingsExecutors.POOL_UI_CRITICAL, "AppIconLabelCache#load",
+                () -> {
+                    // Counted there, as a miss, a deduplicated load or a late hit.
+                    final Entry entry = getEntry(info, userId);
+                    SettingsExecutors.postOnMainThread(() -> {
+                        final List<Callback> pending = mCallbacks.remove(key);
+                        if (pending != null) {
+                            for (Callback pendingCallback : pending) {
+                                pendingCallback.onLoaded(entry);
+                            }
+                        }
+                    });
+                });
+    }
+
+    /**
+     * Returns the cached icon and label of the given app, or {@code null} if they have not been
+     * loaded yet or were loaded from another version of the app.
+     */
+    @Nullable
+    public Entry getCachedEntry(@NonNull ApplicationInfo info, int userId) {
+        final Entry entry = mCache.get(getKey(info.packageName, userId));
+        if (entry == null || entry.mVersionCode != info.longVersionCode) {
+            return null;
+        }
+        return entry;
+    }
+
+    /** Drops the cached icon and label of the given app, e.g. after its components changed. */
+    public void invalidate(@NonNull String packageName, int userId) {
+        mGeneration.incrementAndGet();
+        mCache.remove(getKey(packageName, userId));
+    }
+
+    /** Returns the number of requests served from the cache. */
+    @VisibleForTesting
+    long getHitCount() {
+        return mHits.get();
+    }
+
+    /** Returns the number of requests that had to load an app. */
+    @VisibleForTesting
+    long getMissCount() {
+        return mMisses.get();
+    }
+
+    /** Returns the number of requests that joined the load of another request. */
+    @VisibleForTesting
+    long getDedupedCount() {
+        return mDeduped.get();
+    }
+
+    /**
+     * Returns the share of the requests that didn't load anything themselves, as logged when
+     * memory is trimmed.
+     */
+    @VisibleForTesting
+    float getHitRate() {
+        final long saved = mHits.get() + mDeduped.get();
+        final long total = saved + mMisses.get();
+        return total == 0 ? 0f : (float) saved / total;
+    }
+
+    @VisibleForTesting
+    void onTrimMemory(int level) {
+        Log.d(TAG, "Trimming at level " + level + ", " + mCache.size() + " bytes, hit rate "
+                + getHitRate());
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // Keeps the most recently used half, e.g. the apps of the screen left last.
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @VisibleForTesting
+    int getSizeBytes() {
+        return mCache.size();
+    }
+
+    private Entry loadEntry(ApplicationInfo info, int userId) {
+        final int generation = mGeneration.get();
+        final CharSequence label = info.loadLabel(mPackageManager);
+        final Drawable icon = mIconDrawableFactory.getBadgedIcon(info, userId);
+        final Entry entry = new Entry(label, icon, info.longVersionCode);
+        synchronized (mCache) {
+            // Bumped before the entries are dropped, so once a load read the current generation
+            // here, any later drop also removes what it caches.
+            if (mGeneration.get() == generation) {
+                mCache.put(getKey(info.packageName, userId), entry);
+            }
+        }
+        return entry;
+    }
+
+    private Entry waitFor(FutureTask<Entry> task, ApplicationInfo info, int userId) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Can't load " + info.packageName + " for user " + userId, e.getCause());
+        }
+        // The caller gets what it would have got without the cache.
+        return new Entry(info.packageName, mPackageManager.getDefaultActivityIcon(),
+                info.longVersionCode);
+    }
+
+    private static String getKey(String packageName, int userId) {
+        return packageName + "/" + userId;
+    }
+
+    /** Receives the icon and label of an app loaded by {@link #load}. */
+    public interface Callback {
+        /** Called on the main thread once the icon and label are available. */
+        void onLoaded(@NonNull Entry entry);
+    }
+
+    /** The icon and label of an app. */
+    public static final class Entry {
+        private final CharSequence mLabel;
+        private final Drawable mIcon;
+        private final long mVersionCode;
+        private final int mSizeBytes;
+
+        @VisibleForTesting
+        Entry(CharSequence label, Drawable icon, long versionCode) {
+            mLabel = label;
+            mIcon = icon;
+            mVersionCode = versionCode;
+            mSizeBytes = getSizeBytes(icon) + label.length() * 2;
+        }
+
+        @NonNull
+        public CharSequence getLabel() {
+            return mLabel;
+        }
+
+        /**
+         * Returns a new drawable of the icon, so that views showing the same app don't share
+         * bounds or state.
+         */
+        @NonNull
+        public Drawable getIcon() {
+            final Drawable.ConstantState state = mIcon.getConstantState();
+            return state != null ? state.newDrawable() : mIcon;
+        }
+
+        private static int getSizeBytes(Drawable icon) {
+            if (icon instanceof BitmapDrawable && ((BitmapDrawable) icon).getBitmap() != null) {
+                return ((BitmapDrawable) icon).getBitmap().getAllocationByteCount();
+            }
+            // Other drawables are drawn into a bitmap of their intrinsic size at most.
+            return Math.max(1, icon.getIntrinsicWidth()) * Math.max(1, icon.getIntrinsicHeight())
+                    * 4;
+        }
+    }
+}
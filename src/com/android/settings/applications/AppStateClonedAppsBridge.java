@@ -24,13 +24,15 @@ import static com.android.settingslib.applications.ApplicationsState.AppFilter;
 import android.content.Context;
 import android.util.Log;
 
-import com.android.settings.custom.utils.AppUtils;
 import com.android.settings.Utils;
+import com.android.settings.applications.manageapplications.CloneBackend;
 import com.android.settingslib.applications.ApplicationsState;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Filter to display only allowlisted apps on Cloned Apps page.
@@ -40,30 +42,31 @@ public class AppStateClonedAppsBridge extends AppStateBaseBridge{
     private static final String TAG = "ClonedAppsBridge";
 
     private final Context mContext;
-    private final List<String> mAllowedApps;
-    private List<String> mCloneProfileApps = new ArrayList<>();
+    private Set<String> mAllowedApps = Collections.emptySet();
+    private Set<String> mCloneProfileApps = new HashSet<>();
     private int mCloneUserId;
-    private AppUtils appUtils = new AppUtils();
 
     public AppStateClonedAppsBridge(Context context, ApplicationsState appState,
             Callback callback) {
         super(appState, callback);
         mContext = context;
-        mAllowedApps = appUtils.getCloneableAppListStr(mContext);
     }
 
     @Override
     protected void loadAllExtraInfo() {
+        // Only the packages changed since the last load are checked again.
+        mAllowedApps = CloneBackend.getInstance(mContext).getCloneableApps();
         mCloneUserId = Utils.getCloneUserId(mContext);
         if (mCloneUserId != -1) {
             mCloneProfileApps = mContext.getPackageManager()
                     .getInstalledPackagesAsUser(GET_ACTIVITIES,
-                            mCloneUserId).stream().map(x -> x.packageName).toList();
+                            mCloneUserId).stream().map(x -> x.packageName)
+                    .collect(Collectors.toSet());
         } else if (!mCloneProfileApps.isEmpty()) {
             // In case we remove clone profile (mCloneUserId becomes -1), the bridge state should
             // reflect the same by setting cloneProfileApps as empty, without building the entire
             // page.
-            mCloneProfileApps = new ArrayList<>();
+            mCloneProfileApps = new HashSet<>();
         }
 
         final List<ApplicationsState.AppEntry> allApps = mAppSession.getAllApps();
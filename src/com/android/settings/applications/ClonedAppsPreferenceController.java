@@ -21,7 +21,6 @@ import static com.android.settings.Utils.PROPERTY_CLONED_APPS_ENABLED;
 import android.content.Context;
 import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.UserHandle;
 import android.provider.DeviceConfig;
 
 import androidx.lifecycle.Lifecycle;
@@ -30,14 +29,13 @@ import androidx.lifecycle.OnLifecycleEvent;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
-import com.android.settings.custom.utils.AppUtils;
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.applications.manageapplications.CloneBackend;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.Set;
 
 /**
  * A preference controller handling the logic for updating the summary of cloned apps.
@@ -46,7 +44,6 @@ public class ClonedAppsPreferenceController extends BasePreferenceController
         implements LifecycleObserver {
     private Preference mPreference;
     private Context mContext;
-    private AppUtils appUtils = new AppUtils();
 
     public ClonedAppsPreferenceController(Context context, String preferenceKey) {
         super(context, preferenceKey);
@@ -82,26 +79,19 @@ public class ClonedAppsPreferenceController extends BasePreferenceController
 
             @Override
             protected Integer[] doInBackground(Void... unused) {
-                // Get list of allowlisted cloneable apps.
-                List<String> cloneableApps = appUtils.getCloneableAppListStr(mContext);
-                List<String> primaryUserApps = mContext.getPackageManager()
-                        .getInstalledPackagesAsUser(/* flags*/ 0, UserHandle.myUserId()).stream()
-                        .map(x -> x.packageName).toList();
-                // Count number of installed apps in system user.
-                int availableAppsCount = (int) cloneableApps.stream()
-                        .filter(x -> primaryUserApps.contains(x)).count();
+                // Cloneable apps are installed in the system user.
+                final Set<String> cloneableApps =
+                        CloneBackend.getInstance(mContext).getCloneableApps();
+                int availableAppsCount = cloneableApps.size();
 
                 int cloneUserId = Utils.getCloneUserId(mContext);
                 if (cloneUserId == -1) {
                     return new Integer[]{0, availableAppsCount};
                 }
-                // Get all apps in clone profile if present.
-                List<String> cloneProfileApps = mContext.getPackageManager()
-                        .getInstalledPackagesAsUser(/* flags*/ 0, cloneUserId).stream()
-                        .map(x -> x.packageName).toList();
                 // Count number of allowlisted app present in clone profile.
-                int clonedAppsCount = (int) cloneableApps.stream()
-                        .filter(x -> cloneProfileApps.contains(x)).count();
+                int clonedAppsCount = (int) mContext.getPackageManager()
+                        .getInstalledPackagesAsUser(/* flags*/ 0, cloneUserId).stream()
+                        .filter(x -> cloneableApps.contains(x.packageName)).count();
 
                 return new Integer[]{clonedAppsCount, availableAppsCount - clonedAppsCount};
             }
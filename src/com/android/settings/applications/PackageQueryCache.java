@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.UserHandle;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of {@link PackageManager} queries that Settings makes again and again with
+ * the same arguments, each of which is a binder call returning a large parcel.
+ *
+ * <p>Results are keyed by query, flags and user. A package change only drops the results that
+ * it can affect: those that contain the package or target it, and, when it adds or changes
+ * components, the intent queries that are not restricted to another package. The cache is bounded
+ * by the parcelled size of the results, and the objects it returns are shared, so they must not be
+ * modified. A query that is still running when its results get dropped doesn't cache what it
+ * read, since that may predate the change.
+ */
+public class PackageQueryCache {
+
+    private static final String TAG = "PackageQueryCache";
+    @VisibleForTesting
+    static final int DEFAULT_MAX_SIZE_BYTES = 1024 * 1024;
+
+    private static PackageQueryCache sInstance;
+
+    private final LruCache<Key, Entry> mCache = new LruCache<Key, Entry>(DEFAULT_MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Entry entry) {
+            return entry.mSizeBytes;
+        }
+    };
+    // Bumped every time results are dropped, so that queries started before don't cache theirs.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final int uid = intent.getIntExtra(Intent.EXTRA_UID, -1);
+            if (data != null && uid != -1) {
+                invalidate(data.getSchemeSpecificPart(), UserHandle.getUserId(uid),
+                        !Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction()));
+            }
+        }
+    };
+
+    private final BroadcastReceiver mUserReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Components that are not direct boot aware now match.
+            mGeneration.incrementAndGet();
+            mCache.evictAll();
+        }
+    };
+
+    /** Returns the shared instance, creating it on first use. */
+    public static synchronized PackageQueryCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new PackageQueryCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Releases memory according to {@code level}, as reported by
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. Does nothing if the cache was never used.
+     */
+    public static void trimMemory(int level) {
+        final PackageQueryCache cache;
+        synchronized (PackageQueryCache.class) {
+            cache = sInstance;
+        }
+        if (cache != null) {
+            cache.onTrimMemory(level);
+        }
+    }
+
+    @VisibleForTesting
+    public static synchronized void resetForTesting() {
+        sInstance = null;
+    }
+
+    private PackageQueryCache(Context context) {
+        final IntentFilter packageFilter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, packageFilter, null,
+                null, Context.RECEIVER_EXPORTED_UNAUDITED);
+        context.registerReceiverAsUser(mUserReceiver, UserHandle.ALL,
+                new IntentFilter(Intent.ACTION_USER_UNLOCKED), null, null,
+                Context.RECEIVER_EXPORTED_UNAUDITED);
+    }
+
+    /**
+     * Returns {@link PackageManager#queryIntentActivitiesAsUser(Intent, int, int)}, from the cache
+     * if possible.
+     */
+    @NonNull
+    public List<ResolveInfo> queryIntentActivitiesAsUser(@NonNull PackageManager packageManager,
+            @NonNull Intent intent, int flags, int userId) {
+        final Key key = new Key(new Intent.FilterComparison(intent), null, flags, userId);
+        final Entry cached = mCache.get(key);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            return new ArrayList<>(cached.mResolveInfos);
+        }
+        mMisses.incrementAndGet();
+        final int generation = mGeneration.get();
+        final List<ResolveInfo> resolveInfos =
+                packageManager.queryIntentActivitiesAsUser(intent, flags, userId);
+        if (resolveInfos == null) {
+            return Collections.emptyList();
+        }
+        final Set<String> packages = new ArraySet<>();
+        for (ResolveInfo resolveInfo : resolveInfos) {
+            if (resolveInfo.activityInfo != null) {
+                packages.add(resolveInfo.activityInfo.packageName);
+            }
+        }
+        putIfCurrent(generation, key, new Entry(new ArrayList<>(resolveInfos), null, packages,
+                getParcelledSize(resolveInfos)));
+        return resolveInfos;
+    }
+
+    /**
+     * Returns {@link PackageManager#getApplicationInfoAsUser(String, int, int)}, from the cache if
+     * possible.
+     */
+    @NonNull
+    public ApplicationInfo getApplicationInfoAsUser(@NonNull PackageManager packageManager,
+            @NonNull String packageName, int flags, int userId)
+            throws PackageManager.NameNotFoundException {
+        final Key key = new Key(null, packageName, flags, userId);
+        final Entry cached = mCache.get(key);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            return cached.mApplicationInfo;
+        }
+        mMisses.incrementAndGet();
+        final int generation = mGeneration.get();
+        final ApplicationInfo info =
+                packageManager.getApplicationInfoAsUser(packageName, flags, userId);
+        if (info != null) {
+            putIfCurrent(generation, key, new Entry(null, info, Collections.singleton(packageName),
+                    getParcelledSize(Collections.singletonList(info))));
+        }
+        return info;
+    }
+
+    /**
+     * Drops the results that a change of {@code packageName} for {@code userId} can affect.
+     *
+     * @param componentsAdded whether the package may now have components it didn't have, which
+     *                        can then match any query not restricted to another package.
+     */
+    public void invalidate(@NonNull String packageName, int userId, boolean componentsAdded) {
+        mGeneration.incrementAndGet();
+        for (Map.Entry<Key, Entry> cached : mCache.snapshot().entrySet()) {
+            final Key key = cached.getKey();
+            if (key.mUserId != userId) {
+                continue;
+            }
+            final String targetPackage = key.getTargetPackage();
+            if (cached.getValue().mPackages.contains(packageName)
+                    || packageName.equals(targetPackage)
+                    || (componentsAdded && key.mIntent != null && targetPackage == null)) {
+                mCache.remove(key);
+            }
+        }
+    }
+
+    /** Sets the maximum parcelled size of the cached results, evicting some if needed. */
+    public void setMaxSizeBytes(int maxSizeBytes) {
+        mCache.resize(maxSizeBytes);
+    }
+
+    /** Returns the number of queries served from the cache. */
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    /** Returns the number of queries that went to the package manager. */
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /** Returns the share of the queries served from the cache. */
+    public float getHitRate() {
+        final long hits = mHits.get();
+        final long total = hits + mMisses.get();
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    @VisibleForTesting
+    void onTrimMemory(int level) {
+        Log.d(TAG, "Trimming at level " + level + ", " + mCache.size() + " bytes, hit rate "
+                + getHitRate());
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mGeneration.incrementAndGet();
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @VisibleForTesting
+    int getSizeBytes() {
+        return mCache.size();
+    }
+
+    private void putIfCurrent(int generation, Key key, Entry entry) {
+        synchronized (mCache) {
+            // Bumped before the results are dropped, so once a query read the current generation
+            // here, any later drop also removes what it caches.
+            if (mGeneration.get() == generation) {
+                mCache.put(key, entry);
+            }
+        }
+    }
+
+    private static int getParcelledSize(List<? extends Parcelable> parcelables) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            for (Parcelable parcelable : parcelables) {
+                parcelable.writeToParcel(parcel, /* flags */ 0);
+            }
+            // Counts empty results too, so that the cache stays bounded.
+            return Math.max(1, parcel.dataSize());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static final class Key {
+        // Exactly one of the intent and the package name is set.
+        @Nullable
+        final Intent.FilterComparison mIntent;
+        @Nullable
+        final String mPackageName;
+        final int mFlags;
+        final int mUserId;
+
+        Key(@Nullable Intent.FilterComparison intent, @Nullable String packageName, int flags,
+                int userId) {
+            mIntent = intent;
+            mPackageName = packageName;
+            mFlags = flags;
+            mUserId = userId;
+        }
+
+        /** Returns the only package the query can return results of, if any. */
+        @Nullable
+        String getTargetPackage() {
+            if (mPackageName != null) {
+                return mPackageName;
+            }
+            final Intent intent = mIntent.getIntent();
+            if (intent.getComponent() != null) {
+                return intent.getComponent().getPackageName();
+            }
+            return intent.getPackage();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mFlags == other.mFlags
+                    && mUserId == other.mUserId
+                    && Objects.equals(mIntent, other.mIntent)
+                    && Objects.equals(mPackageName, other.mPackageName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mIntent, mPackageName, mFlags, mUserId);
+        }
+    }
+
+    private static final class Entry {
+        @Nullable
+        final List<ResolveInfo> mResolveInfos;
+        @Nullable
+        final ApplicationInfo mApplicationInfo;
+        // Packages of the results.
+        final Set<String> mPackages;
+        final int mSizeBytes;
+
+        Entry(@Nullable List<ResolveInfo> resolveInfos, @Nullable ApplicationInfo applicationInfo,
+                Set<String> packages, int sizeBytes) {
+            mResolveInfos = resolveInfos;
+            mApplicationInfo = applicationInfo;
+            mPackages = packages;
+            mSizeBytes = sizeBytes;
+        }
+    }
+}
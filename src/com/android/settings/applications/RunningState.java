@@ -72,6 +72,10 @@ public class RunningState {
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
+    // Longest interval between update passes once the running set has settled.
+    static final long CONTENTS_UPDATE_MAX_DELAY = 8000;
+    // Number of consecutive unchanged passes before the polling interval is doubled.
+    static final int UNCHANGED_PASSES_PER_BACKOFF = 3;
 
     static final int MAX_SERVICES = 100;
 
@@ -124,6 +128,19 @@ public class RunningState {
     // representing all items that would be put in mUserBackgroundItems for that user.
     final SparseArray<MergedItem> mOtherUserBackgroundItems = new SparseArray<MergedItem>();
 
+    // Label and icon of other users, resolved once and kept until the user
+    // information changes.
+    final SparseArray<UserState> mUserStates = new SparseArray<UserState>();
+
+    // Service info of every running service we have resolved, keyed by user and
+    // component.  Entries are dropped once the service stops running, so only
+    // services that are new since the previous pass cost a binder call.
+    final HashMap<ServiceKey, ServiceInfoEntry> mServiceInfoCache
+            = new HashMap<ServiceKey, ServiceInfoEntry>();
+
+    // Number of consecutive update passes that found nothing structural to change.
+    int mUnchangedPasses;
+
     static class AppProcessInfo {
         final ActivityManager.RunningAppProcessInfo info;
         boolean hasServices;
@@ -201,6 +218,13 @@ public class RunningState {
                 }
             };
 
+    // ----- following only touched by the background thread -----
+
+    ArrayList<BaseItem> mItems = new ArrayList<BaseItem>();
+    ArrayList<MergedItem> mMergedItems = new ArrayList<MergedItem>();
+    ArrayList<MergedItem> mBackgroundItems = new ArrayList<MergedItem>();
+    ArrayList<MergedItem> mUserBackgroundItems = new ArrayList<MergedItem>();
+
     // ----- following protected by mLock -----
 
     // Lock for protecting the state that will be shared between the
@@ -211,17 +235,9 @@ public class RunningState {
     boolean mHaveData;
     boolean mWatchingBackgroundItems;
 
-    ArrayList<BaseItem> mItems = new ArrayList<BaseItem>();
-    ArrayList<MergedItem> mMergedItems = new ArrayList<MergedItem>();
-    ArrayList<MergedItem> mBackgroundItems = new ArrayList<MergedItem>();
-    ArrayList<MergedItem> mUserBackgroundItems = new ArrayList<MergedItem>();
-
-    int mNumBackgroundProcesses;
-    long mBackgroundProcessMemory;
-    int mNumForegroundProcesses;
-    long mForegroundProcessMemory;
-    int mNumServiceProcesses;
-    long mServiceProcessMemory;
+    // Result of the last update pass.  Replaced as a whole by the background
+    // thread, so readers can use it without holding mLock.
+    volatile Snapshot mSnapshot = Snapshot.EMPTY;
 
     // ----- BACKGROUND MONITORING THREAD -----
 
@@ -244,12 +260,13 @@ public class RunningState {
                             return;
                         }
                     }
+                    final boolean changed = update(mApplicationContext, mAm);
                     Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
+                    cmd.arg1 = changed ? 1 : 0;
                     mHandler.sendMessage(cmd);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
-                    sendMessageDelayed(msg, CONTENTS_UPDATE_DELAY);
+                    sendMessageDelayed(msg, nextUpdateDelay(changed));
                     break;
             }
         }
@@ -335,6 +352,70 @@ public class RunningState {
         public void onRefreshUi(int what);
     }
 
+    /**
+     * Immutable result of an update pass.  The lists are never modified once
+     * published; a new snapshot is created whenever any of them changes.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new ArrayList<MergedItem>(),
+                new ArrayList<MergedItem>(), 0, 0, 0, 0, 0, 0);
+
+        final ArrayList<MergedItem> mMergedItems;
+        final ArrayList<MergedItem> mUserBackgroundItems;
+        final int mNumBackgroundProcesses;
+        final long mBackgroundProcessMemory;
+        final int mNumForegroundProcesses;
+        final long mForegroundProcessMemory;
+        final int mNumServiceProcesses;
+        final long mServiceProcessMemory;
+
+        Snapshot(ArrayList<MergedItem> mergedItems, ArrayList<MergedItem> userBackgroundItems,
+                int numBackgroundProcesses, long backgroundProcessMemory,
+                int numForegroundProcesses, long foregroundProcessMemory,
+                int numServiceProcesses, long serviceProcessMemory) {
+            mMergedItems = mergedItems;
+            mUserBackgroundItems = userBackgroundItems;
+            mNumBackgroundProcesses = numBackgroundProcesses;
+            mBackgroundProcessMemory = backgroundProcessMemory;
+            mNumForegroundProcesses = numForegroundProcesses;
+            mForegroundProcessMemory = foregroundProcessMemory;
+            mNumServiceProcesses = numServiceProcesses;
+            mServiceProcessMemory = serviceProcessMemory;
+        }
+    }
+
+    static final class ServiceKey {
+        final int mUserId;
+        final ComponentName mComponent;
+
+        ServiceKey(int userId, ComponentName component) {
+            mUserId = userId;
+            mComponent = component;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ServiceKey)) {
+                return false;
+            }
+            final ServiceKey other = (ServiceKey) o;
+            return mUserId == other.mUserId && mComponent.equals(other.mComponent);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mUserId + mComponent.hashCode();
+        }
+    }
+
+    static final class ServiceInfoEntry {
+        ServiceInfo mServiceInfo;
+        int mCurSeq;
+    }
+
     static class UserState {
         UserInfo mInfo;
         String mLabel;
@@ -365,6 +446,10 @@ public class RunningState {
         }
 
         public Drawable loadIcon(Context context, RunningState state) {
+            if (mPackageInfo instanceof ApplicationInfo) {
+                return AppIconLabelCache.getInstance(context)
+                        .getEntry((ApplicationInfo) mPackageInfo, mUserId).getIcon();
+            }
             if (mPackageInfo != null) {
                 Drawable unbadgedIcon = mPackageInfo.loadUnbadgedIcon(state.mPm);
                 Drawable icon = state.mPm.getUserBadgedIcon(unbadgedIcon, new UserHandle(mUserId));
@@ -495,7 +580,8 @@ public class RunningState {
             }
         }
 
-        boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
+        boolean updateService(Context context, ActivityManager.RunningServiceInfo service,
+                HashMap<ServiceKey, ServiceInfoEntry> serviceInfoCache) {
             final PackageManager pm = context.getPackageManager();
 
             boolean changed = false;
@@ -504,17 +590,11 @@ public class RunningState {
                 changed = true;
                 si = new ServiceItem(mUserId);
                 si.mRunningService = service;
-                try {
-                    si.mServiceInfo = ActivityThread.getPackageManager().getServiceInfo(
-                            service.service, PackageManager.MATCH_ANY_USER,
-                            UserHandle.getUserId(service.uid));
-
-                    if (si.mServiceInfo == null) {
-                        Log.d("RunningService", "getServiceInfo returned null for: "
-                                + service.service);
-                        return false;
-                    }
-                } catch (RemoteException e) {
+                si.mServiceInfo = resolveServiceInfo(service, serviceInfoCache);
+                if (si.mServiceInfo == null) {
+                    Log.d("RunningService", "getServiceInfo returned null for: "
+                            + service.service);
+                    return false;
                 }
                 si.mDisplayLabel = makeLabel(pm,
                         si.mRunningService.service.getClassName(), si.mServiceInfo);
@@ -554,6 +634,29 @@ public class RunningState {
             return changed;
         }
 
+        private ServiceInfo resolveServiceInfo(ActivityManager.RunningServiceInfo service,
+                HashMap<ServiceKey, ServiceInfoEntry> serviceInfoCache) {
+            final ServiceKey key = new ServiceKey(UserHandle.getUserId(service.uid),
+                    service.service);
+            ServiceInfoEntry entry = serviceInfoCache.get(key);
+            if (entry == null) {
+                entry = new ServiceInfoEntry();
+                try {
+                    entry.mServiceInfo = ActivityThread.getPackageManager().getServiceInfo(
+                            service.service, PackageManager.MATCH_ANY_USER, key.mUserId);
+                } catch (RemoteException e) {
+                }
+                if (entry.mServiceInfo == null) {
+                    // Don't remember failures, the package may just be in the middle
+                    // of being updated.
+                    return null;
+                }
+                serviceInfoCache.put(key, entry);
+            }
+            entry.mCurSeq = mCurSeq;
+            return entry.mServiceInfo;
+        }
+
         boolean updateSize(Context context, long pss, int curSeq) {
             mSize = pss * 1024;
             if (mCurSeq == curSeq) {
@@ -828,6 +931,10 @@ public class RunningState {
         }
     }
 
+    Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
     void waitForData() {
         synchronized (mLock) {
             while (!mHaveData) {
@@ -861,7 +968,20 @@ public class RunningState {
         return false;
     }
 
+    private long nextUpdateDelay(boolean changed) {
+        if (changed) {
+            mUnchangedPasses = 0;
+            return CONTENTS_UPDATE_DELAY;
+        }
+        mUnchangedPasses++;
+        final int backoff = Math.min(mUnchangedPasses / UNCHANGED_PASSES_PER_BACKOFF, 2);
+        return Math.min(CONTENTS_UPDATE_DELAY << backoff, CONTENTS_UPDATE_MAX_DELAY);
+    }
+
     private void reset() {
+        mUnchangedPasses = 0;
+        mUserStates.clear();
+        mServiceInfoCache.clear();
         mServiceProcessesByName.clear();
         mServiceProcessesByPid.clear();
         mInterestingProcesses.clear();
@@ -890,10 +1010,15 @@ public class RunningState {
                 userItem.mChildren.clear();
             }
             userItem.mCurSeq = mSequence;
-            userItem.mUser = new UserState();
-            userItem.mUser.mInfo = info;
-            userItem.mUser.mIcon = Utils.getUserIcon(context, mUm, info);
-            userItem.mUser.mLabel = Utils.getUserLabel(context, info);
+            UserState userState = mUserStates.get(newItem.mUserId);
+            if (userState == null) {
+                userState = new UserState();
+                userState.mInfo = info;
+                userState.mIcon = Utils.getUserIcon(context, mUm, info);
+                userState.mLabel = Utils.getUserLabel(context, info);
+                mUserStates.put(newItem.mUserId, userState);
+            }
+            userItem.mUser = userState;
             newMergedItems.add(userItem);
         }
         userItem.mChildren.add(newItem);
@@ -948,6 +1073,11 @@ public class RunningState {
         // info about them.
         for (int i = 0; i < NS; i++) {
             ActivityManager.RunningServiceInfo si = services.get(i);
+            ServiceInfoEntry cached = mServiceInfoCache.get(
+                    new ServiceKey(UserHandle.getUserId(si.uid), si.service));
+            if (cached != null) {
+                cached.mCurSeq = mSequence;
+            }
             if (si.restarting == 0 && si.pid > 0) {
                 AppProcessInfo ainfo = mTmpAppProcesses.get(si.pid);
                 if (ainfo != null) {
@@ -1025,7 +1155,7 @@ public class RunningState {
                 proc.mDependentProcesses.clear();
                 proc.mCurSeq = mSequence;
             }
-            changed |= proc.updateService(context, si);
+            changed |= proc.updateService(context, si, mServiceInfoCache);
         }
 
         // Now update the map of other processes that are running (but
@@ -1160,6 +1290,14 @@ public class RunningState {
             }
         }
 
+        // Forget the service info of services that are no longer running.
+        Iterator<ServiceInfoEntry> cit = mServiceInfoCache.values().iterator();
+        while (cit.hasNext()) {
+            if (cit.next().mCurSeq != mSequence) {
+                cit.remove();
+            }
+        }
+
         if (changed) {
             // First determine an order for the services.
             ArrayList<ProcessItem> sortedProcesses = new ArrayList<ProcessItem>();
@@ -1276,10 +1414,8 @@ public class RunningState {
                 }
             }
 
-            synchronized (mLock) {
-                mItems = newItems;
-                mMergedItems = newMergedItems;
-            }
+            mItems = newItems;
+            mMergedItems = newMergedItems;
         }
 
         // Count number of interesting other (non-active) processes, and
@@ -1418,19 +1554,18 @@ public class RunningState {
             mMergedItems.get(i).updateSize(context);
         }
 
+        if (newBackgroundItems != null) {
+            mBackgroundItems = newBackgroundItems;
+            mUserBackgroundItems = newUserBackgroundItems;
+        }
+        mSnapshot = new Snapshot(mMergedItems, mUserBackgroundItems,
+                numBackgroundProcesses, backgroundProcessMemory,
+                numForegroundProcesses, foregroundProcessMemory,
+                numServiceProcesses, serviceProcessMemory);
+
         synchronized (mLock) {
-            mNumBackgroundProcesses = numBackgroundProcesses;
-            mNumForegroundProcesses = numForegroundProcesses;
-            mNumServiceProcesses = numServiceProcesses;
-            mBackgroundProcessMemory = backgroundProcessMemory;
-            mForegroundProcessMemory = foregroundProcessMemory;
-            mServiceProcessMemory = serviceProcessMemory;
-            if (newBackgroundItems != null) {
-                mBackgroundItems = newBackgroundItems;
-                mUserBackgroundItems = newUserBackgroundItems;
-                if (mWatchingBackgroundItems) {
-                    changed = true;
-                }
+            if (newBackgroundItems != null && mWatchingBackgroundItems) {
+                changed = true;
             }
             if (!mHaveData) {
                 mHaveData = true;
@@ -1448,14 +1583,10 @@ public class RunningState {
     }
 
     ArrayList<MergedItem> getCurrentMergedItems() {
-        synchronized (mLock) {
-            return mMergedItems;
-        }
+        return mSnapshot.mMergedItems;
     }
 
     ArrayList<MergedItem> getCurrentBackgroundItems() {
-        synchronized (mLock) {
-            return mUserBackgroundItems;
-        }
+        return mSnapshot.mUserBackgroundItems;
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.icu.text.Transliterator;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the search query of {@link ManageApplications} against the apps of one rebuild.
+ *
+ * <p>Labels are normalized once when the index is built: lower cased for the locale, stripped of
+ * accents and, for non Latin scripts, transliterated to Latin as well. An app matches when its
+ * normalized label or transliteration contains the query, or when its package name does. To keep
+ * common words like "android" from matching every app, a query without a dot only matches the
+ * last segment of package names, from its start.
+ *
+ * <p>When the query is extended, only the apps that matched the previous query are checked again.
+ * Not thread safe, it is meant to be used from the filter thread only.
+ */
+class AppSearchIndex {
+
+    private static final String TAG = "AppSearchIndex";
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+    private static final String TRANSLITERATOR_ID = "Any-Latin; Latin-ASCII";
+
+    private final List<AppEntry> mEntries;
+    private final Locale mLocale;
+    private final String[] mLabels;
+    private final String[] mTransliterations;
+    private final String[] mPackageNames;
+    private final String[] mPackageSegments;
+
+    private String mLastQuery;
+    private int[] mLastMatches;
+
+    @WorkerThread
+    AppSearchIndex(@NonNull List<AppEntry> entries, @NonNull Locale locale) {
+        mEntries = entries;
+        mLocale = locale;
+        final int size = entries.size();
+        mLabels = new String[size];
+        mTransliterations = new String[size];
+        mPackageNames = new String[size];
+        mPackageSegments = new String[size];
+
+        Transliterator transliterator = null;
+        for (int i = 0; i < size; i++) {
+            final AppEntry entry = entries.get(i);
+            final String label = entry.label != null ? entry.label : "";
+            mLabels[i] = normalize(label, locale);
+            if (!isAscii(label)) {
+                if (transliterator == null) {
+                    transliterator = createTransliterator();
+                }
+                if (transliterator != null) {
+                    final String transliteration =
+                            normalize(transliterator.transliterate(label), locale);
+                    if (!transliteration.equals(mLabels[i])) {
+                        mTransliterations[i] = transliteration;
+                    }
+                }
+            }
+            if (entry.info != null && entry.info.packageName != null) {
+                final String packageName = entry.info.packageName.toLowerCase(Locale.ROOT);
+                mPackageNames[i] = packageName;
+                mPackageSegments[i] = packageName.substring(packageName.lastIndexOf('.') + 1);
+            }
+        }
+    }
+
+    /** Returns whether the index was built from {@code entries} in {@code locale}. */
+    boolean isIndexOf(@Nullable List<AppEntry> entries, @NonNull Locale locale) {
+        return mEntries == entries && mLocale.equals(locale);
+    }
+
+    /** Returns the entries matching {@code query}, in the order of the indexed list. */
+    @WorkerThread
+    @NonNull
+    ArrayList<AppEntry> search(@Nullable CharSequence query) {
+        final String normalizedQuery =
+                TextUtils.isEmpty(query) ? "" : normalize(query.toString(), mLocale).trim();
+        if (normalizedQuery.isEmpty()) {
+            mLastQuery = null;
+            mLastMatches = null;
+            return new ArrayList<>(mEntries);
+        }
+
+        final int[] matches = new int[mEntries.size()];
+        int count = 0;
+        if (canRefine(normalizedQuery)) {
+            for (int i : mLastMatches) {
+                if (matches(i, normalizedQuery)) {
+                    matches[count++] = i;
+                }
+            }
+        } else {
+            for (int i = 0; i < mEntries.size(); i++) {
+                if (matches(i, normalizedQuery)) {
+                    matches[count++] = i;
+                }
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = Arrays.copyOf(matches, count);
+
+        final ArrayList<AppEntry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(mEntries.get(matches[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Whether the apps matching {@code query} are all among the ones matching the last query,
+     * which holds when the user typed more characters at the end of the query.
+     */
+    private boolean canRefine(String query) {
+        if (mLastQuery == null || !query.startsWith(mLastQuery)) {
+            return false;
+        }
+        // Adding the first dot changes how package names match.
+        return mLastQuery.indexOf('.') >= 0 || query.indexOf('.') < 0;
+    }
+
+    private boolean matches(int i, String query) {
+        if (mLabels[i].contains(query)
+                || (mTransliterations[i] != null && mTransliterations[i].contains(query))) {
+            return true;
+        }
+        if (mPackageNames[i] == null) {
+            return false;
+        }
+        return query.indexOf('.') >= 0
+                ? mPackageNames[i].contains(query)
+                : mPackageSegments[i].startsWith(query);
+    }
+
+    private static String normalize(String text, Locale locale) {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(locale);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Transliterator createTransliterator() {
+        try {
+            return Transliterator.getInstance(TRANSLITERATOR_ID);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Transliteration not available", e);
+            return null;
+        }
+    }
+}
@@ -32,11 +32,13 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.Log;
 
+import androidx.annotation.WorkerThread;
 import androidx.fragment.app.FragmentActivity;
 
 import com.android.settings.Utils;
 
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Handles clone user creation and clone app install/uninstall.
@@ -51,10 +53,12 @@ public class CloneBackend {
     private static CloneBackend sInstance;
     private Context mContext;
     private int mCloneUserId;
+    private final CloneableAppIndex mCloneableAppIndex;
 
     private CloneBackend(Context context) {
         mContext = context;
         mCloneUserId = Utils.getCloneUserId(context);
+        mCloneableAppIndex = new CloneableAppIndex(context);
     }
 
     /**
@@ -162,6 +166,15 @@ public class CloneBackend {
         return SUCCESS;
     }
 
+    /**
+     * Returns the packages of the current user that can be cloned. Only the packages changed since
+     * the last call are checked again, so it is cheap to call whenever the list is needed.
+     */
+    @WorkerThread
+    public Set<String> getCloneableApps() {
+        return mCloneableAppIndex.getPackages();
+    }
+
     public int getCloneUserId() {
         return mCloneUserId;
     }
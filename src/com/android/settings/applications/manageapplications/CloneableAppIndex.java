@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.content.Context;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.UserHandle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.custom.utils.AppUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The packages of the current user that can be cloned.
+ *
+ * <p>The index is built by going through the installed packages once, then kept up to date from
+ * the packages the system reports as changed since, so that the cloned apps page and its summary
+ * don't go through every installed package again. It is built again when the resource
+ * configuration, and so possibly the allowlist of cloneable apps, changed.
+ */
+class CloneableAppIndex {
+
+    private final Context mContext;
+    private final AppUtils mAppUtils = new AppUtils();
+    private final Set<String> mPackages = new HashSet<>();
+    private Set<String> mAllowlist;
+    private Configuration mConfiguration;
+    // Package change sequence number the index is up to date with, -1 until it is built.
+    private int mSequenceNumber = -1;
+
+    CloneableAppIndex(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /** Returns the names of the packages that can be cloned. */
+    @NonNull
+    @WorkerThread
+    synchronized Set<String> getPackages() {
+        final Configuration configuration = mContext.getResources().getConfiguration();
+        if (mSequenceNumber < 0 || !configuration.equals(mConfiguration)) {
+            rebuild(configuration);
+        } else {
+            update();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(mPackages));
+    }
+
+    private void rebuild(Configuration configuration) {
+        final PackageManager packageManager = mContext.getPackageManager();
+        // Taken first: packages changing during the scan are checked again on next use.
+        final ChangedPackages changed = packageManager.getChangedPackages(0);
+        mSequenceNumber = changed != null ? changed.getSequenceNumber() : 0;
+        mConfiguration = new Configuration(configuration);
+        mAllowlist = mAppUtils.getCloneableAllowlist(mContext);
+        mPackages.clear();
+        final List<PackageInfo> packages =
+                packageManager.getInstalledPackagesAsUser(/* flags */ 0, UserHandle.myUserId());
+        for (PackageInfo packageInfo : packages) {
+            if (mAppUtils.isCloneable(packageInfo, mAllowlist)) {
+                mPackages.add(packageInfo.packageName);
+            }
+        }
+    }
+
+    private void update() {
+        final PackageManager packageManager = mContext.getPackageManager();
+        final ChangedPackages changed = packageManager.getChangedPackages(mSequenceNumber);
+        if (changed == null) {
+            return;
+        }
+        mSequenceNumber = changed.getSequenceNumber();
+        for (String packageName : changed.getPackageNames()) {
+            try {
+                final PackageInfo packageInfo = packageManager.getPackageInfoAsUser(packageName,
+                        /* flags */ 0, UserHandle.myUserId());
+                if (mAppUtils.isCloneable(packageInfo, mAllowlist)) {
+                    mPackages.add(packageName);
+                } else {
+                    mPackages.remove(packageName);
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                // Removed.
+                mPackages.remove(packageName);
+            }
+        }
+    }
+}
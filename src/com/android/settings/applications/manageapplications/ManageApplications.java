@@ -88,7 +88,9 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.internal.compat.IPlatformCompat;
@@ -179,6 +181,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -1225,6 +1229,8 @@ public class ManageApplications extends InstrumentedFragment
         private boolean mHasReceivedLoadEntries;
         private boolean mHasReceivedBridgeCallback;
         private SearchFilter mSearchFilter;
+        // Only used from the filter thread.
+        private AppSearchIndex mSearchIndex;
         private PowerAllowlistBackend mBackend;
 
         // This is to remember and restore the last scroll position when this
@@ -1948,27 +1954,109 @@ public class ManageApplications extends InstrumentedFragment
             @WorkerThread
             @Override
             protected FilterResults performFiltering(CharSequence query) {
+                final ArrayList<ApplicationsState.AppEntry> originalEntries = mOriginalEntries;
+                final ArrayList<ApplicationsState.AppEntry> shownEntries = mEntries;
                 final ArrayList<ApplicationsState.AppEntry> matchedEntries;
                 if (TextUtils.isEmpty(query)) {
-                    matchedEntries = mOriginalEntries;
+                    matchedEntries = originalEntries;
                 } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
+                    final Locale locale =
+                            mContext.getResources().getConfiguration().getLocales().get(0);
+                    if (mSearchIndex == null || !mSearchIndex.isIndexOf(originalEntries, locale)) {
+                        mSearchIndex = new AppSearchIndex(originalEntries, locale);
                     }
+                    matchedEntries = mSearchIndex.search(query);
                 }
                 final FilterResults results = new FilterResults();
-                results.values = matchedEntries;
+                results.values = new SearchResult(matchedEntries, shownEntries);
                 results.count = matchedEntries.size();
                 return results;
             }
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                final SearchResult result = (SearchResult) results.values;
+                if (mEntries != result.mPreviousEntries || result.mDiff == null
+                        || hasListHeaderChanged(result.mPreviousEntries, result.mEntries)) {
+                    // The list changed since the diff was computed, or it can't be applied.
+                    mEntries = result.mEntries;
+                    notifyDataSetChanged();
+                    return;
+                }
+                mEntries = result.mEntries;
+                final int offset = getApplicationCount() > 0
+                        && getApplicationPosition(mManageApplications.mListType, 0)
+                                == RecyclerView.NO_POSITION ? 1 : 0;
+                result.mDiff.dispatchUpdatesTo(new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int position, int count) {
+                        notifyItemRangeInserted(position + offset, count);
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        notifyItemRangeRemoved(position + offset, count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        notifyItemMoved(fromPosition + offset, toPosition + offset);
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count, Object payload) {
+                        notifyItemRangeChanged(position + offset, count, payload);
+                    }
+                });
+            }
+
+            /** Whether the list header is shown for one list and not the other. */
+            private boolean hasListHeaderChanged(List<ApplicationsState.AppEntry> oldEntries,
+                    List<ApplicationsState.AppEntry> newEntries) {
+                return getApplicationPosition(mManageApplications.mListType, 0)
+                        == RecyclerView.NO_POSITION
+                        && oldEntries.isEmpty() != newEntries.isEmpty();
+            }
+        }
+
+        /**
+         * The entries matching a search query and how they differ from the entries shown when
+         * the search started.
+         */
+        private static class SearchResult {
+            final ArrayList<ApplicationsState.AppEntry> mEntries;
+            final ArrayList<ApplicationsState.AppEntry> mPreviousEntries;
+            final DiffUtil.DiffResult mDiff;
+
+            @WorkerThread
+            SearchResult(ArrayList<ApplicationsState.AppEntry> entries,
+                    ArrayList<ApplicationsState.AppEntry> previousEntries) {
+                mEntries = entries;
+                mPreviousEntries = previousEntries;
+                // Both lists are subsequences of the same list, so entries never move.
+                mDiff = entries == null || previousEntries == null ? null
+                        : DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                            @Override
+                            public int getOldListSize() {
+                                return previousEntries.size();
+                            }
+
+                            @Override
+                            public int getNewListSize() {
+                                return entries.size();
+                            }
+
+                            @Override
+                            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                                return previousEntries.get(oldPosition)
+                                        == entries.get(newPosition);
+                            }
+
+                            @Override
+                            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                                return true;
+                            }
+                        }, /* detectMoves= */ false);
             }
         }
     }
@@ -28,7 +28,6 @@ import android.content.pm.UserInfo;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.util.IconDrawableFactory;
 import android.util.Pair;
 import android.view.View;
 
@@ -39,6 +38,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.applications.AppIconLabelCache;
 import com.android.settings.applications.AppInfoBase;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
@@ -92,7 +92,6 @@ public class PictureInPictureSettings extends EmptyTextSettings {
     private Context mContext;
     private PackageManager mPackageManager;
     private UserManager mUserManager;
-    private IconDrawableFactory mIconDrawableFactory;
 
     /**
      * @return true if the package has any activities that declare that they support
@@ -134,7 +133,6 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         mContext = getActivity();
         mPackageManager = mContext.getPackageManager();
         mUserManager = (UserManager) mContext.getSystemService(Context.USER_SERVICE);
-        mIconDrawableFactory = IconDrawableFactory.newInstance(mContext);
     }
 
     @Override
@@ -153,16 +151,21 @@ public class PictureInPictureSettings extends EmptyTextSettings {
 
         // Rebuild the list of prefs
         final Context prefContext = getPrefContext();
+        final AppIconLabelCache iconLabelCache = AppIconLabelCache.getInstance(prefContext);
         for (final Pair<ApplicationInfo, Integer> appData : pipApps) {
             final ApplicationInfo appInfo = appData.first;
             final int userId = appData.second;
             final UserHandle user = UserHandle.of(userId);
             final String packageName = appInfo.packageName;
-            final CharSequence label = appInfo.loadLabel(mPackageManager);
 
             final Preference pref = new AppPreference(prefContext);
-            pref.setIcon(mIconDrawableFactory.getBadgedIcon(appInfo, userId));
-            pref.setTitle(mPackageManager.getUserBadgedLabel(label, user));
+            // Icons and labels not cached yet are loaded in background, keeping room for the icon
+            // meanwhile.
+            pref.setIcon(R.drawable.empty_icon);
+            iconLabelCache.load(appInfo, userId, entry -> {
+                pref.setIcon(entry.getIcon());
+                pref.setTitle(mPackageManager.getUserBadgedLabel(entry.getLabel(), user));
+            });
             pref.setSummary(PictureInPictureDetails.getPreferenceSummary(prefContext,
                     appInfo.uid, packageName));
             pref.setOnPreferenceClickListener(new OnPreferenceClickListener() {
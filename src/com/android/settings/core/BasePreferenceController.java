@@ -415,6 +415,18 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public interface UiBlocker {
     }
 
+    /**
+     * Used by a preference controller, {@link BasePreferenceController} or not, to declare that
+     * its {@code isAvailable()} may be called from a background thread, concurrently with other
+     * controllers. {@link com.android.settings.dashboard.DashboardFragment} then evaluates it off
+     * the UI thread.
+     *
+     * Only implement it when availability depends on immutable state, settings and system
+     * services; never when it touches views or fields that the UI thread writes.
+     */
+    public interface ThreadSafeAvailability {
+    }
+
     /**
      * Set the metrics category of the parent fragment.
      *
@@ -25,7 +25,6 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.ArraySet;
 import android.util.Log;
@@ -34,6 +33,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.dashboard.CategoryManager;
 import com.android.settingslib.drawer.Tile;
 
@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * A mixin that handles live categories for Injection
@@ -53,6 +54,9 @@ public class CategoryMixin implements LifecycleObserver {
     // Serves as a temporary list of tiles to ignore until we heard back from the PM that they
     // are disabled.
     private static final ArraySet<ComponentName> sTileDenylist = new ArraySet<>();
+    // Updates of all mixins reload the same CategoryManager, so they run one after the other.
+    private static final Executor sCategoriesUpdateExecutor = SettingsExecutors.newSerialExecutor(
+            SettingsExecutors.POOL_BACKGROUND, "CategoryMixin#updateCategories");
 
     private final Context mContext;
     private final PackageReceiver mPackageReceiver = new PackageReceiver();
@@ -156,7 +160,7 @@ public class CategoryMixin implements LifecycleObserver {
         void onCategoriesChanged(@Nullable Set<String> categories);
     }
 
-    private class CategoriesUpdateTask extends AsyncTask<Boolean, Void, Set<String>> {
+    private class CategoriesUpdateTask {
 
         private final CategoryManager mCategoryManager;
         private Map<ComponentName, Tile> mPreviousTileMap;
@@ -166,16 +170,21 @@ public class CategoryMixin implements LifecycleObserver {
             mCategoryManager = CategoryManager.get(mContext);
         }
 
-        @Override
-        protected Set<String> doInBackground(Boolean... params) {
+        void execute(boolean fromBroadcast) {
+            sCategoriesUpdateExecutor.execute(() -> {
+                final Set<String> categories = doInBackground(fromBroadcast);
+                SettingsExecutors.postOnMainThread(() -> onPostExecute(categories));
+            });
+        }
+
+        private Set<String> doInBackground(boolean fromBroadcast) {
             mPreviousTileMap = mCategoryManager.getTileByComponentMap();
             mCategoryManager.reloadAllCategories(mContext);
             mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
-            return getChangedCategories(params[0]);
+            return getChangedCategories(fromBroadcast);
         }
 
-        @Override
-        protected void onPostExecute(Set<String> categories) {
+        private void onPostExecute(Set<String> categories) {
             if (categories == null || !categories.isEmpty()) {
                 onCategoriesChanged(categories);
             }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.executor;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools shared by all of Settings for work that must not run on the UI thread.
+ *
+ * <p>Work is submitted to one of three pools, by how much the user is waiting for it:
+ * <ul>
+ *     <li>{@link #POOL_UI_CRITICAL}: short CPU-bound work whose result is about to be shown,
+ *     e.g. the content of the page being opened.</li>
+ *     <li>{@link #POOL_BACKGROUND}: everything else that is CPU or binder bound, e.g. refreshing
+ *     data that is already shown.</li>
+ *     <li>{@link #POOL_IO}: work that blocks on disk or network for a long time.</li>
+ * </ul>
+ *
+ * <p>Every task is named. The time it waited in the queue and the time it ran for are traced,
+ * aggregated in {@link TaskStats}, which {@code dumpsys activity service SettingsDumpService}
+ * prints, and logged when unusually long.
+ *
+ * <p>Work that belongs to a screen should be submitted through a {@link TaskScope}, so that it
+ * is cancelled when the screen goes away.
+ */
+public final class SettingsExecutors {
+
+    private static final String TAG = "SettingsExecutors";
+
+    /** Short CPU-bound work the user is waiting for. */
+    public static final int POOL_UI_CRITICAL = 0;
+    /** CPU or binder bound work the user is not directly waiting for. */
+    public static final int POOL_BACKGROUND = 1;
+    /** Work that blocks on disk or network. */
+    public static final int POOL_IO = 2;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({POOL_UI_CRITICAL, POOL_BACKGROUND, POOL_IO})
+    public @interface Pool {
+    }
+
+    private static final String[] POOL_NAMES = {"SettingsUiCritical", "SettingsBackground",
+            "SettingsIo"};
+
+    // Tasks waiting or running longer than this are logged.
+    private static final long SLOW_WAIT_MS = 100;
+    private static final long SLOW_RUN_MS = 1000;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final TaskStats[] sStats = {new TaskStats(), new TaskStats(), new TaskStats()};
+    private static final ThreadPoolExecutor[] sPools = new ThreadPoolExecutor[3];
+
+    private SettingsExecutors() {
+    }
+
+    /**
+     * Runs {@code task} on the given pool.
+     *
+     * @param name identifies the task in traces, logs and stats, e.g. "UserSettings#loadProfile".
+     * @return a {@link Future} that can be used to cancel the task.
+     */
+    public static Future<?> execute(@Pool int pool, @NonNull String name,
+            @NonNull Runnable task) {
+        return submit(pool, name, Executors.callable(task));
+    }
+
+    /**
+     * Runs {@code task} on the given pool.
+     *
+     * @param name identifies the task in traces, logs and stats, e.g. "UserSettings#loadProfile".
+     * @return a {@link Future} holding the result of the task.
+     */
+    public static <T> Future<T> submit(@Pool int pool, @NonNull String name,
+            @NonNull Callable<T> task) {
+        final TimedTask<T> timedTask = new TimedTask<>(pool, name, task);
+        dispatch(pool, timedTask);
+        return timedTask;
+    }
+
+    /** Runs {@code runnable} on the main thread. */
+    public static void postOnMainThread(@NonNull Runnable runnable) {
+        ThreadUtils.postOnMainThread(runnable);
+    }
+
+    /**
+     * Returns an {@link Executor} that runs its tasks one at a time, in order, on the given
+     * pool. Use it instead of a private single thread executor when tasks must not overlap.
+     */
+    public static Executor newSerialExecutor(@Pool int pool, @NonNull String name) {
+        return new SerialExecutor(pool, name);
+    }
+
+    /**
+     * Returns how many more tasks the given pool can start right away, without queueing behind
+     * the ones it already has. Callers that block on their tasks should run the excess on their
+     * own thread instead of waiting for a busy pool.
+     */
+    public static int getIdleThreadCount(@Pool int pool) {
+        final ThreadPoolExecutor executor = getPool(pool);
+        return Math.max(0, executor.getMaximumPoolSize() - executor.getActiveCount()
+                - executor.getQueue().size());
+    }
+
+    /** Returns the stats of the given pool since the process started. */
+    public static TaskStats getStats(@Pool int pool) {
+        return sStats[pool];
+    }
+
+    /** Returns the name of the given pool, which its threads are named after. */
+    public static String getPoolName(@Pool int pool) {
+        return POOL_NAMES[pool];
+    }
+
+    /** Hands {@code task} to the pool. Tests replace this to run tasks synchronously. */
+    @VisibleForTesting
+    static void dispatch(@Pool int pool, Runnable task) {
+        getPool(pool).execute(task);
+    }
+
+    private static synchronized ThreadPoolExecutor getPool(@Pool int pool) {
+        if (sPools[pool] == null) {
+            final int threads;
+            final int priority;
+            switch (pool) {
+                case POOL_UI_CRITICAL:
+                    threads = Math.max(2, CPU_COUNT / 2);
+                    priority = Process.THREAD_PRIORITY_FOREGROUND;
+                    break;
+                case POOL_IO:
+                    // Mostly blocked, so it can have more threads than there are CPUs.
+                    threads = 4;
+                    priority = Process.THREAD_PRIORITY_BACKGROUND;
+                    break;
+                default:
+                    threads = Math.max(2, CPU_COUNT - 1);
+                    priority = Process.THREAD_PRIORITY_BACKGROUND;
+                    break;
+            }
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new PoolThreadFactory(POOL_NAMES[pool], priority));
+            executor.allowCoreThreadTimeOut(true);
+            sPools[pool] = executor;
+        }
+        return sPools[pool];
+    }
+
+    /** A task that measures how long it waited and ran. */
+    private static class TimedTask<T> extends FutureTask<T> {
+        private final int mPool;
+        private final String mName;
+        private final long mEnqueueTimeMs;
+
+        TimedTask(int pool, String name, Callable<T> callable) {
+            super(callable);
+            mPool = pool;
+            mName = name;
+            mEnqueueTimeMs = SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                // Cancelled while queued, don't count it.
+                return;
+            }
+            final long startTimeMs = SystemClock.uptimeMillis();
+            Trace.beginSection(mName);
+            try {
+                super.run();
+            } finally {
+                Trace.endSection();
+                final long endTimeMs = SystemClock.uptimeMillis();
+                report(mPool, mName, startTimeMs - mEnqueueTimeMs, endTimeMs - startTimeMs);
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            // Nobody may ever call get(), so don't let failures go unnoticed.
+            Log.e(TAG, mName + " failed", t);
+            super.setException(t);
+        }
+    }
+
+    private static void report(int pool, String name, long waitMs, long runMs) {
+        sStats[pool].record(waitMs, runMs);
+        if (waitMs >= SLOW_WAIT_MS || runMs >= SLOW_RUN_MS) {
+            Log.w(TAG, name + " on " + POOL_NAMES[pool] + " waited " + waitMs + "ms, ran "
+                    + runMs + "ms");
+        }
+    }
+
+    private static class PoolThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final int mPriority;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        PoolThreadFactory(String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(mPriority);
+                runnable.run();
+            }, mName + "-" + mCount.incrementAndGet());
+        }
+    }
+
+    /** Runs tasks one after the other on a shared pool. */
+    private static class SerialExecutor implements Executor {
+        private final int mPool;
+        private final String mName;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private boolean mRunning;
+
+        SerialExecutor(int pool, String name) {
+            mPool = pool;
+            mName = name;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            mTasks.offer(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (!mRunning) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            final Runnable next = mTasks.poll();
+            mRunning = next != null;
+            if (next != null) {
+                SettingsExecutors.execute(mPool, mName, next);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.executor;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.android.settings.core.executor.SettingsExecutors.Pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Submits work to {@link SettingsExecutors} on behalf of a screen, and cancels whatever is still
+ * pending when the screen is destroyed.
+ *
+ * <p>Results should be delivered with {@link #postOnMainThread(Runnable)}, which drops them once
+ * the scope is cancelled, so that no task touches a destroyed screen.
+ *
+ * <pre>
+ *     private final TaskScope mTaskScope = new TaskScope(this);
+ *
+ *     mTaskScope.execute(POOL_BACKGROUND, "MyFragment#load", () -> {
+ *         final Data data = load();
+ *         mTaskScope.postOnMainThread(() -> show(data));
+ *     });
+ * </pre>
+ */
+public class TaskScope implements DefaultLifecycleObserver {
+
+    private final List<Future<?>> mFutures = new ArrayList<>();
+    private volatile boolean mCancelled;
+
+    /** Creates a scope that has to be cancelled with {@link #cancel()}. */
+    public TaskScope() {
+    }
+
+    /** Creates a scope that is cancelled when {@code owner} is destroyed. */
+    public TaskScope(@NonNull LifecycleOwner owner) {
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /** Runs {@code task} on the given pool unless the scope is cancelled. */
+    public void execute(@Pool int pool, @NonNull String name, @NonNull Runnable task) {
+        submit(pool, name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code task} on the given pool unless the scope is cancelled.
+     *
+     * @return the {@link Future} of the task, which is already cancelled if the scope is.
+     */
+    public <T> Future<T> submit(@Pool int pool, @NonNull String name,
+            @NonNull Callable<T> task) {
+        final Future<T> future = SettingsExecutors.submit(pool, name,
+                () -> mCancelled ? null : task.call());
+        if (mCancelled) {
+            future.cancel(/* mayInterruptIfRunning= */ false);
+            return future;
+        }
+        synchronized (mFutures) {
+            mFutures.removeIf(Future::isDone);
+            if (!future.isDone()) {
+                mFutures.add(future);
+            }
+        }
+        return future;
+    }
+
+    /** Runs {@code runnable} on the main thread unless the scope is cancelled by then. */
+    public void postOnMainThread(@NonNull Runnable runnable) {
+        SettingsExecutors.postOnMainThread(() -> {
+            if (!mCancelled) {
+                runnable.run();
+            }
+        });
+    }
+
+    /** Returns whether the scope was cancelled. Long tasks should check it regularly. */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Cancels all pending tasks, interrupts the running ones and drops their results. Tasks
+     * submitted afterwards don't run.
+     */
+    public void cancel() {
+        mCancelled = true;
+        synchronized (mFutures) {
+            for (Future<?> future : mFutures) {
+                future.cancel(/* mayInterruptIfRunning= */ true);
+            }
+            mFutures.clear();
+        }
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        owner.getLifecycle().removeObserver(this);
+        cancel();
+    }
+}
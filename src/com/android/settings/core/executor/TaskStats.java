@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.executor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Queueing and running times of the tasks run by one of the {@link SettingsExecutors} pools.
+ */
+public class TaskStats {
+
+    private long mTaskCount;
+    private long mTotalWaitMs;
+    private long mMaxWaitMs;
+    private long mTotalRunMs;
+    private long mMaxRunMs;
+
+    synchronized void record(long waitMs, long runMs) {
+        mTaskCount++;
+        mTotalWaitMs += waitMs;
+        mMaxWaitMs = Math.max(mMaxWaitMs, waitMs);
+        mTotalRunMs += runMs;
+        mMaxRunMs = Math.max(mMaxRunMs, runMs);
+    }
+
+    /** Returns how many tasks ran. */
+    public synchronized long getTaskCount() {
+        return mTaskCount;
+    }
+
+    /** Returns the average time a task waited in the queue before running, in ms. */
+    public synchronized long getAverageWaitMs() {
+        return mTaskCount == 0 ? 0 : mTotalWaitMs / mTaskCount;
+    }
+
+    /** Returns the longest time a task waited in the queue before running, in ms. */
+    public synchronized long getMaxWaitMs() {
+        return mMaxWaitMs;
+    }
+
+    /** Returns the average time a task ran for, in ms. */
+    public synchronized long getAverageRunMs() {
+        return mTaskCount == 0 ? 0 : mTotalRunMs / mTaskCount;
+    }
+
+    /** Returns the longest time a task ran for, in ms. */
+    public synchronized long getMaxRunMs() {
+        return mMaxRunMs;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "TaskStats{tasks=" + mTaskCount
+                + ", avgWaitMs=" + getAverageWaitMs() + ", maxWaitMs=" + mMaxWaitMs
+                + ", avgRunMs=" + getAverageRunMs() + ", maxRunMs=" + mMaxRunMs + "}";
+    }
+}
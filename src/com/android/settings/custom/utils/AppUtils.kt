@@ -9,14 +9,9 @@ class AppUtils {
         var packageList: List<PackageInfo> =
             context.getPackageManager().getInstalledPackagesAsUser(/* flags*/ 0, UserHandle.myUserId())
 
-        var filteredList: List<PackageInfo> = packageList.filter {
-                context.getResources().getStringArray(
-                    com.android.internal.R.array.cloneable_apps)
-                        .asList().contains(it.applicationInfo.packageName)
-                || (!it.applicationInfo.isSystemApp()
-                    && !it.applicationInfo.isResourceOverlay())
-            }
-    
+        val allowlist = getCloneableAllowlist(context)
+        var filteredList: List<PackageInfo> = packageList.filter { isCloneable(it, allowlist) }
+
         return filteredList
     }
 
@@ -25,4 +20,17 @@ class AppUtils {
                 x -> x.packageName
             }.toList()
     }
+
+    /** Returns the system apps that can be cloned, in a set for quick lookups. */
+    public fun getCloneableAllowlist(context: Context): Set<String> {
+        return context.getResources().getStringArray(
+            com.android.internal.R.array.cloneable_apps).toHashSet()
+    }
+
+    /** Whether the package can be cloned: allowlisted, or neither a system app nor an overlay. */
+    public fun isCloneable(packageInfo: PackageInfo, allowlist: Set<String>): Boolean {
+        val app = packageInfo.applicationInfo ?: return false
+        return allowlist.contains(app.packageName)
+            || (!app.isSystemApp() && !app.isResourceOverlay())
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The availability of the preference controllers of a {@link DashboardFragment}, evaluated once
+ * for a pass over the screen instead of once per call site.
+ *
+ * <p>Controllers implementing {@link BasePreferenceController.ThreadSafeAvailability} are
+ * evaluated in parallel on {@link SettingsExecutors#POOL_UI_CRITICAL} while the UI thread
+ * evaluates the others, as long as the pool has idle threads. The UI thread never waits for
+ * tasks queued behind other work, it evaluates the controllers that don't fit itself. How long
+ * each controller took is kept for the cost report.
+ */
+class AvailabilitySnapshot {
+
+    private static final String TAG = "AvailabilitySnapshot";
+
+    // How long the UI thread waits for the controllers evaluated in the background before
+    // evaluating the late ones itself.
+    private static final long BACKGROUND_TIMEOUT_MS = 300;
+    // The report is logged when the UI thread spends more than a frame on availability.
+    private static final long SLOW_UI_THREAD_MS = 16;
+    private static final int REPORTED_CONTROLLERS = 5;
+
+    private final Map<AbstractPreferenceController, Boolean> mAvailability =
+            new IdentityHashMap<>();
+    private final Map<AbstractPreferenceController, Long> mCostNanos = new IdentityHashMap<>();
+    private long mUiThreadNanos;
+    private int mBackgroundCount;
+
+    private AvailabilitySnapshot() {
+    }
+
+    /** Evaluates the availability of all {@code controllers}. Must be called on the UI thread. */
+    static AvailabilitySnapshot evaluate(
+            @NonNull Collection<AbstractPreferenceController> controllers) {
+        Trace.beginSection("AvailabilitySnapshot#evaluate");
+        final long startNanos = SystemClock.elapsedRealtimeNanos();
+        final AvailabilitySnapshot snapshot = new AvailabilitySnapshot();
+        try {
+            final Map<AbstractPreferenceController, Future<Evaluation>> pending =
+                    new IdentityHashMap<>();
+            int idleThreads = SettingsExecutors.getIdleThreadCount(
+                    SettingsExecutors.POOL_UI_CRITICAL);
+            for (AbstractPreferenceController controller : controllers) {
+                if (controller instanceof BasePreferenceController.ThreadSafeAvailability
+                        && idleThreads-- > 0) {
+                    pending.put(controller, SettingsExecutors.submit(
+                            SettingsExecutors.POOL_UI_CRITICAL,
+                            "isAvailable:" + controller.getClass().getSimpleName(),
+                            () -> Evaluation.of(controller)));
+                }
+            }
+            snapshot.mBackgroundCount = pending.size();
+            for (AbstractPreferenceController controller : controllers) {
+                if (!pending.containsKey(controller)) {
+                    snapshot.record(controller, Evaluation.of(controller));
+                }
+            }
+
+            final long deadlineMs = SystemClock.uptimeMillis() + BACKGROUND_TIMEOUT_MS;
+            for (Map.Entry<AbstractPreferenceController, Future<Evaluation>> entry :
+                    pending.entrySet()) {
+                final AbstractPreferenceController controller = entry.getKey();
+                Evaluation evaluation = null;
+                try {
+                    evaluation = entry.getValue().get(
+                            Math.max(0, deadlineMs - SystemClock.uptimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    Log.w(TAG, controller.getClass().getSimpleName()
+                            + " is slow, evaluating it on the UI thread");
+                    entry.getValue().cancel(/* mayInterruptIfRunning= */ false);
+                } catch (ExecutionException e) {
+                    // Evaluate again below, so that the failure surfaces as it used to.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                snapshot.record(controller,
+                        evaluation != null ? evaluation : Evaluation.of(controller));
+            }
+        } finally {
+            snapshot.mUiThreadNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+            Trace.endSection();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns whether {@code controller} is available. Controllers that were not part of the
+     * snapshot are evaluated now.
+     */
+    boolean isAvailable(@NonNull AbstractPreferenceController controller) {
+        final Boolean available = mAvailability.get(controller);
+        if (available != null) {
+            return available;
+        }
+        final Evaluation evaluation = Evaluation.of(controller);
+        record(controller, evaluation);
+        mUiThreadNanos += evaluation.mCostNanos;
+        return evaluation.mAvailable;
+    }
+
+    /** Returns how long evaluating {@code controller} took, in ns, or -1 if it wasn't. */
+    @VisibleForTesting
+    long getCostNanos(@NonNull AbstractPreferenceController controller) {
+        final Long cost = mCostNanos.get(controller);
+        return cost != null ? cost : -1;
+    }
+
+    /**
+     * Logs the time the UI thread spent on availability and the most expensive controllers, when
+     * it took longer than a frame or when verbose logging is enabled for this class.
+     */
+    void logCostReport(@NonNull String screen) {
+        final long uiThreadMs = TimeUnit.NANOSECONDS.toMillis(mUiThreadNanos);
+        if (uiThreadMs < SLOW_UI_THREAD_MS && !Log.isLoggable(TAG, Log.VERBOSE)) {
+            return;
+        }
+        final List<Map.Entry<AbstractPreferenceController, Long>> costs =
+                new ArrayList<>(mCostNanos.entrySet());
+        costs.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        final StringBuilder report = new StringBuilder()
+                .append(screen).append(": ").append(mAvailability.size())
+                .append(" controllers (").append(mBackgroundCount)
+                .append(" in background), UI thread ").append(uiThreadMs).append("ms");
+        for (int i = 0; i < Math.min(REPORTED_CONTROLLERS, costs.size()); i++) {
+            final Map.Entry<AbstractPreferenceController, Long> cost = costs.get(i);
+            report.append(i == 0 ? ", slowest: " : ", ")
+                    .append(cost.getKey().getClass().getSimpleName()).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMicros(cost.getValue())).append("us");
+        }
+        Log.d(TAG, report.toString());
+    }
+
+    private void record(AbstractPreferenceController controller, Evaluation evaluation) {
+        mAvailability.put(controller, evaluation.mAvailable);
+        mCostNanos.put(controller, evaluation.mCostNanos);
+    }
+
+    /** The availability of a controller and how long it took to evaluate. */
+    private static final class Evaluation {
+        final boolean mAvailable;
+        final long mCostNanos;
+
+        private Evaluation(boolean available, long costNanos) {
+            mAvailable = available;
+            mCostNanos = costNanos;
+        }
+
+        static Evaluation of(AbstractPreferenceController controller) {
+            final long startNanos = SystemClock.elapsedRealtimeNanos();
+            final boolean available = controller.isAvailable();
+            return new Evaluation(available, SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+    }
+}
@@ -21,11 +21,13 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager.OnActivityResultListener;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.view.View;
+import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
@@ -41,11 +43,13 @@ import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
 import com.android.settings.R;
+import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
 import com.android.settings.core.PreferenceControllerListHelper;
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.PrimarySwitchPreference;
 import com.android.settingslib.core.AbstractPreferenceController;
@@ -65,6 +69,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -88,6 +93,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    private AvailabilitySnapshot mAvailabilitySnapshot;
+    private ViewportStateUpdater mViewportStateUpdater;
 
     @Override
     public void onAttach(Context context) {
@@ -141,9 +148,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     void checkUiBlocker(List<AbstractPreferenceController> controllers) {
         final List<String> keys = new ArrayList<>();
         final List<BasePreferenceController> baseControllers = new ArrayList<>();
+        final AvailabilitySnapshot availability = getAvailabilitySnapshot();
         controllers.forEach(controller -> {
             if (controller instanceof BasePreferenceController.UiBlocker
-                    && controller.isAvailable()) {
+                    && availability.isAvailable(controller)) {
                 ((BasePreferenceController) controller).setUiBlockListener(this);
                 keys.add(controller.getPreferenceKey());
                 baseControllers.add((BasePreferenceController) controller);
@@ -181,6 +189,15 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        if (mViewportStateUpdater != null) {
+            mViewportStateUpdater.release();
+            mViewportStateUpdater = null;
+        }
+        super.onDestroyView();
+    }
+
     @Override
     public void onCategoriesChanged(Set<String> categories) {
         final String categoryKey = getCategoryKey();
@@ -392,9 +409,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         final PreferenceScreen screen = getPreferenceScreen();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
+        final AvailabilitySnapshot availability = getAvailabilitySnapshot();
+        final ViewportStateUpdater viewportStateUpdater = getViewportStateUpdater();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                if (!availability.isAvailable(controller)) {
                     continue;
                 }
 
@@ -411,9 +430,48 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                if (viewportStateUpdater != null) {
+                    viewportStateUpdater.updateState(controller, preference);
+                } else {
+                    controller.updateState(preference);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #updatePreferenceStates()} may defer updating the preferences that are far
+     * out of view until they are about to be scrolled into view. Screens with many preferences
+     * should enable it, provided that their controllers only update their own preference.
+     *
+     * <p>It is ignored while accessibility services are enabled, so that they always read the
+     * current state.
+     */
+    protected boolean isLazyUpdateStateEnabled() {
+        return false;
+    }
+
+    private ViewportStateUpdater getViewportStateUpdater() {
+        if (!isLazyUpdateStateEnabled() || getListView() == null || isAccessibilityEnabled()) {
+            if (mViewportStateUpdater != null) {
+                // Everything is about to be updated, nothing needs to be deferred anymore.
+                mViewportStateUpdater.release();
+                mViewportStateUpdater = null;
             }
+            return null;
         }
+        if (mViewportStateUpdater == null) {
+            final Bundle arguments = getArguments();
+            mViewportStateUpdater = new ViewportStateUpdater(getListView(), arguments == null
+                    ? null : arguments.getString(SettingsActivity.EXTRA_FRAGMENT_ARG_KEY));
+        }
+        return mViewportStateUpdater;
+    }
+
+    private boolean isAccessibilityEnabled() {
+        final AccessibilityManager accessibilityManager =
+                getContext().getSystemService(AccessibilityManager.class);
+        return accessibilityManager == null || accessibilityManager.isEnabled();
     }
 
     /**
@@ -427,6 +485,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             // Intentionally do not cache PreferenceScreen because it will be recreated later.
             screen.removeAll();
         }
+        if (mViewportStateUpdater != null) {
+            mViewportStateUpdater.clear();
+        }
 
         // Add resource based tiles.
         displayResourceTiles();
@@ -450,6 +511,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         if (screen == null || mPreferenceControllers == null) {
             return;
         }
+        // Availability may have changed since the last pass, evaluate it again.
+        mAvailabilitySnapshot = null;
+        if (mViewportStateUpdater != null) {
+            // Everything is updated below.
+            mViewportStateUpdater.clear();
+        }
+        final AvailabilitySnapshot availability = getAvailabilitySnapshot();
         for (List<AbstractPreferenceController> controllerList : mPreferenceControllers.values()) {
             for (AbstractPreferenceController controller : controllerList) {
                 final String key = controller.getPreferenceKey();
@@ -457,7 +525,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 if (preference == null) {
                     continue;
                 }
-                final boolean available = controller.isAvailable();
+                final boolean available = availability.isAvailable(controller);
                 if (available) {
                     controller.updateState(preference);
                 }
@@ -475,6 +543,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
 
         final boolean visible = mBlockerController.isBlockerFinished();
+        final AvailabilitySnapshot availability = getAvailabilitySnapshot();
         for (List<AbstractPreferenceController> controllerList :
                 preferenceControllers.values()) {
             for (AbstractPreferenceController controller : controllerList) {
@@ -486,14 +555,38 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 if (controller instanceof BasePreferenceController.UiBlocker) {
                     final boolean prefVisible =
                             ((BasePreferenceController) controller).getSavedPrefVisibility();
-                    preference.setVisible(visible && controller.isAvailable() && prefVisible);
+                    preference.setVisible(
+                            visible && availability.isAvailable(controller) && prefVisible);
                 } else {
-                    preference.setVisible(visible && controller.isAvailable());
+                    preference.setVisible(visible && availability.isAvailable(controller));
                 }
             }
         }
     }
 
+    /**
+     * Returns the availability of the preference controllers for the current pass over the
+     * screen, evaluating it on first use. It is dropped once the current UI thread message is
+     * handled, so that the next pass, e.g. the next onResume(), sees fresh values.
+     */
+    private AvailabilitySnapshot getAvailabilitySnapshot() {
+        AvailabilitySnapshot snapshot = mAvailabilitySnapshot;
+        if (snapshot == null) {
+            snapshot = AvailabilitySnapshot.evaluate(mPreferenceControllers.values().stream()
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList()));
+            snapshot.logCostReport(getLogTag());
+            mAvailabilitySnapshot = snapshot;
+            final AvailabilitySnapshot evaluated = snapshot;
+            SettingsExecutors.postOnMainThread(() -> {
+                if (mAvailabilitySnapshot == evaluated) {
+                    mAvailabilitySnapshot = null;
+                }
+            });
+        }
+        return snapshot;
+    }
+
     /**
      * Refresh preference items backed by DashboardCategory.
      */
@@ -573,14 +666,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
         // Wait for pending observers to update UI.
         if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
+            // All of them share the timeout, waiting doesn't need another thread.
+            final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
             Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
+            pendingObservers.forEach(observer -> awaitObserverLatch(
+                    observer.getCountDownLatch(), deadline - SystemClock.uptimeMillis()));
             Log.d(tag, "Stop waiting observers");
             pendingObservers.forEach(DynamicDataObserver::updateUi);
         }
@@ -647,9 +737,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         });
     }
 
-    private void awaitObserverLatch(CountDownLatch latch) {
+    private void awaitObserverLatch(CountDownLatch latch, long timeoutMs) {
         try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            latch.await(timeoutMs, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             // Do nothing
         }
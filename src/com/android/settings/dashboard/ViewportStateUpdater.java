@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
+import androidx.preference.PreferenceGroupAdapter;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Defers {@link AbstractPreferenceController#updateState(Preference)} for the preferences of a
+ * list that are far out of view until they are about to be scrolled into view.
+ *
+ * <p>Preferences within {@link #PREFETCH_ROWS} rows of the viewport are updated right away. While
+ * the list scrolls, the rows about to enter the viewport are updated ahead of time, and a
+ * deferred preference is updated at the latest when its view is attached. Preferences that are
+ * not in the list, e.g. hidden or collapsed ones, are always updated right away since their
+ * state may be what makes them show up.
+ */
+class ViewportStateUpdater extends RecyclerView.OnScrollListener
+        implements RecyclerView.OnChildAttachStateChangeListener {
+
+    // Rows assumed to be in view before the list is first laid out.
+    private static final int INITIAL_VISIBLE_ROWS = 12;
+    // Rows beyond the viewport whose state is kept up to date.
+    @VisibleForTesting
+    static final int PREFETCH_ROWS = 8;
+
+    private final RecyclerView mListView;
+    @Nullable
+    private final String mHighlightKey;
+    private final Map<Preference, List<AbstractPreferenceController>> mDeferred =
+            new ArrayMap<>();
+    private final Set<Preference> mDue = new ArraySet<>();
+    private final Runnable mUpdateDue = this::updateDue;
+    private boolean mUpdateScheduled;
+
+    /**
+     * @param highlightKey the key of the preference that search is about to highlight, which is
+     *                     never deferred.
+     */
+    ViewportStateUpdater(@NonNull RecyclerView listView, @Nullable String highlightKey) {
+        mListView = listView;
+        mHighlightKey = highlightKey;
+        listView.addOnScrollListener(this);
+        listView.addOnChildAttachStateChangeListener(this);
+    }
+
+    /** Updates the state of {@code preference} now if it is near the viewport, later if not. */
+    void updateState(@NonNull AbstractPreferenceController controller,
+            @NonNull Preference preference) {
+        if (!canDefer(preference)) {
+            controller.updateState(preference);
+            return;
+        }
+        final List<AbstractPreferenceController> controllers =
+                mDeferred.computeIfAbsent(preference, key -> new ArrayList<>());
+        if (!controllers.contains(controller)) {
+            controllers.add(controller);
+        }
+    }
+
+    /** Returns whether the state of {@code preference} has not been updated yet. */
+    @VisibleForTesting
+    boolean isDeferred(@NonNull Preference preference) {
+        return mDeferred.containsKey(preference);
+    }
+
+    /** Updates all the deferred preferences now. */
+    @VisibleForTesting
+    void updateAll() {
+        mDue.addAll(mDeferred.keySet());
+        updateDue();
+    }
+
+    /** Drops the deferred updates, e.g. because all preferences were just updated. */
+    void clear() {
+        mDeferred.clear();
+        mDue.clear();
+    }
+
+    /** Stops listening to the list and drops the deferred updates. */
+    void release() {
+        mListView.removeOnScrollListener(this);
+        mListView.removeOnChildAttachStateChangeListener(this);
+        mListView.removeCallbacks(mUpdateDue);
+        mUpdateScheduled = false;
+        clear();
+    }
+
+    @Override
+    public void onChildViewAttachedToWindow(@NonNull View view) {
+        final RecyclerView.ViewHolder holder = mListView.getChildViewHolder(view);
+        if (holder != null) {
+            final int position = holder.getAdapterPosition();
+            scheduleUpdate(position != RecyclerView.NO_POSITION
+                    ? position : holder.getLayoutPosition());
+        }
+    }
+
+    @Override
+    public void onChildViewDetachedFromWindow(@NonNull View view) {
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || mDeferred.isEmpty()
+                || !(mListView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        // Prefetch the rows the list is scrolling towards.
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) mListView.getLayoutManager();
+        if (dy > 0) {
+            final int last = layoutManager.findLastVisibleItemPosition();
+            for (int position = last + 1; position <= last + PREFETCH_ROWS; position++) {
+                scheduleUpdate(position);
+            }
+        } else {
+            final int first = layoutManager.findFirstVisibleItemPosition();
+            for (int position = first - PREFETCH_ROWS; position < first; position++) {
+                scheduleUpdate(position);
+            }
+        }
+    }
+
+    private boolean canDefer(Preference preference) {
+        final RecyclerView.Adapter adapter = mListView.getAdapter();
+        if (!(adapter instanceof PreferenceGroup.PreferencePositionCallback)
+                || !(mListView.getLayoutManager() instanceof LinearLayoutManager)
+                || TextUtils.equals(mHighlightKey, preference.getKey())) {
+            return false;
+        }
+        final int position = ((PreferenceGroup.PreferencePositionCallback) adapter)
+                .getPreferenceAdapterPosition(preference);
+        if (position == RecyclerView.NO_POSITION) {
+            return false;
+        }
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) mListView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            first = 0;
+            last = INITIAL_VISIBLE_ROWS - 1;
+        }
+        return position < first - PREFETCH_ROWS || position > last + PREFETCH_ROWS;
+    }
+
+    private void scheduleUpdate(int position) {
+        final RecyclerView.Adapter adapter = mListView.getAdapter();
+        if (mDeferred.isEmpty() || !(adapter instanceof PreferenceGroupAdapter)
+                || position < 0 || position >= adapter.getItemCount()) {
+            return;
+        }
+        final Preference preference = ((PreferenceGroupAdapter) adapter).getItem(position);
+        if (preference == null || !mDeferred.containsKey(preference)) {
+            return;
+        }
+        mDue.add(preference);
+        if (!mUpdateScheduled) {
+            // Updating a preference notifies the adapter, which isn't allowed while the list is
+            // being laid out or scrolled.
+            mUpdateScheduled = true;
+            mListView.post(mUpdateDue);
+        }
+    }
+
+    private void updateDue() {
+        mUpdateScheduled = false;
+        final List<Preference> due = new ArrayList<>(mDue);
+        mDue.clear();
+        for (Preference preference : due) {
+            final List<AbstractPreferenceController> controllers = mDeferred.remove(preference);
+            if (controllers == null) {
+                continue;
+            }
+            for (AbstractPreferenceController controller : controllers) {
+                controller.updateState(preference);
+            }
+        }
+    }
+}
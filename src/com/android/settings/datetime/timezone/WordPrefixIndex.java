@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import android.icu.text.BreakIterator;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the items that have a search key, or a word of a search key, starting with a prefix.
+ *
+ * <p>Search keys are lowercased and split into words once, when the index is built. The index is
+ * a sorted array of the suffixes of the keys that start at the beginning of a key or of a word, so
+ * a lookup is a binary search for the range of suffixes starting with the prefix. A lookup for a
+ * prefix that extends the previous one only searches within the previous range.
+ *
+ * <p>Not thread-safe.
+ */
+class WordPrefixIndex {
+
+    private final Locale mLocale;
+    private final int mItemCount;
+    // Sorted suffixes, and the index of the item each of them comes from.
+    private final String[] mSuffixes;
+    private final int[] mItems;
+
+    private String mLastPrefix;
+    private int mLastStart;
+    private int mLastEnd;
+
+    WordPrefixIndex(@NonNull List<String[]> searchKeys, @NonNull Locale locale) {
+        mLocale = locale;
+        mItemCount = searchKeys.size();
+        final BreakIterator breakIterator = BreakIterator.getWordInstance(locale);
+        final List<Suffix> suffixes = new ArrayList<>();
+        for (int item = 0; item < mItemCount; item++) {
+            for (String searchKey : searchKeys.get(item)) {
+                final String key = searchKey.toLowerCase(locale);
+                // The whole key matches as well, even if it doesn't start with a word.
+                suffixes.add(new Suffix(key, item));
+                breakIterator.setText(key);
+                for (int wordStart = 0, wordLimit = breakIterator.next();
+                        wordLimit != BreakIterator.DONE;
+                        wordStart = wordLimit, wordLimit = breakIterator.next()) {
+                    if (wordStart > 0
+                            && breakIterator.getRuleStatus() != BreakIterator.WORD_NONE) {
+                        suffixes.add(new Suffix(key.substring(wordStart), item));
+                    }
+                }
+            }
+        }
+        suffixes.sort((a, b) -> a.mText.compareTo(b.mText));
+        mSuffixes = new String[suffixes.size()];
+        mItems = new int[suffixes.size()];
+        for (int i = 0; i < mSuffixes.length; i++) {
+            mSuffixes[i] = suffixes.get(i).mText;
+            mItems[i] = suffixes.get(i).mItem;
+        }
+    }
+
+    /**
+     * Returns the indexes of the items matching {@code prefix}, in increasing order.
+     */
+    @NonNull
+    int[] find(@NonNull String prefix) {
+        final String lowerCasePrefix = prefix.toLowerCase(mLocale);
+        int start = 0;
+        int end = mSuffixes.length;
+        if (mLastPrefix != null && lowerCasePrefix.startsWith(mLastPrefix)) {
+            // The suffixes starting with a longer prefix are a part of the previous range.
+            start = mLastStart;
+            end = mLastEnd;
+        }
+        start = lowerBound(lowerCasePrefix, start, end);
+        int matchEnd = start;
+        while (matchEnd < end && mSuffixes[matchEnd].startsWith(lowerCasePrefix)) {
+            matchEnd++;
+        }
+        mLastPrefix = lowerCasePrefix;
+        mLastStart = start;
+        mLastEnd = matchEnd;
+
+        final BitSet matches = new BitSet(mItemCount);
+        for (int i = start; i < matchEnd; i++) {
+            matches.set(mItems[i]);
+        }
+        return matches.stream().toArray();
+    }
+
+    private int lowerBound(String prefix, int start, int end) {
+        final int index = Arrays.binarySearch(mSuffixes, start, end, prefix);
+        if (index >= 0) {
+            // Equal suffixes may come before the one found.
+            int first = index;
+            while (first > start && mSuffixes[first - 1].equals(prefix)) {
+                first--;
+            }
+            return first;
+        }
+        return -index - 1;
+    }
+
+    private static final class Suffix {
+        final String mText;
+        final int mItem;
+
+        Suffix(String text, int item) {
+            mText = text;
+            mItem = item;
+        }
+    }
+}
@@ -22,7 +22,6 @@ import com.android.i18n.timezone.CountryTimeZones;
 import com.android.i18n.timezone.CountryZonesFinder;
 import com.android.i18n.timezone.TimeZoneFinder;
 
-import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -37,19 +36,18 @@ import java.util.Set;
  */
 public class TimeZoneData {
 
-    private static WeakReference<TimeZoneData> sCache = null;
+    // Kept for the lifetime of the process: it is small, and reading it again is what makes
+    // opening the pickers slow.
+    private static TimeZoneData sInstance;
 
     private final CountryZonesFinder mCountryZonesFinder;
     private final Set<String> mRegionIds;
 
     public static synchronized TimeZoneData getInstance() {
-        TimeZoneData data = sCache == null ? null : sCache.get();
-        if (data != null) {
-            return data;
+        if (sInstance == null) {
+            sInstance = new TimeZoneData(TimeZoneFinder.getInstance().getCountryZonesFinder());
         }
-        data = new TimeZoneData(TimeZoneFinder.getInstance().getCountryZonesFinder());
-        sCache = new WeakReference<>(data);
-        return data;
+        return sInstance;
     }
 
     @VisibleForTesting
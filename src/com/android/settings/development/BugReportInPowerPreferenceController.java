@@ -24,12 +24,13 @@ import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.core.BasePreferenceController.ThreadSafeAvailability;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.development.DeveloperOptionsPreferenceController;
 
 public class BugReportInPowerPreferenceController extends
         DeveloperOptionsPreferenceController implements Preference.OnPreferenceChangeListener,
-        PreferenceControllerMixin {
+        PreferenceControllerMixin, ThreadSafeAvailability {
 
     private static final String KEY_BUGREPORT_IN_POWER = "bugreport_in_power";
 
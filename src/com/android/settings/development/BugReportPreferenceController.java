@@ -19,11 +19,12 @@ package com.android.settings.development;
 import android.content.Context;
 import android.os.UserManager;
 
+import com.android.settings.core.BasePreferenceController.ThreadSafeAvailability;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.development.DeveloperOptionsPreferenceController;
 
 public class BugReportPreferenceController extends DeveloperOptionsPreferenceController implements
-        PreferenceControllerMixin {
+        PreferenceControllerMixin, ThreadSafeAvailability {
 
     private static final String KEY_BUGREPORT = "bugreport";
 
@@ -0,0 +1,497 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.development;
+
+import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Slog;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.core.executor.SettingsExecutors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Fetches the DSU image list of {@link DSULoader}, following its {@code include} entries.
+ *
+ * <p>The lists of one level of includes are fetched concurrently on
+ * {@link SettingsExecutors#POOL_IO}, and parsed while they are downloaded. The calling thread
+ * fetches the lists that no pool thread picked up yet itself, so it never waits for work queued
+ * behind it, even when it runs on that pool too. Each list is kept in
+ * a cache directory along with its {@code ETag} and {@code Last-Modified} headers: the cached
+ * lists can be shown right away with {@link #loadCached(URL)}, while {@link #fetch(URL)} only
+ * downloads the lists that changed since.
+ *
+ * <p>Includes are followed at most {@link #MAX_INCLUDE_DEPTH} levels deep. Lists included deeper
+ * than that are skipped with a warning, and the result holds the images of the other lists only.
+ */
+class DSUListFetcher {
+
+    private static final String TAG = "DSUListFetcher";
+    private static final String INCLUDE = "include";
+    private static final String IMAGES = "images";
+    private static final String META_URL = "url";
+    private static final String META_ETAG = "etag";
+    private static final String META_LAST_MODIFIED = "last_modified";
+    // Guards against lists that include each other.
+    @VisibleForTesting
+    static final int MAX_INCLUDE_DEPTH = 8;
+    private static final int TIMEOUT_MS = 10 * 1000;
+
+    /** Opens the connections of the fetcher. */
+    interface Connector {
+        @NonNull
+        HttpURLConnection open(@NonNull URL url) throws IOException;
+    }
+
+    /** The images of a list and of the lists it includes. */
+    static class Result {
+        private final List<JSONObject> mImages;
+        private final boolean mModified;
+
+        Result(List<JSONObject> images, boolean modified) {
+            mImages = images;
+            mModified = modified;
+        }
+
+        /** The images, in the order of the original depth first traversal of the includes. */
+        @NonNull
+        List<JSONObject> getImages() {
+            return mImages;
+        }
+
+        /** Whether any of the lists differs from the cached one. */
+        boolean isModified() {
+            return mModified;
+        }
+    }
+
+    /** One parsed list. */
+    private static class Document {
+        final List<URL> mIncludes = new ArrayList<>();
+        final List<JSONObject> mImages = new ArrayList<>();
+        boolean mModified;
+    }
+
+    private final File mCacheDir;
+    private final Connector mConnector;
+
+    DSUListFetcher(@NonNull File cacheDir) {
+        this(cacheDir, DSUListFetcher::openHttps);
+    }
+
+    @VisibleForTesting
+    DSUListFetcher(@NonNull File cacheDir, @NonNull Connector connector) {
+        mCacheDir = cacheDir;
+        mConnector = connector;
+    }
+
+    /**
+     * Returns the list as it was last fetched, or null if any part of it isn't cached.
+     */
+    @WorkerThread
+    @Nullable
+    Result loadCached(@NonNull URL url) {
+        try {
+            return load(url, true /* offline */);
+        } catch (IOException | JSONException e) {
+            Slog.i(TAG, "No usable cache for " + url + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the list, revalidating the cached parts with the server.
+     */
+    @WorkerThread
+    @NonNull
+    Result fetch(@NonNull URL url) throws IOException, JSONException {
+        return load(url, false /* offline */);
+    }
+
+    private Result load(URL root, boolean offline) throws IOException, JSONException {
+        final Map<String, Document> documents = new HashMap<>();
+        documents.put(root.toString(), loadDocument(root, offline));
+        List<URL> level = new ArrayList<>(documents.get(root.toString()).mIncludes);
+        for (int depth = 1; !level.isEmpty() && depth <= MAX_INCLUDE_DEPTH; depth++) {
+            // Every list of a level is fetched at once; their own includes make the next level.
+            final Map<String, FutureTask<Document>> pending = new LinkedHashMap<>();
+            for (URL url : level) {
+                final String key = url.toString();
+                if (!documents.containsKey(key) && !pending.containsKey(key)) {
+                    final FutureTask<Document> task =
+                            new FutureTask<>(() -> loadDocument(url, offline));
+                    SettingsExecutors.execute(SettingsExecutors.POOL_IO,
+                            "DSULoader#fetchInclude", task);
+                    pending.put(key, task);
+                }
+            }
+            final List<URL> nextLevel = new ArrayList<>();
+            for (Map.Entry<String, FutureTask<Document>> entry : pending.entrySet()) {
+                final Document document = await(entry.getValue(), pending.values());
+                documents.put(entry.getKey(), document);
+                nextLevel.addAll(document.mIncludes);
+            }
+            level = nextLevel;
+        }
+        for (URL url : level) {
+            // Lists that were already fetched are just included again, e.g. by a cycle.
+            if (!documents.containsKey(url.toString())) {
+                Slog.w(TAG, "Skipping " + url + ", included more than " + MAX_INCLUDE_DEPTH
+                        + " levels deep");
+            }
+        }
+
+        final List<JSONObject> images = new ArrayList<>();
+        boolean modified = false;
+        for (Document document : documents.values()) {
+            modified |= document.mModified;
+        }
+        collectImages(root.toString(), documents, new HashSet<>(), images);
+        return new Result(images, modified);
+    }
+
+    private static Document await(FutureTask<Document> task, Iterable<FutureTask<Document>> all)
+            throws IOException, JSONException {
+        // Does nothing if a pool thread already started or finished the task.
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            for (FutureTask<Document> other : all) {
+                other.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching the DSU list");
+        } catch (ExecutionException e) {
+            for (FutureTask<Document> other : all) {
+                other.cancel(true);
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof JSONException) {
+                throw (JSONException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void collectImages(String key, Map<String, Document> documents,
+            Set<String> visited, List<JSONObject> images) {
+        final Document document = documents.get(key);
+        if (document == null || !visited.add(key)) {
+            return;
+        }
+        for (URL include : document.mIncludes) {
+            collectImages(include.toString(), documents, visited, images);
+        }
+        images.addAll(document.mImages);
+    }
+
+    private Document loadDocument(URL url, boolean offline) throws IOException, JSONException {
+        final File body = getBodyFile(url);
+        final Properties meta = readMeta(url);
+        if (offline) {
+            if (meta == null || !body.exists()) {
+                throw new IOException("Not cached");
+            }
+            return parseFile(body);
+        }
+
+        Slog.i(TAG, "fetch " + url);
+        final HttpURLConnection connection = mConnector.open(url);
+        try {
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setRequestMethod("GET");
+            connection.setDoInput(true);
+            if (meta != null && body.exists()) {
+                final String etag = meta.getProperty(META_ETAG);
+                final String lastModified = meta.getProperty(META_LAST_MODIFIED);
+                if (!TextUtils.isEmpty(etag)) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                if (!TextUtils.isEmpty(lastModified)) {
+                    connection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+            connection.connect();
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && body.exists()) {
+                return parseFile(body);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP error code: " + responseCode);
+            }
+
+            // Keep a copy of what is parsed, and only replace the cache once it parsed.
+            mCacheDir.mkdirs();
+            final File temp = new File(body.getPath() + ".tmp");
+            final Document document;
+            try (InputStream in = new TeeInputStream(
+                    new BufferedInputStream(connection.getInputStream()),
+                    new FileOutputStream(temp))) {
+                document = parse(in);
+                // Drain what the parser didn't need, so the copy is complete.
+                final byte[] buffer = new byte[4096];
+                while (in.read(buffer) != -1) {
+                    // Discard.
+                }
+            } catch (IOException | JSONException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+            document.mModified = true;
+            final String etag = connection.getHeaderField("ETag");
+            final String lastModified = connection.getHeaderField("Last-Modified");
+            if ((etag != null || lastModified != null) && temp.renameTo(body)) {
+                writeMeta(url, etag, lastModified);
+            } else {
+                temp.delete();
+                getMetaFile(url).delete();
+            }
+            return document;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Document parseFile(File file) throws IOException, JSONException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return parse(in);
+        }
+    }
+
+    private static Document parse(InputStream in) throws IOException, JSONException {
+        final Document document = new Document();
+        final JsonReader reader =
+                new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (INCLUDE.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            document.mIncludes.add(new URL(reader.nextString()));
+                        }
+                    }
+                    reader.endArray();
+                } else if (IMAGES.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        final Object image = readValue(reader);
+                        if (!(image instanceof JSONObject)) {
+                            throw new JSONException("Image is not an object: " + image);
+                        }
+                        document.mImages.add((JSONObject) image);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedURLException e) {
+            throw new JSONException("Invalid include: " + e.getMessage());
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Thrown by JsonReader for unexpected tokens.
+            throw new JSONException(e.getMessage());
+        }
+        return document;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                final JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                final JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case NUMBER:
+                final String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                return reader.nextString();
+        }
+    }
+
+    private File getBodyFile(URL url) {
+        return new File(mCacheDir, getCacheName(url) + ".json");
+    }
+
+    private File getMetaFile(URL url) {
+        return new File(mCacheDir, getCacheName(url) + ".meta");
+    }
+
+    private static String getCacheName(URL url) {
+        // Not URL#hashCode(), which resolves the host.
+        return Integer.toHexString(url.toString().hashCode());
+    }
+
+    @Nullable
+    private Properties readMeta(URL url) {
+        final File file = getMetaFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        final Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            meta.load(in);
+        } catch (IOException e) {
+            Slog.w(TAG, "Can't read " + file + ": " + e);
+            return null;
+        }
+        // Tells apart the URLs whose names collide.
+        return url.toString().equals(meta.getProperty(META_URL)) ? meta : null;
+    }
+
+    private void writeMeta(URL url, @Nullable String etag, @Nullable String lastModified) {
+        final Properties meta = new Properties();
+        meta.setProperty(META_URL, url.toString());
+        if (etag != null) {
+            meta.setProperty(META_ETAG, etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, lastModified);
+        }
+        try (OutputStream out = new FileOutputStream(getMetaFile(url))) {
+            meta.store(out, null);
+        } catch (IOException e) {
+            Slog.w(TAG, "Can't cache " + url + ": " + e);
+        }
+    }
+
+    private static HttpURLConnection openHttps(URL url) throws IOException {
+        final URLConnection connection = url.openConnection();
+        if (!(connection instanceof HttpsURLConnection)) {
+            throw new IOException("Not an https URL: " + url);
+        }
+        return (HttpsURLConnection) connection;
+    }
+
+    /** Copies what is read from a stream to another one. */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream mCopy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            mCopy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                mCopy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                mCopy.write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Read instead, so the copy stays complete.
+            final byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            final int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                mCopy.close();
+            }
+        }
+    }
+}
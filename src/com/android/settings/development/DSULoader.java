@@ -32,12 +32,15 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
 import com.android.settings.R;
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.core.executor.TaskScope;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -70,9 +73,11 @@ public class DSULoader extends ListActivity {
     private static final String DSU_LIST =
             "https://dl.google.com/developers/android/gsi/gsi-src.json";
 
+    private static final String CACHE_DIR = "dsu_list";
+
     private static final int TIMEOUT_MS = 10 * 1000;
-    private List<Object> mDSUList = new ArrayList<Object>();
     private ArrayAdapter<Object> mAdapter;
+    private final TaskScope mTaskScope = new TaskScope();
 
     private static String readAll(InputStream in) throws IOException {
         int n;
@@ -132,79 +137,71 @@ public class DSULoader extends ListActivity {
         view.requestLayout();
     }
 
-    // Fetcher fetches mDSUList in backgroud
+    // Fetcher fetches the DSU list in background, showing the cached one first.
     private class Fetcher implements Runnable {
-        private URL mDsuList;
+        private final URL mDsuList;
+        private final DSUListFetcher mListFetcher;
 
-        Fetcher(URL dsuList) {
+        Fetcher(URL dsuList, DSUListFetcher listFetcher) {
             mDsuList = dsuList;
+            mListFetcher = listFetcher;
         }
 
-        private void fetch(URL url)
-                throws IOException, JSONException, MalformedURLException, ParseException {
-            String content = readAll(url);
-            JSONObject jsn = new JSONObject(content);
-            // The include primitive is like below
-            // "include": [
-            //   "https:/...json",
-            //    ...
-            // ]
-            if (jsn.has("include")) {
-                JSONArray include = jsn.getJSONArray("include");
-                int len = include.length();
-                for (int i = 0; i < len; i++) {
-                    if (include.isNull(i)) {
-                        continue;
-                    }
-                    fetch(new URL(include.getString(i)));
+        private List<Object> toPackages(DSUListFetcher.Result result)
+                throws JSONException, MalformedURLException, ParseException {
+            List<Object> dsuList = new ArrayList<Object>();
+            for (JSONObject image : result.getImages()) {
+                DSUPackage dsu = new DSUPackage(image);
+                if (dsu.isSupported()) {
+                    dsuList.add(dsu);
                 }
             }
-            //  "images":[
-            //    {
-            //      "name":"...",
-            //      "os_version":"10",
-            //      "cpu_abi":"...",
-            //      "details":"...",
-            //      "vndk":[],
-            //      "spl":"...",
-            //      "pubkey":"",
-            //      "uri":"https://...zip"
-            //    },
-            //     ...
-            //  ]
-            if (jsn.has("images")) {
-                JSONArray images = jsn.getJSONArray("images");
-                int len = images.length();
-                for (int i = 0; i < len; i++) {
-                    DSUPackage dsu = new DSUPackage(images.getJSONObject(i));
-                    if (dsu.isSupported()) {
-                        mDSUList.add(dsu);
-                    }
-                }
+            if (dsuList.size() == 0) {
+                dsuList.add(0, "No DSU available for this device");
             }
+            return dsuList;
+        }
+
+        private void show(List<Object> dsuList) {
+            mTaskScope.postOnMainThread(() -> {
+                mAdapter.clear();
+                mAdapter.addAll(dsuList);
+                resizeListView();
+            });
         }
 
         public void run() {
+            boolean showingCache = false;
+            DSUListFetcher.Result cached = mListFetcher.loadCached(mDsuList);
+            if (cached != null) {
+                try {
+                    show(toPackages(cached));
+                    showingCache = true;
+                } catch (Exception e) {
+                    Slog.e(TAG, "Cached list: " + e.toString());
+                }
+            }
+            List<Object> dsuList;
             try {
-                fetch(mDsuList);
-                if (mDSUList.size() == 0) {
-                    mDSUList.add(0, "No DSU available for this device");
+                DSUListFetcher.Result result = mListFetcher.fetch(mDsuList);
+                if (showingCache && !result.isModified()) {
+                    return;
                 }
+                dsuList = toPackages(result);
             } catch (IOException e) {
                 Slog.e(TAG, e.toString());
-                mDSUList.add(0, "Network Error");
+                if (showingCache) {
+                    // Keep showing the last list.
+                    return;
+                }
+                dsuList = new ArrayList<Object>();
+                dsuList.add(0, "Network Error");
             } catch (Exception e) {
                 Slog.e(TAG, e.toString());
-                mDSUList.add(0, "Metadata Error");
+                dsuList = new ArrayList<Object>();
+                dsuList.add(0, "Metadata Error");
             }
-            runOnUiThread(
-                    new Runnable() {
-                        public void run() {
-                            mAdapter.clear();
-                            mAdapter.addAll(mDSUList);
-                            resizeListView();
-                        }
-                    });
+            show(dsuList);
         }
     }
 
@@ -374,7 +371,14 @@ public class DSULoader extends ListActivity {
         mAdapter = new DSUPackageListAdapter(this);
         setListAdapter(mAdapter);
         mAdapter.add(getResources().getString(R.string.dsu_loader_loading));
-        new Thread(new Fetcher(url)).start();
+        mTaskScope.execute(SettingsExecutors.POOL_IO, "DSULoader#fetch", new Fetcher(url,
+                new DSUListFetcher(new File(getCacheDir(), CACHE_DIR))));
+    }
+
+    @Override
+    protected void onDestroy() {
+        mTaskScope.cancel();
+        super.onDestroy();
     }
 
     @Override
@@ -384,23 +388,23 @@ public class DSULoader extends ListActivity {
             DSUPackage dsu = (DSUPackage) selected;
             mAdapter.clear();
             mAdapter.add(getResources().getString(R.string.dsu_loader_loading));
-            new Thread(new Runnable() {
-                public void run() {
-                    String termsOfService = "";
-                    if (dsu.mTosUrl != null) {
-                        try {
-                            termsOfService = readAll(dsu.mTosUrl);
-                        } catch (IOException e) {
-                            Slog.e(TAG, e.toString());
-                        }
+            // Not cancelled with the activity, which finishes right away.
+            SettingsExecutors.execute(SettingsExecutors.POOL_IO, "DSULoader#readTermsOfService",
+                    () -> {
+                String termsOfService = "";
+                if (dsu.mTosUrl != null) {
+                    try {
+                        termsOfService = readAll(dsu.mTosUrl);
+                    } catch (IOException e) {
+                        Slog.e(TAG, e.toString());
                     }
-                    Intent intent = new Intent(DSULoader.this, DSUTermsOfServiceActivity.class);
-                    intent.putExtra(DSUTermsOfServiceActivity.KEY_TOS, termsOfService);
-                    intent.setData(Uri.parse(dsu.mUri.toString()));
-                    intent.putExtra("KEY_PUBKEY", dsu.mPubKey);
-                    startActivity(intent);
                 }
-            }).start();
+                Intent intent = new Intent(DSULoader.this, DSUTermsOfServiceActivity.class);
+                intent.putExtra(DSUTermsOfServiceActivity.KEY_TOS, termsOfService);
+                intent.setData(Uri.parse(dsu.mUri.toString()));
+                intent.putExtra("KEY_PUBKEY", dsu.mPubKey);
+                startActivity(intent);
+            });
         }
         finish();
     }
@@ -537,6 +537,11 @@ public class DevelopmentSettingsDashboardFragment extends RestrictedDashboardFra
         return Utils.isMonkeyRunning() ? R.xml.placeholder_prefs : R.xml.development_settings;
     }
 
+    @Override
+    protected boolean isLazyUpdateStateEnabled() {
+        return true;
+    }
+
     @Override
     protected List<AbstractPreferenceController> createPreferenceControllers(Context context) {
         if (Utils.isMonkeyRunning()) {
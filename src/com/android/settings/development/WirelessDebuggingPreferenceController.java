@@ -35,6 +35,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController.ThreadSafeAvailability;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.PrimarySwitchPreference;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -49,7 +50,7 @@ import com.android.settingslib.development.DeveloperOptionsPreferenceController;
  */
 public class WirelessDebuggingPreferenceController extends DeveloperOptionsPreferenceController
         implements Preference.OnPreferenceChangeListener, PreferenceControllerMixin,
-        LifecycleObserver, OnResume, OnPause {
+        LifecycleObserver, OnResume, OnPause, ThreadSafeAvailability {
     private static final String TAG = "WirelessDebugPrefCtrl";
     private final IAdbManager mAdbManager;
     private final ContentResolver mContentResolver;
@@ -28,9 +28,12 @@ import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.res.Resources;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PersistableBundle;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.Annotation;
 import android.telephony.CarrierConfigManager;
@@ -59,14 +62,21 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.R;
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settingslib.Utils;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Controller for Sim Status information within the About Phone Settings page.
+ *
+ * <p>The status of the subscription is read in the background, so that the dialog shows right
+ * away, and each field is filled in as soon as it has been read. The carrier config is read once
+ * per subscription, and the telephony callbacks use the state they report instead of reading it
+ * again.
  */
 public class SimStatusDialogController implements LifecycleObserver {
 
@@ -106,7 +116,13 @@ public class SimStatusDialogController implements LifecycleObserver {
     @VisibleForTesting
     static final int MAX_PHONE_COUNT_SINGLE_SIM = 1;
 
-    private final OnSubscriptionsChangedListener mOnSubscriptionsChangedListener =
+    // Minimum interval between two updates of the signal strength, which the modem can report
+    // several times a second.
+    @VisibleForTesting
+    static final long SIGNAL_STRENGTH_UPDATE_INTERVAL_MS = 500;
+
+    @VisibleForTesting
+    final OnSubscriptionsChangedListener mOnSubscriptionsChangedListener =
             new OnSubscriptionsChangedListener() {
                 @Override
                 public void onSubscriptionsChanged() {
@@ -151,6 +167,48 @@ public class SimStatusDialogController implements LifecycleObserver {
     private boolean mShowLatestAreaInfo;
     private boolean mIsRegisteredListener = false;
 
+    private Executor mBackgroundExecutor = task -> SettingsExecutors.execute(
+            SettingsExecutors.POOL_UI_CRITICAL, "SimStatusDialogController#loadStatus", task);
+    private Executor mMainExecutor = SettingsExecutors::postOnMainThread;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Incremented when the subscription status is read again, to drop results of former reads.
+    private int mLoadGeneration;
+
+    // Carrier config of mCarrierConfigSubId, which is null when there is none.
+    private PersistableBundle mCarrierConfig;
+    private int mCarrierConfigSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+    // Latest state read or reported by the telephony callbacks.
+    private ServiceState mServiceState;
+    private SignalStrength mSignalStrength;
+    // Incremented when the above change, so that reads started before don't overwrite them.
+    private int mCarrierConfigVersion;
+    private int mServiceStateVersion;
+    private int mSignalStrengthVersion;
+    private boolean mIsCarrierConfigReceiverRegistered;
+    private long mLastSignalStrengthUpdateTime;
+    private final Runnable mSignalStrengthUpdate = () -> {
+        mLastSignalStrengthUpdateTime = SystemClock.uptimeMillis();
+        updateSignalStrength(mSignalStrength);
+    };
+
+    @VisibleForTesting
+    final BroadcastReceiver mCarrierConfigReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isInitialStickyBroadcast() || mSubscriptionInfo == null) {
+                return;
+            }
+            final int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
+                    SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+            if (subId == mSubscriptionInfo.getSubscriptionId()) {
+                // Read again the next time it is needed.
+                mCarrierConfig = null;
+                mCarrierConfigSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+                mCarrierConfigVersion++;
+            }
+        }
+    };
+
     private final BroadcastReceiver mAreaInfoReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -225,6 +283,12 @@ public class SimStatusDialogController implements LifecycleObserver {
         return mTelephonyManager;
     }
 
+    @VisibleForTesting
+    void setExecutorsForTesting(Executor backgroundExecutor, Executor mainExecutor) {
+        mBackgroundExecutor = backgroundExecutor;
+        mMainExecutor = mainExecutor;
+    }
+
     public void initialize() {
         if (mSubscriptionInfo == null) {
             return;
@@ -232,31 +296,112 @@ public class SimStatusDialogController implements LifecycleObserver {
         mTelephonyManager =
             getTelephonyManager().createForSubscriptionId(mSubscriptionInfo.getSubscriptionId());
         mTelephonyCallback = new SimStatusDialogTelephonyCallback();
+        if (!mIsCarrierConfigReceiverRegistered) {
+            mContext.registerReceiver(mCarrierConfigReceiver,
+                    new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED),
+                    Context.RECEIVER_EXPORTED/*UNAUDITED*/);
+            mIsCarrierConfigReceiverRegistered = true;
+        }
         updateLatestAreaInfo();
         updateSubscriptionStatus();
     }
 
     private void updateSubscriptionStatus() {
+        final int generation = ++mLoadGeneration;
         updateNetworkProvider();
+        updatePhoneNumber();
+
+        final SubscriptionInfo subscriptionInfo = mSubscriptionInfo;
+        final TelephonyManager telephonyManager = getTelephonyManager();
+        final int carrierConfigVersion = mCarrierConfigVersion;
+        final int serviceStateVersion = mServiceStateVersion;
+        final int signalStrengthVersion = mSignalStrengthVersion;
+        mBackgroundExecutor.execute(() -> {
+            final PersistableBundle carrierConfig = subscriptionInfo == null ? null
+                    : mCarrierConfigManager.getConfigForSubId(
+                            subscriptionInfo.getSubscriptionId());
+            postIfCurrent(generation, () -> {
+                if (subscriptionInfo != null && carrierConfigVersion == mCarrierConfigVersion) {
+                    mCarrierConfig = carrierConfig;
+                    mCarrierConfigSubId = subscriptionInfo.getSubscriptionId();
+                }
+                updateImsRegistrationState();
+            });
+
+            // getServiceState() may return null when the subscription is inactive
+            // or when there was an error communicating with the phone process.
+            final ServiceState serviceState = telephonyManager.getServiceState();
+            final SignalStrength signalStrength = telephonyManager.getSignalStrength();
+            postIfCurrent(generation, () -> {
+                // The callbacks may have reported newer states while these were read.
+                if (serviceStateVersion == mServiceStateVersion) {
+                    mServiceState = serviceState;
+                    updateServiceState(serviceState);
+                    updateRoamingStatus(serviceState);
+                }
+                if (signalStrengthVersion == mSignalStrengthVersion) {
+                    mSignalStrength = signalStrength;
+                    updateSignalStrength(signalStrength);
+                }
+            });
+
+            final int dataNetworkType = telephonyManager.getDataNetworkType();
+            final int voiceNetworkType = telephonyManager.getVoiceNetworkType();
+            postIfCurrent(generation,
+                    () -> updateNetworkType(dataNetworkType, voiceNetworkType));
+
+            // do not show iccid by default
+            final boolean showIccId = carrierConfig != null && carrierConfig.getBoolean(
+                    CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
+            final String iccId = showIccId ? telephonyManager.getSimSerialNumber() : null;
+            postIfCurrent(generation, () -> updateIccidNumber(showIccId, iccId));
+        });
+    }
 
-        // getServiceState() may return null when the subscription is inactive
-        // or when there was an error communicating with the phone process.
-        final ServiceState serviceState = getTelephonyManager().getServiceState();
-        final SignalStrength signalStrength = getTelephonyManager().getSignalStrength();
+    /** Reads the network types again, after a callback reported that they may have changed. */
+    private void loadNetworkType() {
+        final int generation = mLoadGeneration;
+        final TelephonyManager telephonyManager = getTelephonyManager();
+        mBackgroundExecutor.execute(() -> {
+            final int dataNetworkType = telephonyManager.getDataNetworkType();
+            final int voiceNetworkType = telephonyManager.getVoiceNetworkType();
+            postIfCurrent(generation,
+                    () -> updateNetworkType(dataNetworkType, voiceNetworkType));
+        });
+    }
 
-        updatePhoneNumber();
-        updateServiceState(serviceState);
-        updateSignalStrength(signalStrength);
-        updateNetworkType();
-        updateRoamingStatus(serviceState);
-        updateIccidNumber();
-        updateImsRegistrationState();
+    /**
+     * Runs {@code update} on the main thread, unless the status of the subscription was read
+     * again since {@code generation}.
+     */
+    private void postIfCurrent(int generation, Runnable update) {
+        mMainExecutor.execute(() -> {
+            if (generation == mLoadGeneration) {
+                update.run();
+            }
+        });
+    }
+
+    /** Returns the carrier config of the subscription, or null if there is none. */
+    @Nullable
+    private PersistableBundle getCarrierConfig() {
+        final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
+        if (mCarrierConfigSubId != subscriptionId) {
+            // Not read in the background yet.
+            mCarrierConfig = mCarrierConfigManager.getConfigForSubId(subscriptionId);
+            mCarrierConfigSubId = subscriptionId;
+        }
+        return mCarrierConfig;
     }
 
     /**
      * Deinitialization works
      */
     public void deinitialize() {
+        if (mIsCarrierConfigReceiverRegistered) {
+            mContext.unregisterReceiver(mCarrierConfigReceiver);
+            mIsCarrierConfigReceiverRegistered = false;
+        }
         if (mShowLatestAreaInfo) {
             if (mCellBroadcastServiceConnection != null
                     && mCellBroadcastServiceConnection.getService() != null) {
@@ -313,6 +458,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         unregisterImsRegistrationCallback(mSubscriptionInfo.getSubscriptionId());
         mSubscriptionManager.removeOnSubscriptionsChangedListener(mOnSubscriptionsChangedListener);
         getTelephonyManager().unregisterTelephonyCallback(mTelephonyCallback);
+        mHandler.removeCallbacks(mSignalStrengthUpdate);
 
         if (mShowLatestAreaInfo) {
             mContext.unregisterReceiver(mAreaInfoReceiver);
@@ -327,9 +473,14 @@ public class SimStatusDialogController implements LifecycleObserver {
 
     @VisibleForTesting
     public void updatePhoneNumber() {
-        // If formattedNumber is null or empty, it'll display as "Unknown".
-        mDialog.setText(PHONE_NUMBER_VALUE_ID,
-                SubscriptionUtil.getBidiFormattedPhoneNumber(mContext, mSubscriptionInfo));
+        final int generation = mLoadGeneration;
+        final SubscriptionInfo subscriptionInfo = mSubscriptionInfo;
+        mBackgroundExecutor.execute(() -> {
+            final String phoneNumber =
+                    SubscriptionUtil.getBidiFormattedPhoneNumber(mContext, subscriptionInfo);
+            // If formattedNumber is null or empty, it'll display as "Unknown".
+            postIfCurrent(generation, () -> mDialog.setText(PHONE_NUMBER_VALUE_ID, phoneNumber));
+        });
     }
 
     private void updateDataState(int state) {
@@ -448,7 +599,8 @@ public class SimStatusDialogController implements LifecycleObserver {
             resetSignalStrength();
         } else if (!Utils.isInService(mPreviousServiceState)) {
             // If ServiceState changed from out of service -> in service, update signal strength.
-            updateSignalStrength(getTelephonyManager().getSignalStrength());
+            // The signal strength callback reports every change, so the last one is current.
+            updateSignalStrength(mSignalStrength);
         }
 
         String serviceStateValue;
@@ -481,9 +633,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         // by default we show the signal strength
         boolean showSignalStrength = true;
         if (mSubscriptionInfo != null) {
-            final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
+            final PersistableBundle carrierConfig = getCarrierConfig();
             if (carrierConfig != null) {
                 showSignalStrength = carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL);
@@ -495,8 +645,7 @@ public class SimStatusDialogController implements LifecycleObserver {
             return;
         }
 
-        ServiceState serviceState = getTelephonyManager().getServiceState();
-        if (!Utils.isInService(serviceState)) {
+        if (!Utils.isInService(mServiceState)) {
             return;
         }
 
@@ -519,7 +668,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         mDialog.setText(SIGNAL_STRENGTH_VALUE_ID, "0");
     }
 
-    private void updateNetworkType() {
+    private void updateNetworkType(int actualDataNetworkType, int actualVoiceNetworkType) {
         // TODO: all of this should be based on TelephonyDisplayInfo instead of just the 5G logic
         if (mSubscriptionInfo == null) {
             final String unknownNetworkType =
@@ -532,9 +681,6 @@ public class SimStatusDialogController implements LifecycleObserver {
         // Whether EDGE, UMTS, etc...
         String dataNetworkTypeName = null;
         String voiceNetworkTypeName = null;
-        final int subId = mSubscriptionInfo.getSubscriptionId();
-        final int actualDataNetworkType = getTelephonyManager().getDataNetworkType();
-        final int actualVoiceNetworkType = getTelephonyManager().getVoiceNetworkType();
         final int overrideNetworkType = mTelephonyDisplayInfo == null
                 ? TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE
                 : mTelephonyDisplayInfo.getOverrideNetworkType();
@@ -555,7 +701,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         }
 
         boolean show4GForLTE = false;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle carrierConfig = getCarrierConfig();
         if (carrierConfig != null) {
             show4GForLTE = carrierConfig.getBoolean(
                     CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
@@ -585,23 +731,12 @@ public class SimStatusDialogController implements LifecycleObserver {
         }
     }
 
-    private void updateIccidNumber() {
-        // do not show iccid by default
-        boolean showIccId = false;
-        if (mSubscriptionInfo != null) {
-            final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
-            if (carrierConfig != null) {
-                showIccId = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
-            }
-        }
+    private void updateIccidNumber(boolean showIccId, String iccId) {
         if (!showIccId) {
             mDialog.removeSettingFromScreen(ICCID_INFO_LABEL_ID);
             mDialog.removeSettingFromScreen(ICCID_INFO_VALUE_ID);
         } else {
-            mDialog.setText(ICCID_INFO_VALUE_ID, getTelephonyManager().getSimSerialNumber());
+            mDialog.setText(ICCID_INFO_VALUE_ID, iccId);
         }
     }
 
@@ -609,9 +744,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         if (mSubscriptionInfo == null) {
             return false;
         }
-        final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-        final PersistableBundle carrierConfig =
-                mCarrierConfigManager.getConfigForSubId(subscriptionId);
+        final PersistableBundle carrierConfig = getCarrierConfig();
         return carrierConfig == null ? false :
                 carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL);
@@ -719,17 +852,26 @@ public class SimStatusDialogController implements LifecycleObserver {
         @Override
         public void onDataConnectionStateChanged(int state, int networkType) {
             updateDataState(state);
-            updateNetworkType();
+            loadNetworkType();
         }
 
         @Override
         public void onSignalStrengthsChanged(SignalStrength signalStrength) {
-            updateSignalStrength(signalStrength);
+            mSignalStrength = signalStrength;
+            mSignalStrengthVersion++;
+            // Coalesces bursts of updates into one every SIGNAL_STRENGTH_UPDATE_INTERVAL_MS.
+            if (!mHandler.hasCallbacks(mSignalStrengthUpdate)) {
+                final long delay = mLastSignalStrengthUpdateTime
+                        + SIGNAL_STRENGTH_UPDATE_INTERVAL_MS - SystemClock.uptimeMillis();
+                mHandler.postDelayed(mSignalStrengthUpdate, Math.max(0, delay));
+            }
         }
 
         @Override
         public void onServiceStateChanged(ServiceState serviceState) {
             updateNetworkProvider();
+            mServiceState = serviceState;
+            mServiceStateVersion++;
             updateServiceState(serviceState);
             updateRoamingStatus(serviceState);
             mPreviousServiceState = serviceState;
@@ -738,7 +880,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         @Override
         public void onDisplayInfoChanged(@NonNull TelephonyDisplayInfo displayInfo) {
             mTelephonyDisplayInfo = displayInfo;
-            updateNetworkType();
+            loadNetworkType();
         }
     }
 
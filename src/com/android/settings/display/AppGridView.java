@@ -36,6 +36,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.core.util.Preconditions;
 
 import com.android.settings.R;
+import com.android.settings.applications.PackageQueryCache;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -142,7 +143,8 @@ public class AppGridView extends GridView {
 
             final PackageManager pm = mPackageManager;
             final ArrayList<ActivityEntry> results = new ArrayList<>();
-            final List<ResolveInfo> infos = pm.queryIntentActivities(mainIntent, 0);
+            final List<ResolveInfo> infos = PackageQueryCache.getInstance(getContext())
+                    .queryIntentActivitiesAsUser(pm, mainIntent, 0, getContext().getUserId());
 
             if (mAppCount > infos.size()) {
                 Log.d(TAG, "Visible app icon count does not meet the target count.");
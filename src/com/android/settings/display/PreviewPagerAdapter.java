@@ -19,6 +19,9 @@ import android.animation.Animator;
 import android.animation.Animator.AnimatorListener;
 import android.content.Context;
 import android.content.res.Configuration;
+import android.os.Trace;
+import android.view.LayoutInflater;
+import android.view.ContextThemeWrapper;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewStub;
@@ -30,9 +33,15 @@ import android.widget.LinearLayout;
 
 import androidx.viewpager.widget.PagerAdapter;
 
+import com.android.settings.core.executor.SettingsExecutors;
+
 /**
  * A PagerAdapter used by PreviewSeekBarPreferenceFragment that for showing multiple preview screen
  * regarding a single setting and allowing the user to swipe across them.
+ *
+ * <p>Each preview frame holds one layer per configuration. Layers are inflated on first use, and
+ * the ones next to the layer being shown are inflated ahead of time in the background, so that
+ * moving the slider by one step doesn't inflate on the UI thread.
  */
 public class PreviewPagerAdapter extends PagerAdapter {
 
@@ -55,11 +64,31 @@ public class PreviewPagerAdapter extends PagerAdapter {
 
     private boolean[][] mViewStubInflated;
 
+    // Layers being inflated in the background, by frame and layer index.
+    private boolean[][] mLayerPending;
+
+    private final int[] mPreviewSampleResIds;
+
+    // One context per configuration, shared by the frames.
+    private final Context[] mConfigContexts;
+
+    // Distances between a layer and the layers the user can move to in one step.
+    private int[] mAdjacentLayerStrides = {1};
+
     public PreviewPagerAdapter(Context context, boolean isLayoutRtl,
             int[] previewSampleResIds, Configuration[] configurations) {
         mIsLayoutRtl = isLayoutRtl;
+        mPreviewSampleResIds = previewSampleResIds;
         mPreviewFrames = new FrameLayout[previewSampleResIds.length];
         mViewStubInflated = new boolean[previewSampleResIds.length][configurations.length];
+        mLayerPending = new boolean[previewSampleResIds.length][configurations.length];
+        mConfigContexts = new Context[configurations.length];
+        for (int j = 0; j < configurations.length; ++j) {
+            // Create a new configuration for the specified value. It won't
+            // have any theme set, so manually apply the current theme.
+            mConfigContexts[j] = context.createConfigurationContext(configurations[j]);
+            mConfigContexts[j].getTheme().setTo(context.getTheme());
+        }
 
         for (int i = 0; i < previewSampleResIds.length; ++i) {
             int p = mIsLayoutRtl ? previewSampleResIds.length - 1 - i : i;
@@ -70,17 +99,12 @@ public class PreviewPagerAdapter extends PagerAdapter {
             mPreviewFrames[p].setClipToPadding(true);
             mPreviewFrames[p].setClipChildren(true);
             for (int j = 0; j < configurations.length; ++j) {
-                // Create a new configuration for the specified value. It won't
-                // have any theme set, so manually apply the current theme.
-                final Context configContext = context.createConfigurationContext(configurations[j]);
-                configContext.getTheme().setTo(context.getTheme());
-
-                final ViewStub sampleViewStub = new ViewStub(configContext);
+                final ViewStub sampleViewStub = new ViewStub(mConfigContexts[j]);
                 sampleViewStub.setLayoutResource(previewSampleResIds[i]);
-                final int fi = i, fj = j;
+                final int fp = p, fj = j;
                 sampleViewStub.setOnInflateListener((stub, inflated) -> {
                     inflated.setVisibility(stub.getVisibility());
-                    mViewStubInflated[fi][fj] = true;
+                    mViewStubInflated[fp][fj] = true;
                 });
 
                 mPreviewFrames[p].addView(sampleViewStub);
@@ -117,6 +141,15 @@ public class PreviewPagerAdapter extends PagerAdapter {
         mAnimationEndAction = action;
     }
 
+    /**
+     * Sets the distances between a layer and the layers the user can switch to in one step, e.g.
+     * 1 and the number of display sizes when layers are ordered by font size then display size.
+     * The layers at these distances from the shown one are inflated ahead of time.
+     */
+    public void setAdjacentLayerStrides(int... strides) {
+        mAdjacentLayerStrides = strides;
+    }
+
     /**
      * Switches the sample layouts for the preview pager.
      *
@@ -146,7 +179,9 @@ public class PreviewPagerAdapter extends PagerAdapter {
             if (previewFrame == mPreviewFrames[currentFrameIndex]) {
                 // Inflate immediately if the stub has not yet been inflated.
                 if (!mViewStubInflated[currentFrameIndex][newLayerIndex]) {
+                    Trace.beginSection("PreviewPagerAdapter#inflateLayer");
                     nextLayer = ((ViewStub) nextLayer).inflate();
+                    Trace.endSection();
                     nextLayer.setAlpha(0.0f);
                 }
                 setVisibility(nextLayer, View.VISIBLE, animate);
@@ -154,6 +189,76 @@ public class PreviewPagerAdapter extends PagerAdapter {
                 setVisibility(nextLayer, View.VISIBLE, false);
             }
         }
+        preInflateAdjacentLayers(newLayerIndex);
+    }
+
+    private void preInflateAdjacentLayers(int layerIndex) {
+        for (int stride : mAdjacentLayerStrides) {
+            preInflateLayer(layerIndex - stride);
+            preInflateLayer(layerIndex + stride);
+        }
+    }
+
+    private void preInflateLayer(int layerIndex) {
+        if (layerIndex < 0 || layerIndex >= mConfigContexts.length) {
+            return;
+        }
+        for (int p = 0; p < mPreviewFrames.length; ++p) {
+            if (mViewStubInflated[p][layerIndex] || mLayerPending[p][layerIndex]) {
+                continue;
+            }
+            mLayerPending[p][layerIndex] = true;
+            final int i = mIsLayoutRtl ? mPreviewFrames.length - 1 - p : p;
+            final FrameLayout previewFrame = mPreviewFrames[p];
+            final LayoutInflater inflater = newBackgroundInflater(mConfigContexts[layerIndex]);
+            final int resId = mPreviewSampleResIds[i];
+            final int fp = p;
+            SettingsExecutors.execute(SettingsExecutors.POOL_UI_CRITICAL,
+                    "PreviewPagerAdapter#preInflateLayer", () -> {
+                        View layer;
+                        try {
+                            layer = inflater.inflate(resId, previewFrame,
+                                    /* attachToRoot= */ false);
+                        } catch (RuntimeException e) {
+                            // Views that can't be created off the UI thread are inflated from
+                            // their stub when shown.
+                            layer = null;
+                        }
+                        final View inflated = layer;
+                        SettingsExecutors.postOnMainThread(
+                                () -> attachLayer(fp, layerIndex, inflated));
+                    });
+        }
+    }
+
+    /**
+     * Returns an inflater that doesn't share its state or its theme with the inflations of the
+     * UI thread, like {@link androidx.asynclayoutinflater.view.AsyncLayoutInflater} does.
+     */
+    private static LayoutInflater newBackgroundInflater(Context configContext) {
+        final Context layerContext = new ContextThemeWrapper(configContext, /* themeResId= */ 0);
+        layerContext.getTheme().setTo(configContext.getTheme());
+        return LayoutInflater.from(configContext).cloneInContext(layerContext);
+    }
+
+    /** Replaces the stub of a layer inflated in the background by the inflated view. */
+    private void attachLayer(int frameIndex, int layerIndex, View layer) {
+        mLayerPending[frameIndex][layerIndex] = false;
+        if (layer == null || mViewStubInflated[frameIndex][layerIndex]) {
+            return;
+        }
+        final FrameLayout previewFrame = mPreviewFrames[frameIndex];
+        final View stub = previewFrame.getChildAt(layerIndex);
+        layer.setVisibility(stub.getVisibility());
+        // Hidden until shown, which fades it in like a layer inflated from its stub.
+        layer.setAlpha(0.0f);
+        previewFrame.removeViewAt(layerIndex);
+        if (stub.getLayoutParams() != null) {
+            previewFrame.addView(layer, layerIndex, stub.getLayoutParams());
+        } else {
+            previewFrame.addView(layer, layerIndex);
+        }
+        mViewStubInflated[frameIndex][layerIndex] = true;
     }
 
     private void setVisibility(final View view, final int visibility, boolean animate) {
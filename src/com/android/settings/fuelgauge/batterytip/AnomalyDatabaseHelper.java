@@ -145,6 +145,8 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
 
     private AnomalyDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets the UI query the database while the anomaly detection job writes to it.
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
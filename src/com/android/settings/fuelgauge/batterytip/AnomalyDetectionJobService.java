@@ -63,6 +63,9 @@ public class AnomalyDetectionJobService extends JobService {
     static final int STATSD_UID_FILED = 1;
     @VisibleForTesting
     static final long MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(30);
+    // Work items whose anomalies are committed, and then completed, together.
+    @VisibleForTesting
+    static final int WORK_CHUNK_SIZE = 20;
 
     private final Object mLock = new Object();
     @GuardedBy("mLock")
@@ -103,13 +106,34 @@ public class AnomalyDetectionJobService extends JobService {
             final MetricsFeatureProvider metricsFeatureProvider = FeatureFactory
                     .getFactory(this).getMetricsFeatureProvider();
 
-            for (JobWorkItem item = dequeueWork(params); item != null; item = dequeueWork(params)) {
-                saveAnomalyToDatabase(context, userManager,
-                        batteryDatabaseManager, batteryUtils, policy, powerAllowlistBackend,
-                        contentResolver, powerUsageFeatureProvider, metricsFeatureProvider,
-                        item.getIntent().getExtras());
-
-                completeWork(params, item);
+            // Dequeue and act on a chunk of work without holding any database lock, then commit
+            // its anomalies in one short transaction and only then complete its work items, so
+            // that a stopped job only gets the uncommitted chunk redelivered.
+            while (true) {
+                final List<JobWorkItem> items = dequeueWorkChunk(params);
+                if (items.isEmpty()) {
+                    break;
+                }
+                final List<PendingAnomaly> anomalies = new ArrayList<>(items.size());
+                for (JobWorkItem item : items) {
+                    final PendingAnomaly anomaly = resolveAnomaly(context, userManager,
+                            batteryUtils, policy, powerAllowlistBackend, contentResolver,
+                            powerUsageFeatureProvider, metricsFeatureProvider,
+                            item.getIntent().getExtras());
+                    if (anomaly != null) {
+                        anomalies.add(anomaly);
+                    }
+                }
+                if (!anomalies.isEmpty()) {
+                    batteryDatabaseManager.runInTransaction(() -> {
+                        for (PendingAnomaly anomaly : anomalies) {
+                            anomaly.insertInto(batteryDatabaseManager);
+                        }
+                    });
+                }
+                for (JobWorkItem item : items) {
+                    completeWork(params, item);
+                }
             }
         });
 
@@ -124,12 +148,43 @@ public class AnomalyDetectionJobService extends JobService {
         return true; // Need to reschedule
     }
 
+    /** Dequeues up to {@link #WORK_CHUNK_SIZE} work items, or none once the job is stopped. */
+    private List<JobWorkItem> dequeueWorkChunk(JobParameters params) {
+        final List<JobWorkItem> items = new ArrayList<>(WORK_CHUNK_SIZE);
+        while (items.size() < WORK_CHUNK_SIZE) {
+            final JobWorkItem item = dequeueWork(params);
+            if (item == null) {
+                break;
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
     @VisibleForTesting
     void saveAnomalyToDatabase(Context context, UserManager userManager,
             BatteryDatabaseManager databaseManager, BatteryUtils batteryUtils,
             BatteryTipPolicy policy, PowerAllowlistBackend powerAllowlistBackend,
             ContentResolver contentResolver, PowerUsageFeatureProvider powerUsageFeatureProvider,
             MetricsFeatureProvider metricsFeatureProvider, Bundle bundle) {
+        final PendingAnomaly anomaly = resolveAnomaly(context, userManager, batteryUtils, policy,
+                powerAllowlistBackend, contentResolver, powerUsageFeatureProvider,
+                metricsFeatureProvider, bundle);
+        if (anomaly != null) {
+            anomaly.insertInto(databaseManager);
+        }
+    }
+
+    /**
+     * Acts on the anomaly reported in {@code bundle}, e.g. by restricting the app, and returns
+     * what to save in the database, or {@code null} if it should not be saved.
+     */
+    @VisibleForTesting
+    PendingAnomaly resolveAnomaly(Context context, UserManager userManager,
+            BatteryUtils batteryUtils, BatteryTipPolicy policy,
+            PowerAllowlistBackend powerAllowlistBackend, ContentResolver contentResolver,
+            PowerUsageFeatureProvider powerUsageFeatureProvider,
+            MetricsFeatureProvider metricsFeatureProvider, Bundle bundle) {
         // The Example of intentDimsValue is: 35:{1:{1:{1:10013|}|}|}
         final StatsDimensionsValue intentDimsValue =
                 bundle.getParcelable(StatsManager.EXTRA_STATS_DIMENSIONS_VALUE);
@@ -158,15 +213,16 @@ public class AnomalyDetectionJobService extends JobService {
                         versionedPackage,
                         anomalyInfo.anomalyType);
             } else {
+                final PendingAnomaly anomaly;
                 if (autoFeatureOn && anomalyInfo.autoRestriction) {
                     // Auto restrict this app
                     batteryUtils.setForceAppStandby(uid, packageName,
                             AppOpsManager.MODE_IGNORED);
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
+                    anomaly = new PendingAnomaly(uid, packageName, anomalyInfo.anomalyType,
                             AnomalyDatabaseHelper.State.AUTO_HANDLED,
                             timeMs);
                 } else {
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
+                    anomaly = new PendingAnomaly(uid, packageName, anomalyInfo.anomalyType,
                             AnomalyDatabaseHelper.State.NEW,
                             timeMs);
                 }
@@ -175,11 +231,13 @@ public class AnomalyDetectionJobService extends JobService {
                         SettingsEnums.PAGE_UNKNOWN,
                         versionedPackage,
                         anomalyInfo.anomalyType);
+                return anomaly;
             }
 
         } catch (NullPointerException | IndexOutOfBoundsException e) {
             Log.e(TAG, "Parse stats dimensions value error.", e);
         }
+        return null;
     }
 
     /**
@@ -234,4 +292,26 @@ public class AnomalyDetectionJobService extends JobService {
             parameters.completeWork(item);
         }
     }
+
+    /** An anomaly to save in the database once its chunk of work is committed. */
+    @VisibleForTesting
+    static final class PendingAnomaly {
+        final int mUid;
+        final String mPackageName;
+        final int mType;
+        final int mState;
+        final long mTimeMs;
+
+        PendingAnomaly(int uid, String packageName, int type, int state, long timeMs) {
+            mUid = uid;
+            mPackageName = packageName;
+            mType = type;
+            mState = state;
+            mTimeMs = timeMs;
+        }
+
+        void insertInto(BatteryDatabaseManager databaseManager) {
+            databaseManager.insertAnomaly(mUid, mPackageName, mType, mState, mTimeMs);
+        }
+    }
 }
@@ -33,8 +33,10 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.Pair;
 import android.util.SparseLongArray;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.fuelgauge.batterytip.AnomalyDatabaseHelper.ActionColumns;
@@ -43,18 +45,29 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Database manager for battery data. Now it only contains anomaly data stored in {@link AppInfo}.
  *
- * This manager may be accessed by multi-threads. All the database related methods are synchronized
- * so each operation won't be interfered by other threads.
+ * This manager may be accessed by multi-threads. The database uses write-ahead logging, so
+ * queries run concurrently with each other and with writes, which SQLite serializes.
+ *
+ * The action table is also kept in memory once read, so that {@link #queryActionTime(int)} doesn't
+ * hit the database. Action writes and {@link #runInTransaction(Runnable)} hold a lock that keeps
+ * the copy consistent with the table.
  */
 public class BatteryDatabaseManager {
     private static BatteryDatabaseManager sSingleton;
 
     private AnomalyDatabaseHelper mDatabaseHelper;
 
+    private final Object mActionLock = new Object();
+    // Action type -> (uid, package name) -> timestamp, for the action types read so far. The maps
+    // are immutable and replaced on write, so they can be read without holding mActionLock.
+    private final Map<Integer, Map<Pair<Integer, String>, Long>> mActionTimes =
+            new ConcurrentHashMap<>();
+
     private BatteryDatabaseManager(Context context) {
         mDatabaseHelper = AnomalyDatabaseHelper.getInstance(context);
     }
@@ -81,7 +94,7 @@ public class BatteryDatabaseManager {
      * @param timestampMs  the time when it is happened
      * @return {@code true} if insert operation succeed
      */
-    public synchronized boolean insertAnomaly(int uid, String packageName, int type,
+    public boolean insertAnomaly(int uid, String packageName, int type,
             int anomalyState,
             long timestampMs) {
         final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
@@ -98,7 +111,7 @@ public class BatteryDatabaseManager {
     /**
      * Query all the anomalies that happened after {@code timestampMsAfter} and with {@code state}.
      */
-    public synchronized List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
+    public List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
         final List<AppInfo> appInfos = new ArrayList<>();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
         final String[] projection = {PACKAGE_NAME, ANOMALY_TYPE, UID};
@@ -131,7 +144,7 @@ public class BatteryDatabaseManager {
         return appInfos;
     }
 
-    public synchronized void deleteAllAnomaliesBeforeTimeStamp(long timestampMs) {
+    public void deleteAllAnomaliesBeforeTimeStamp(long timestampMs) {
         final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
         db.delete(TABLE_ANOMALY, TIME_STAMP_MS + " < ?",
                 new String[]{String.valueOf(timestampMs)});
@@ -143,7 +156,7 @@ public class BatteryDatabaseManager {
      * @param appInfos represents the anomalies
      * @param state    which state to update to
      */
-    public synchronized void updateAnomalies(List<AppInfo> appInfos, int state) {
+    public void updateAnomalies(List<AppInfo> appInfos, int state) {
         if (!appInfos.isEmpty()) {
             final int size = appInfos.size();
             final String[] whereArgs = new String[size];
@@ -159,62 +172,132 @@ public class BatteryDatabaseManager {
         }
     }
 
+    /**
+     * Runs {@code operations}, e.g. a batch of {@link #insertAnomaly} calls, in one transaction so
+     * that they are committed at once. Nothing is committed if {@code operations} throws.
+     */
+    public void runInTransaction(Runnable operations) {
+        // Always take mActionLock before the database lock, as action writes do.
+        synchronized (mActionLock) {
+            final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+            boolean successful = false;
+            db.beginTransactionNonExclusive();
+            try {
+                operations.run();
+                db.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                db.endTransaction();
+                if (!successful) {
+                    // Action writes may have been rolled back, read the table again.
+                    mActionTimes.clear();
+                }
+            }
+        }
+    }
+
     /**
      * Query latest timestamps when an app has been performed action {@code type}
      *
      * @param type of action been performed
      * @return {@link SparseLongArray} where key is uid and value is timestamp
      */
-    public synchronized SparseLongArray queryActionTime(
-            @AnomalyDatabaseHelper.ActionType int type) {
-        final SparseLongArray timeStamps = new SparseLongArray();
-        final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
-        final String[] projection = {ActionColumns.UID, ActionColumns.TIME_STAMP_MS};
-        final String selection = ActionColumns.ACTION_TYPE + " = ? ";
-        final String[] selectionArgs = new String[]{String.valueOf(type)};
-
-        try (Cursor cursor = db.query(TABLE_ACTION, projection, selection, selectionArgs,
-                null /* groupBy */, null /* having */, null /* orderBy */)) {
-            final int uidIndex = cursor.getColumnIndex(ActionColumns.UID);
-            final int timestampIndex = cursor.getColumnIndex(ActionColumns.TIME_STAMP_MS);
-
-            while (cursor.moveToNext()) {
-                final int uid = cursor.getInt(uidIndex);
-                final long timeStamp = cursor.getLong(timestampIndex);
-                timeStamps.append(uid, timeStamp);
+    public SparseLongArray queryActionTime(@AnomalyDatabaseHelper.ActionType int type) {
+        Map<Pair<Integer, String>, Long> actionTimes = mActionTimes.get(type);
+        if (actionTimes == null) {
+            synchronized (mActionLock) {
+                actionTimes = getActionTimesLocked(type);
             }
         }
 
+        final SparseLongArray timeStamps = new SparseLongArray(actionTimes.size());
+        for (Map.Entry<Pair<Integer, String>, Long> entry : actionTimes.entrySet()) {
+            final int uid = entry.getKey().first;
+            final long timeStamp = entry.getValue();
+            if (timeStamp > timeStamps.get(uid, Long.MIN_VALUE)) {
+                timeStamps.put(uid, timeStamp);
+            }
+        }
         return timeStamps;
     }
 
     /**
      * Insert an action, or update it if already existed
      */
-    public synchronized boolean insertAction(@AnomalyDatabaseHelper.ActionType int type,
+    public boolean insertAction(@AnomalyDatabaseHelper.ActionType int type,
             int uid, String packageName, long timestampMs) {
-        final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
-        final ContentValues values = new ContentValues();
-        values.put(ActionColumns.UID, uid);
-        values.put(ActionColumns.PACKAGE_NAME, packageName);
-        values.put(ActionColumns.ACTION_TYPE, type);
-        values.put(ActionColumns.TIME_STAMP_MS, timestampMs);
+        synchronized (mActionLock) {
+            final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+            final ContentValues values = new ContentValues();
+            values.put(ActionColumns.UID, uid);
+            values.put(ActionColumns.PACKAGE_NAME, packageName);
+            values.put(ActionColumns.ACTION_TYPE, type);
+            values.put(ActionColumns.TIME_STAMP_MS, timestampMs);
 
-        return db.insertWithOnConflict(TABLE_ACTION, null, values, CONFLICT_REPLACE) != -1;
+            final boolean inserted =
+                    db.insertWithOnConflict(TABLE_ACTION, null, values, CONFLICT_REPLACE) != -1;
+            if (inserted && mActionTimes.containsKey(type)) {
+                final Map<Pair<Integer, String>, Long> actionTimes =
+                        new ArrayMap<>(mActionTimes.get(type));
+                actionTimes.put(Pair.create(uid, packageName), timestampMs);
+                mActionTimes.put(type, Collections.unmodifiableMap(actionTimes));
+            }
+            return inserted;
+        }
     }
 
     /**
      * Remove an action
      */
-    public synchronized boolean deleteAction(@AnomalyDatabaseHelper.ActionType int type,
+    public boolean deleteAction(@AnomalyDatabaseHelper.ActionType int type,
             int uid, String packageName) {
-        SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
-        final String where =
-                ActionColumns.ACTION_TYPE + " = ? AND " + ActionColumns.UID + " = ? AND "
-                        + ActionColumns.PACKAGE_NAME + " = ? ";
-        final String[] whereArgs = new String[]{String.valueOf(type), String.valueOf(uid),
-                String.valueOf(packageName)};
-
-        return db.delete(TABLE_ACTION, where, whereArgs) != 0;
+        synchronized (mActionLock) {
+            SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+            final String where =
+                    ActionColumns.ACTION_TYPE + " = ? AND " + ActionColumns.UID + " = ? AND "
+                            + ActionColumns.PACKAGE_NAME + " = ? ";
+            final String[] whereArgs = new String[]{String.valueOf(type), String.valueOf(uid),
+                    String.valueOf(packageName)};
+
+            final boolean deleted = db.delete(TABLE_ACTION, where, whereArgs) != 0;
+            if (deleted && mActionTimes.containsKey(type)) {
+                final Map<Pair<Integer, String>, Long> actionTimes =
+                        new ArrayMap<>(mActionTimes.get(type));
+                actionTimes.remove(Pair.create(uid, packageName));
+                mActionTimes.put(type, Collections.unmodifiableMap(actionTimes));
+            }
+            return deleted;
+        }
+    }
+
+    @GuardedBy("mActionLock")
+    private Map<Pair<Integer, String>, Long> getActionTimesLocked(int type) {
+        final Map<Pair<Integer, String>, Long> cached = mActionTimes.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        final Map<Pair<Integer, String>, Long> actionTimes = new ArrayMap<>();
+        final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
+        final String[] projection = {ActionColumns.UID, ActionColumns.PACKAGE_NAME,
+                ActionColumns.TIME_STAMP_MS};
+        final String selection = ActionColumns.ACTION_TYPE + " = ? ";
+        final String[] selectionArgs = new String[]{String.valueOf(type)};
+
+        try (Cursor cursor = db.query(TABLE_ACTION, projection, selection, selectionArgs,
+                null /* groupBy */, null /* having */, null /* orderBy */)) {
+            final int uidIndex = cursor.getColumnIndex(ActionColumns.UID);
+            final int packageNameIndex = cursor.getColumnIndex(ActionColumns.PACKAGE_NAME);
+            final int timestampIndex = cursor.getColumnIndex(ActionColumns.TIME_STAMP_MS);
+
+            while (cursor.moveToNext()) {
+                actionTimes.put(
+                        Pair.create(cursor.getInt(uidIndex), cursor.getString(packageNameIndex)),
+                        cursor.getLong(timestampIndex));
+            }
+        }
+
+        final Map<Pair<Integer, String>, Long> result = Collections.unmodifiableMap(actionTimes);
+        mActionTimes.put(type, result);
+        return result;
     }
 }
@@ -19,12 +19,16 @@ package com.android.settings.fuelgauge.batterytip;
 import android.content.Context;
 import android.os.BatteryUsageStats;
 import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.DockDefenderDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.IncompatibleChargerDetector;
@@ -36,8 +40,11 @@ import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
@@ -45,6 +52,8 @@ import java.util.List;
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
+    // Detectors taking longer than this are logged as warnings.
+    private static final long SLOW_DETECTOR_MS = 200;
 
     private BatteryUsageStats mBatteryUsageStats;
     @VisibleForTesting
@@ -58,22 +67,74 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
 
     @Override
     public List<BatteryTip> loadInBackground() {
-        final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext().getApplicationContext();
         final boolean isPowerSaveMode =
                 context.getSystemService(PowerManager.class).isPowerSaveMode();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo, isPowerSaveMode).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo).detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo, context).detect());
-        tips.add(new DockDefenderDetector(batteryInfo, context).detect());
-        tips.add(new IncompatibleChargerDetector(context).detect());
+        // The detectors only read the battery info and usage stats, so they can share them and
+        // run concurrently.
+        final List<BatteryTipDetector> detectors = Arrays.asList(
+                new LowBatteryDetector(context, policy, batteryInfo, isPowerSaveMode),
+                new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo),
+                new BatteryDefenderDetector(batteryInfo, context),
+                new DockDefenderDetector(batteryInfo, context),
+                new IncompatibleChargerDetector(context));
+        final long[] durationsMs = new long[detectors.size()];
+        final List<Future<BatteryTip>> futures = new ArrayList<>(detectors.size());
+        for (int i = 0; i < detectors.size(); i++) {
+            final BatteryTipDetector detector = detectors.get(i);
+            final int index = i;
+            futures.add(SettingsExecutors.submit(SettingsExecutors.POOL_BACKGROUND,
+                    TAG + "#" + detector.getClass().getSimpleName(), () -> {
+                        final long startTimeMs = SystemClock.elapsedRealtime();
+                        try {
+                            return detector.detect();
+                        } finally {
+                            durationsMs[index] = SystemClock.elapsedRealtime() - startTimeMs;
+                        }
+                    }));
+        }
+
+        final List<BatteryTip> tips = new ArrayList<>(detectors.size());
+        try {
+            for (Future<BatteryTip> future : futures) {
+                tips.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            // The load was cancelled and its result will be discarded.
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(/* mayInterruptIfRunning= */ true));
+            return tips;
+        }
+        logDurations(detectors, durationsMs);
         Collections.sort(tips);
         return tips;
     }
 
+    private static void logDurations(List<BatteryTipDetector> detectors, long[] durationsMs) {
+        final StringBuilder builder = new StringBuilder("detect() took");
+        boolean slow = false;
+        for (int i = 0; i < detectors.size(); i++) {
+            builder.append(i == 0 ? " " : ", ")
+                    .append(detectors.get(i).getClass().getSimpleName())
+                    .append('=').append(durationsMs[i]).append("ms");
+            slow |= durationsMs[i] >= SLOW_DETECTOR_MS;
+        }
+        if (slow) {
+            Log.w(TAG, builder.toString());
+        } else {
+            Log.d(TAG, builder.toString());
+        }
+    }
+
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {
     }
@@ -34,7 +34,10 @@ import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -76,29 +79,14 @@ public class HighUsageDetector implements BatteryTipDetector {
             if (mDataParser.isDeviceHeavilyUsed() || mPolicy.testHighUsageTip) {
                 final double totalPower = mBatteryUsageStats.getConsumedPower();
                 final int dischargeAmount = mBatteryUsageStats.getDischargePercentage();
-                final List<UidBatteryConsumer> uidBatteryConsumers =
-                        mBatteryUsageStats.getUidBatteryConsumers();
-                // Sort by descending power
-                uidBatteryConsumers.sort(
-                        (consumer1, consumer2) -> Double.compare(consumer2.getConsumedPower(),
-                                consumer1.getConsumedPower()));
-                for (UidBatteryConsumer consumer : uidBatteryConsumers) {
-                    final double percent = mBatteryUtils.calculateBatteryPercent(
-                            consumer.getConsumedPower(), totalPower, dischargeAmount);
-                    if ((percent + 0.5f < 1f)
-                            || mBatteryUtils.shouldHideUidBatteryConsumer(consumer)) {
-                        // Don't show it if we should hide or usage percentage is lower than 1%
-                        continue;
-                    }
-
+                for (UidBatteryConsumer consumer : selectTopConsumers(
+                        mBatteryUsageStats.getUidBatteryConsumers(), totalPower,
+                        dischargeAmount, mPolicy.highUsageAppCount)) {
                     mHighUsageAppList.add(new AppInfo.Builder()
                             .setUid(consumer.getUid())
                             .setPackageName(
                                     mBatteryUtils.getPackageName(consumer.getUid()))
                             .build());
-                    if (mHighUsageAppList.size() >= mPolicy.highUsageAppCount) {
-                        break;
-                    }
                 }
 
                 // When in test mode, add an app if necessary
@@ -114,6 +102,49 @@ public class HighUsageDetector implements BatteryTipDetector {
         return new HighUsageTip(lastFullChargeTimeMs, mHighUsageAppList);
     }
 
+    /**
+     * Returns the {@code count} consumers using the most power, in descending order, skipping
+     * the ones that should be hidden or used less than 1% of the battery. Ties keep the order of
+     * {@code consumers}, which is left untouched since it is shared with other detectors.
+     */
+    private List<UidBatteryConsumer> selectTopConsumers(List<UidBatteryConsumer> consumers,
+            double totalPower, int dischargeAmount, int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        // Min-heap of the best consumers so far, holding indexes into consumers. The root is the
+        // one to evict first: the lowest power, or the latest among equal powers.
+        final Comparator<Integer> order = (index1, index2) -> {
+            final int byPower = Double.compare(consumers.get(index1).getConsumedPower(),
+                    consumers.get(index2).getConsumedPower());
+            return byPower != 0 ? byPower : Integer.compare(index2, index1);
+        };
+        final PriorityQueue<Integer> top = new PriorityQueue<>(count, order);
+        for (int i = 0, size = consumers.size(); i < size; i++) {
+            final UidBatteryConsumer consumer = consumers.get(i);
+            if (top.size() >= count && order.compare(i, top.peek()) <= 0) {
+                continue;
+            }
+            final double percent = mBatteryUtils.calculateBatteryPercent(
+                    consumer.getConsumedPower(), totalPower, dischargeAmount);
+            if ((percent + 0.5f < 1f) || mBatteryUtils.shouldHideUidBatteryConsumer(consumer)) {
+                // Don't show it if we should hide or usage percentage is lower than 1%
+                continue;
+            }
+            top.offer(i);
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        final List<UidBatteryConsumer> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(consumers.get(top.poll()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
     @VisibleForTesting
     void parseBatteryData() {
         try {
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.drawable.Icon;
+import android.os.Trace;
+import android.text.TextUtils;
+import android.util.ArraySet;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroupAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.dashboard.DashboardFeatureProvider;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.drawer.CategoryKey;
+import com.android.settingslib.drawer.DashboardCategory;
+import com.android.settingslib.drawer.Tile;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Schedules the startup work of {@link SettingsHomepageActivity} from what recent launches
+ * actually showed in their first frame.
+ *
+ * <p>The keys of the homepage rows in the first frame of a launch, and whether the contextual
+ * cards took any space by the time the homepage stopped, are recorded for the last
+ * {@link #MAX_RECORDED_LAUNCHES} launches. The next launch then loads the homepage tiles in
+ * parallel with the inflation of the activity, warming the icons of the recorded tiles only, and
+ * delays the contextual cards until after the first frame when recent launches didn't show any.
+ *
+ * <p>The profile is read by the prefetch task, off the UI thread. Until it has been read, every
+ * row and the contextual cards count as needed, as they do without a profile.
+ *
+ * <p>Each phase shows up in traces as a {@code HomepageStartup#} section.
+ */
+class HomepageStartupScheduler {
+
+    private static final String TAG = "HomepageStartup";
+    @VisibleForTesting
+    static final String PREFS_NAME = "homepage_startup_profile";
+    @VisibleForTesting
+    static final int MAX_RECORDED_LAUNCHES = 5;
+    private static final String PREF_LAUNCH = "launch_";
+    private static final String PREF_NEXT_LAUNCH = "next_launch";
+    private static final String KEY_CARDS = "#cards";
+    private static final String PREFETCH_SECTION = "HomepageStartup#prefetch";
+
+    private final Context mContext;
+    // Union of the keys recorded by the recent launches, null if nothing was recorded yet or the
+    // profile was not read yet.
+    @Nullable
+    private volatile Set<String> mNeededKeys;
+    @Nullable
+    private Set<String> mFirstFrameKeys;
+    private boolean mRecorded;
+
+    HomepageStartupScheduler(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /** Reads the launches recorded by the previous launches. */
+    @VisibleForTesting
+    @WorkerThread
+    void loadProfile() {
+        final SharedPreferences prefs = getPrefs();
+        Set<String> neededKeys = null;
+        for (int i = 0; i < MAX_RECORDED_LAUNCHES; i++) {
+            final Set<String> keys = prefs.getStringSet(PREF_LAUNCH + i, null);
+            if (keys != null) {
+                if (neededKeys == null) {
+                    neededKeys = new ArraySet<>();
+                }
+                neededKeys.addAll(keys);
+            }
+        }
+        mNeededKeys = neededKeys;
+    }
+
+    /** Runs {@code phase} within a trace section. */
+    static void tracePhase(@NonNull String name, @NonNull Runnable phase) {
+        Trace.beginSection(TAG + "#" + name);
+        try {
+            phase.run();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /** Whether recent launches were recorded, and read. */
+    boolean hasProfile() {
+        return mNeededKeys != null;
+    }
+
+    /** Whether the row with the given key was in the first frame of any recent launch. */
+    boolean isNeededAtStartup(@NonNull String key) {
+        final Set<String> neededKeys = mNeededKeys;
+        return neededKeys == null || neededKeys.contains(key);
+    }
+
+    /** Whether the contextual cards were shown by any recent launch. */
+    boolean areCardsNeededAtStartup() {
+        return isNeededAtStartup(KEY_CARDS);
+    }
+
+    /**
+     * Starts reading the profile, then loading the homepage tiles in the background, so that the
+     * homepage finds them ready when it gets created.
+     */
+    void prefetch() {
+        final int cookie = System.identityHashCode(this);
+        Trace.beginAsyncSection(PREFETCH_SECTION, cookie);
+        SettingsExecutors.execute(SettingsExecutors.POOL_UI_CRITICAL, "HomepageStartup#prefetch",
+                () -> {
+                    try {
+                        loadProfile();
+                        prefetchTiles();
+                    } finally {
+                        Trace.endAsyncSection(PREFETCH_SECTION, cookie);
+                    }
+                });
+    }
+
+    private void prefetchTiles() {
+        final DashboardFeatureProvider dashboardFeatureProvider =
+                FeatureFactory.getFactory(mContext).getDashboardFeatureProvider(mContext);
+        final DashboardCategory category =
+                dashboardFeatureProvider.getTilesForCategory(CategoryKey.CATEGORY_HOMEPAGE);
+        if (category == null || !hasProfile()) {
+            return;
+        }
+        for (Tile tile : category.getTiles()) {
+            final String key = dashboardFeatureProvider.getDashboardKeyForTile(tile);
+            if (key == null || !isNeededAtStartup(key)) {
+                continue;
+            }
+            // Loading the drawable once leaves it in the resources cache of its package.
+            final Icon icon = tile.getIcon(mContext);
+            if (icon != null) {
+                try {
+                    icon.loadDrawable(mContext);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Can't prefetch the icon of " + key, e);
+                }
+            }
+        }
+    }
+
+    /** Runs {@code task} once {@code view} has been drawn for the first time. */
+    static void runAfterFirstDraw(@NonNull View view, @NonNull String phase,
+            @NonNull Runnable task) {
+        final ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            private boolean mDrawn;
+
+            @Override
+            public void onDraw() {
+                if (mDrawn) {
+                    return;
+                }
+                mDrawn = true;
+                // Listeners can't be removed while the frame is drawn, and the task must not
+                // delay it.
+                view.post(() -> {
+                    view.getViewTreeObserver().removeOnDrawListener(this);
+                    tracePhase(phase, task);
+                });
+            }
+        };
+        view.getViewTreeObserver().addOnDrawListener(listener);
+    }
+
+    /** Notes the homepage rows attached to {@code listView} in the first frame. */
+    void recordFirstFrame(@Nullable RecyclerView listView) {
+        if (mFirstFrameKeys != null) {
+            return;
+        }
+        final Set<String> keys = new ArraySet<>();
+        if (listView != null && listView.getAdapter() instanceof PreferenceGroupAdapter) {
+            final PreferenceGroupAdapter adapter = (PreferenceGroupAdapter) listView.getAdapter();
+            for (int i = 0; i < listView.getChildCount(); i++) {
+                final int position = listView.getChildAdapterPosition(listView.getChildAt(i));
+                if (position == RecyclerView.NO_POSITION || position >= adapter.getItemCount()) {
+                    continue;
+                }
+                final Preference preference = adapter.getItem(position);
+                if (preference != null && !TextUtils.isEmpty(preference.getKey())) {
+                    keys.add(preference.getKey());
+                }
+            }
+        }
+        mFirstFrameKeys = keys;
+    }
+
+    /**
+     * Saves what this launch needed, once: the rows of its first frame, and whether
+     * {@code cardsView} takes any space.
+     */
+    void save(@Nullable View cardsView) {
+        if (mFirstFrameKeys == null || mRecorded) {
+            return;
+        }
+        mRecorded = true;
+        final Set<String> keys = mFirstFrameKeys;
+        final boolean cardsShown = cardsView != null && cardsView.getHeight() > 0;
+        SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND, "HomepageStartup#save",
+                () -> recordLaunch(keys, cardsShown));
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    void recordLaunch(@NonNull Set<String> keys, boolean cardsShown) {
+        mRecorded = true;
+        final SharedPreferences prefs = getPrefs();
+        final Set<String> launch = new ArraySet<>(keys);
+        if (cardsShown) {
+            launch.add(KEY_CARDS);
+        }
+        // Overwrites the oldest launch.
+        final int slot = prefs.getInt(PREF_NEXT_LAUNCH, 0) % MAX_RECORDED_LAUNCHES;
+        prefs.edit()
+                .putStringSet(PREF_LAUNCH + slot, Collections.unmodifiableSet(launch))
+                .putInt(PREF_NEXT_LAUNCH, (slot + 1) % MAX_RECORDED_LAUNCHES)
+                .apply();
+    }
+
+    private SharedPreferences getPrefs() {
+        return mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -36,6 +36,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Process;
+import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
@@ -120,6 +121,9 @@ public class SettingsHomepageActivity extends FragmentActivity implements
     private View mSuggestionView;
     private View mTwoPaneSuggestionView;
     private CategoryMixin mCategoryMixin;
+    private HomepageStartupScheduler mStartupScheduler;
+    // Whether the contextual cards are to be shown once the state can be changed again.
+    private boolean mContextualCardsPending;
     private Set<HomepageLoadedListener> mLoadedListeners;
     private boolean mIsEmbeddingActivityEnabled;
     private boolean mIsTwoPane;
@@ -215,6 +219,11 @@ public class SettingsHomepageActivity extends FragmentActivity implements
             }
         }
 
+        mStartupScheduler = new HomepageStartupScheduler(this);
+        // Load the homepage tiles while the activity inflates.
+        mStartupScheduler.prefetch();
+
+        Trace.beginSection("HomepageStartup#inflate");
         setupEdgeToEdge();
         setContentView(R.layout.settings_homepage_container);
 
@@ -278,7 +287,9 @@ public class SettingsHomepageActivity extends FragmentActivity implements
            homepageTitleView.setText(getResources().getString(R.string.top_level_settings_title));
         }
         // Homepage redesign end
+        Trace.endSection();
 
+        Trace.beginSection("HomepageStartup#fragments");
         getLifecycle().addObserver(new HideNonSystemOverlayMixin(this));
         mCategoryMixin = new CategoryMixin(this);
         getLifecycle().addObserver(mCategoryMixin);
@@ -290,7 +301,13 @@ public class SettingsHomepageActivity extends FragmentActivity implements
                     && !TextUtils.equals(getString(DEFAULT_HIGHLIGHT_MENU_KEY), highlightMenuKey);
             showSuggestionFragment(scrollNeeded);
             if (FeatureFlagUtils.isEnabled(this, FeatureFlags.CONTEXTUAL_HOME)) {
-                showFragment(() -> new ContextualCardsFragment(), R.id.contextual_cards_content);
+                if (mStartupScheduler.areCardsNeededAtStartup()) {
+                    showContextualCards();
+                } else {
+                    // Recent launches showed no cards, don't let them delay the first frame.
+                    HomepageStartupScheduler.runAfterFirstDraw(getWindow().getDecorView(),
+                            "showContextualCards", this::showContextualCards);
+                }
                 ((FrameLayout) findViewById(R.id.main_content))
                         .getLayoutTransition().enableTransitionType(LayoutTransition.CHANGING);
             }
@@ -301,6 +318,10 @@ public class SettingsHomepageActivity extends FragmentActivity implements
                     highlightMenuKey);
             return fragment;
         }, R.id.main_content);
+        HomepageStartupScheduler.runAfterFirstDraw(getWindow().getDecorView(),
+                "recordFirstFrame",
+                () -> mStartupScheduler.recordFirstFrame(mMainFragment.getListView()));
+        Trace.endSection();
 
         // Launch the intent from deep link for large screen devices.
         if (shouldLaunchDeepLinkIntentToRight()) {
@@ -314,12 +335,27 @@ public class SettingsHomepageActivity extends FragmentActivity implements
             initSplitPairRules();
         }
 
+        Trace.beginSection("HomepageStartup#splitLayout");
         updateHomepagePaddings();
         updateSplitLayout();
+        Trace.endSection();
 
         enableTaskLocaleOverride();
     }
 
+    private void showContextualCards() {
+        if (isFinishing()) {
+            return;
+        }
+        if (getSupportFragmentManager().isStateSaved()) {
+            // Shown when the activity is started again.
+            mContextualCardsPending = true;
+            return;
+        }
+        mContextualCardsPending = false;
+        showFragment(() -> new ContextualCardsFragment(), R.id.contextual_cards_content);
+    }
+
     public String getGreetings(boolean isTitle) {
         String[] randomMsgSearch = getResources().getStringArray(R.array.settings_random);
         String[] morningMsg = getResources().getStringArray(R.array.dashboard_morning);
@@ -387,6 +423,17 @@ public class SettingsHomepageActivity extends FragmentActivity implements
     protected void onStart() {
         ((SettingsApplication) getApplication()).setHomeActivity(this);
         super.onStart();
+        if (mContextualCardsPending) {
+            showContextualCards();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        if (mStartupScheduler != null) {
+            mStartupScheduler.save(findViewById(R.id.contextual_cards_content));
+        }
+        super.onStop();
     }
 
     @Override
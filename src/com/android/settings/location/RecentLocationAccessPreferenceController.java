@@ -33,19 +33,22 @@ import com.android.settings.R;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settingslib.applications.RecentAppOpsAccess;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
+import com.android.settingslib.core.lifecycle.events.OnStart;
+import com.android.settingslib.core.lifecycle.events.OnStop;
 import com.android.settingslib.utils.StringUtil;
 import com.android.settingslib.widget.AppPreference;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Preference controller that handles the display of apps that access locations.
  */
-public class RecentLocationAccessPreferenceController extends LocationBasePreferenceController {
+public class RecentLocationAccessPreferenceController extends LocationBasePreferenceController
+        implements LifecycleObserver, OnStart, OnStop,
+        RecentLocationAccessSnapshot.Listener {
     public static final int MAX_APPS = 3;
-    @VisibleForTesting
-    RecentAppOpsAccess mRecentLocationApps;
+    private final RecentLocationAccessSnapshot mRecentLocationAccesses;
     private PreferenceCategory mCategoryRecentLocationRequests;
     private int mType = ProfileSelectFragment.ProfileType.ALL;
     private boolean mShowSystem = false;
@@ -76,14 +79,19 @@ public class RecentLocationAccessPreferenceController extends LocationBasePrefer
     }
 
     public RecentLocationAccessPreferenceController(Context context, String key) {
-        this(context, key, RecentAppOpsAccess.createForLocation(context));
+        this(context, key, RecentLocationAccessSnapshot.get(context));
     }
 
     @VisibleForTesting
     public RecentLocationAccessPreferenceController(Context context, String key,
             RecentAppOpsAccess recentLocationApps) {
+        this(context, key, new RecentLocationAccessSnapshot(context, recentLocationApps));
+    }
+
+    private RecentLocationAccessPreferenceController(Context context, String key,
+            RecentLocationAccessSnapshot recentLocationAccesses) {
         super(context, key);
-        mRecentLocationApps = recentLocationApps;
+        mRecentLocationAccesses = recentLocationAccesses;
         mShowSystem = DeviceConfig.getBoolean(DeviceConfig.NAMESPACE_PRIVACY,
                 SystemUiDeviceConfigFlags.PROPERTY_LOCATION_INDICATORS_SMALL_ENABLED, false)
                 ? Settings.Secure.getInt(mContext.getContentResolver(),
@@ -99,6 +107,23 @@ public class RecentLocationAccessPreferenceController extends LocationBasePrefer
         loadRecentAccesses();
     }
 
+    @Override
+    public void onStart() {
+        mRecentLocationAccesses.addListener(this);
+    }
+
+    @Override
+    public void onStop() {
+        mRecentLocationAccesses.removeListener(this);
+    }
+
+    @Override
+    public void onRecentLocationAccessesChanged() {
+        if (mCategoryRecentLocationRequests != null) {
+            loadRecentAccesses();
+        }
+    }
+
     @Override
     public void updateState(Preference preference) {
         // Only reload the recent accesses in updateState if the system setting has changed.
@@ -111,16 +136,10 @@ public class RecentLocationAccessPreferenceController extends LocationBasePrefer
     private void loadRecentAccesses() {
         mCategoryRecentLocationRequests.removeAll();
         final Context prefContext = mCategoryRecentLocationRequests.getContext();
-        final List<RecentAppOpsAccess.Access> recentLocationAccesses = new ArrayList<>();
-        final UserManager userManager = UserManager.get(mContext);
-        for (RecentAppOpsAccess.Access access : mRecentLocationApps.getAppListSorted(mShowSystem)) {
-            if (isRequestMatchesProfileType(userManager, access, mType)) {
-                recentLocationAccesses.add(access);
-                if (recentLocationAccesses.size() == MAX_APPS) {
-                    break;
-                }
-            }
-        }
+        final List<RecentAppOpsAccess.Access> accesses =
+                mRecentLocationAccesses.getAccesses(mShowSystem, mType);
+        final List<RecentAppOpsAccess.Access> recentLocationAccesses =
+                accesses.subList(0, Math.min(accesses.size(), MAX_APPS));
 
         if (recentLocationAccesses.size() > 0) {
             // Add preferences to container in original order (already sorted by recency).
@@ -16,10 +16,8 @@
 package com.android.settings.location;
 
 import static com.android.settings.location.RecentLocationAccessPreferenceController.createAppPreference;
-import static com.android.settings.location.RecentLocationAccessPreferenceController.isRequestMatchesProfileType;
 
 import android.content.Context;
-import android.os.UserManager;
 import android.provider.DeviceConfig;
 import android.provider.Settings;
 
@@ -31,17 +29,20 @@ import com.android.settings.R;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.applications.RecentAppOpsAccess;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
+import com.android.settingslib.core.lifecycle.events.OnStart;
+import com.android.settingslib.core.lifecycle.events.OnStop;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.widget.AppPreference;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /** Preference controller for preference category displaying all recent location access (apps). */
 public class RecentLocationAccessSeeAllPreferenceController
-        extends LocationBasePreferenceController {
+        extends LocationBasePreferenceController
+        implements LifecycleObserver, OnStart, OnStop, RecentLocationAccessSnapshot.Listener {
 
-    private final RecentAppOpsAccess mRecentLocationAccesses;
+    private final RecentLocationAccessSnapshot mRecentLocationAccesses;
 
     private PreferenceScreen mCategoryAllRecentLocationAccess;
     private MetricsFeatureProvider mMetricsFeatureProvider;
@@ -56,7 +57,7 @@ public class RecentLocationAccessSeeAllPreferenceController
             Settings.Secure.LOCATION_SHOW_SYSTEM_OPS, 0) == 1
             : false;
 
-        mRecentLocationAccesses = RecentAppOpsAccess.createForLocation(context);
+        mRecentLocationAccesses = RecentLocationAccessSnapshot.get(context);
         mMetricsFeatureProvider = FeatureFactory.getFactory(context).getMetricsFeatureProvider();
     }
 
@@ -71,21 +72,31 @@ public class RecentLocationAccessSeeAllPreferenceController
         mCategoryAllRecentLocationAccess = screen.findPreference(getPreferenceKey());
     }
 
+    @Override
+    public void onStart() {
+        mRecentLocationAccesses.addListener(this);
+    }
+
+    @Override
+    public void onStop() {
+        mRecentLocationAccesses.removeListener(this);
+    }
+
+    @Override
+    public void onRecentLocationAccessesChanged() {
+        if (mPreference != null) {
+            updateState(mPreference);
+        }
+    }
+
     @Override
     public void updateState(Preference preference) {
         mCategoryAllRecentLocationAccess.removeAll();
         mPreference = preference;
 
-        final UserManager userManager = UserManager.get(mContext);
-
-        final List<RecentAppOpsAccess.Access> recentLocationAccesses = new ArrayList<>();
-        for (RecentAppOpsAccess.Access access : mRecentLocationAccesses.getAppListSorted(
-                mShowSystem)) {
-            if (isRequestMatchesProfileType(
-                    userManager, access, ProfileSelectFragment.ProfileType.ALL)) {
-                recentLocationAccesses.add(access);
-            }
-        }
+        final List<RecentAppOpsAccess.Access> recentLocationAccesses =
+                mRecentLocationAccesses.getAccesses(mShowSystem,
+                        ProfileSelectFragment.ProfileType.ALL);
 
         if (recentLocationAccesses.isEmpty()) {
             // If there's no item to display, add a "No recent apps" item.
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.location;
+
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
+import com.android.settingslib.applications.RecentAppOpsAccess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The recent location accesses shared by the controllers of the location pages, so that the
+ * AppOps history, labels and icons are loaded once for all of them instead of once per
+ * controller.
+ *
+ * <p>While a page listens to it, and for a short while after it was read, the snapshot follows
+ * the location AppOps becoming active and inactive: an app that is already listed moves to the
+ * top with its label and icon kept, and a list that misses the app is reloaded in background.
+ * Apps that a reload still didn't list, e.g. hidden system apps, are ignored from then on. The
+ * changes of {@link #CHANGE_DELAY_MS} are handled at once, so that apps using location all the
+ * time don't keep the page busy. Once changes are no longer followed, the lists are reloaded on
+ * next use.
+ *
+ * <p>Must be used from the main thread.
+ */
+@MainThread
+class RecentLocationAccessSnapshot implements AppOpsManager.OnOpActiveChangedListener {
+
+    /** Notified when the recent location accesses changed. */
+    interface Listener {
+        void onRecentLocationAccessesChanged();
+    }
+
+    private static final String TAG = "RecentLocationAccess";
+    private static final String[] LOCATION_OPS = {
+            AppOpsManager.OPSTR_FINE_LOCATION,
+            AppOpsManager.OPSTR_COARSE_LOCATION,
+    };
+    // Keeps following changes for a while without listeners, e.g. while the next location page
+    // starts.
+    private static final long STOP_WATCHING_DELAY_MS = 10 * 1000;
+    @VisibleForTesting
+    static final long CHANGE_DELAY_MS = 1000;
+
+    private static RecentLocationAccessSnapshot sInstance;
+
+    private final Context mContext;
+    private final RecentAppOpsAccess mRecentAccess;
+    private final UserManager mUserManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mStopWatching = this::stopWatching;
+    private final Runnable mHandleChanges = this::handleChanges;
+    private final Set<Listener> mListeners = new ArraySet<>();
+    // Sorted accesses by whether system accesses are shown, then by profile type.
+    private final Map<Boolean, List<RecentAppOpsAccess.Access>> mAccesses = new ArrayMap<>();
+    private final Map<Integer, List<RecentAppOpsAccess.Access>> mProfileAccesses =
+            new ArrayMap<>();
+    private final SparseBooleanArray mManagedProfiles = new SparseBooleanArray();
+    // Apps that became active and that a list misses, by whether system accesses are shown.
+    private final Map<Boolean, Set<String>> mPendingApps = new ArrayMap<>();
+    // Apps that a list didn't show even after a reload, by whether system accesses are shown.
+    private final Map<Boolean, Set<String>> mHiddenApps = new ArrayMap<>();
+    private boolean mWatching;
+    private boolean mReloading;
+    // Changes whenever the lists are dropped, so that older reloads are ignored.
+    private int mGeneration;
+
+    /** Returns the snapshot shared by the whole process. */
+    static RecentLocationAccessSnapshot get(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new RecentLocationAccessSnapshot(appContext,
+                    RecentAppOpsAccess.createForLocation(appContext));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    RecentLocationAccessSnapshot(@NonNull Context context,
+            @NonNull RecentAppOpsAccess recentAccess) {
+        mContext = context;
+        mRecentAccess = recentAccess;
+        mUserManager = context.getSystemService(UserManager.class);
+    }
+
+    /**
+     * Returns the apps that recently accessed location, the most recent first.
+     *
+     * @param showSystem whether to include the accesses of system apps.
+     */
+    @NonNull
+    List<RecentAppOpsAccess.Access> getAccesses(boolean showSystem) {
+        startWatching();
+        List<RecentAppOpsAccess.Access> accesses = mAccesses.get(showSystem);
+        if (accesses == null) {
+            accesses = new ArrayList<>(mRecentAccess.getAppListSorted(showSystem));
+            if (mWatching) {
+                mAccesses.put(showSystem, accesses);
+            }
+        }
+        return Collections.unmodifiableList(accesses);
+    }
+
+    /**
+     * Returns the apps of the given profiles that recently accessed location, the most recent
+     * first.
+     *
+     * @param profileType the {@link ProfileSelectFragment.ProfileType} of the accesses.
+     */
+    @NonNull
+    List<RecentAppOpsAccess.Access> getAccesses(boolean showSystem,
+            @ProfileSelectFragment.ProfileType int profileType) {
+        if (profileType == ProfileSelectFragment.ProfileType.ALL) {
+            return getAccesses(showSystem);
+        }
+        final int key = (showSystem ? 1 : 0) << 8 | profileType;
+        List<RecentAppOpsAccess.Access> accesses = mProfileAccesses.get(key);
+        if (accesses == null) {
+            accesses = new ArrayList<>();
+            for (RecentAppOpsAccess.Access access : getAccesses(showSystem)) {
+                final boolean isWorkProfile = isManagedProfile(access.userHandle);
+                final int type = isWorkProfile ? ProfileSelectFragment.ProfileType.WORK
+                        : ProfileSelectFragment.ProfileType.PERSONAL;
+                if ((type & profileType) != 0) {
+                    accesses.add(access);
+                }
+            }
+            if (mWatching) {
+                mProfileAccesses.put(key, accesses);
+            }
+        }
+        return Collections.unmodifiableList(accesses);
+    }
+
+    /** Starts notifying {@code listener} of changes, e.g. while a page is started. */
+    void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+        startWatching();
+    }
+
+    void removeListener(@NonNull Listener listener) {
+        if (mListeners.remove(listener) && mListeners.isEmpty() && mWatching) {
+            mHandler.postDelayed(mStopWatching, STOP_WATCHING_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void onOpActiveChanged(@NonNull String op, int uid, @NonNull String packageName,
+            boolean active) {
+        // Both when an access starts and when it finishes, the app becomes the most recent one.
+        final UserHandle user = UserHandle.getUserHandleForUid(uid);
+        final String app = getAppKey(packageName, user);
+        final long now = System.currentTimeMillis();
+        boolean changed = false;
+        for (Map.Entry<Boolean, List<RecentAppOpsAccess.Access>> entry : mAccesses.entrySet()) {
+            final Boolean showSystem = entry.getKey();
+            if (moveToTop(entry.getValue(), packageName, user, now)) {
+                changed = true;
+            } else if (!getApps(mHiddenApps, showSystem).contains(app)) {
+                // Resolving whether a new app is shown needs a full load.
+                getApps(mPendingApps, showSystem).add(app);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        mProfileAccesses.clear();
+        scheduleChanges();
+    }
+
+    private void scheduleChanges() {
+        // Not postponed by further changes, so that a steady stream of them is still shown.
+        if (!mReloading && !mHandler.hasCallbacks(mHandleChanges)) {
+            mHandler.postDelayed(mHandleChanges, CHANGE_DELAY_MS);
+        }
+    }
+
+    private void handleChanges() {
+        if (mPendingApps.isEmpty()) {
+            notifyListeners();
+            return;
+        }
+        // Readers keep getting the current lists until the reloaded ones are ready.
+        final Map<Boolean, Set<String>> pendingApps = new ArrayMap<>(mPendingApps);
+        mPendingApps.clear();
+        mReloading = true;
+        final int generation = mGeneration;
+        SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND,
+                "RecentLocationAccessSnapshot#reload", () -> {
+                    final Map<Boolean, List<RecentAppOpsAccess.Access>> reloaded =
+                            new ArrayMap<>();
+                    for (Boolean showSystem : pendingApps.keySet()) {
+                        reloaded.put(showSystem,
+                                new ArrayList<>(mRecentAccess.getAppListSorted(showSystem)));
+                    }
+                    SettingsExecutors.postOnMainThread(
+                            () -> onReloaded(generation, pendingApps, reloaded));
+                });
+    }
+
+    private void onReloaded(int generation, Map<Boolean, Set<String>> pendingApps,
+            Map<Boolean, List<RecentAppOpsAccess.Access>> reloaded) {
+        mReloading = false;
+        if (generation == mGeneration) {
+            for (Map.Entry<Boolean, List<RecentAppOpsAccess.Access>> entry
+                    : reloaded.entrySet()) {
+                final Boolean showSystem = entry.getKey();
+                final Set<String> shownApps = new ArraySet<>();
+                for (RecentAppOpsAccess.Access access : entry.getValue()) {
+                    shownApps.add(getAppKey(access.packageName, access.userHandle));
+                }
+                for (String app : pendingApps.get(showSystem)) {
+                    if (!shownApps.contains(app)) {
+                        getApps(mHiddenApps, showSystem).add(app);
+                    }
+                }
+                mAccesses.put(showSystem, entry.getValue());
+            }
+            mProfileAccesses.clear();
+            notifyListeners();
+        }
+        if (!mPendingApps.isEmpty()) {
+            scheduleChanges();
+        }
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onRecentLocationAccessesChanged();
+        }
+    }
+
+    private static Set<String> getApps(Map<Boolean, Set<String>> apps, Boolean showSystem) {
+        Set<String> set = apps.get(showSystem);
+        if (set == null) {
+            set = new ArraySet<>();
+            apps.put(showSystem, set);
+        }
+        return set;
+    }
+
+    private static String getAppKey(String packageName, UserHandle user) {
+        return user.getIdentifier() + ":" + packageName;
+    }
+
+    private static boolean moveToTop(List<RecentAppOpsAccess.Access> accesses,
+            String packageName, UserHandle user, long time) {
+        for (int i = 0; i < accesses.size(); i++) {
+            final RecentAppOpsAccess.Access access = accesses.get(i);
+            if (TextUtils.equals(access.packageName, packageName)
+                    && access.userHandle.equals(user)) {
+                accesses.remove(i);
+                accesses.add(0, new RecentAppOpsAccess.Access(access.packageName,
+                        access.userHandle, access.icon, access.label,
+                        access.contentDescription, time));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isManagedProfile(UserHandle user) {
+        final int userId = user.getIdentifier();
+        final int index = mManagedProfiles.indexOfKey(userId);
+        if (index >= 0) {
+            return mManagedProfiles.valueAt(index);
+        }
+        final boolean managed = mUserManager.isManagedProfile(userId);
+        mManagedProfiles.put(userId, managed);
+        return managed;
+    }
+
+    /**
+     * Follows the changes, and keeps the lists read meanwhile. Without listeners, e.g. while a
+     * page is created, that only lasts for a while.
+     */
+    private void startWatching() {
+        mHandler.removeCallbacks(mStopWatching);
+        if (!mWatching) {
+            try {
+                getAppOpsManager().startWatchingActive(LOCATION_OPS, mContext.getMainExecutor(),
+                        this);
+                mWatching = true;
+                // Whatever was read before may have changed since.
+                clear();
+            } catch (RuntimeException e) {
+                // Lists are then read again on every use, as if nothing was shared.
+                Log.w(TAG, "Can't watch location accesses", e);
+                return;
+            }
+        }
+        if (mListeners.isEmpty()) {
+            mHandler.postDelayed(mStopWatching, STOP_WATCHING_DELAY_MS);
+        }
+    }
+
+    private void stopWatching() {
+        if (mWatching && mListeners.isEmpty()) {
+            mWatching = false;
+            getAppOpsManager().stopWatchingActive(this);
+            clear();
+        }
+    }
+
+    private void clear() {
+        mHandler.removeCallbacks(mHandleChanges);
+        mGeneration++;
+        mAccesses.clear();
+        mProfileAccesses.clear();
+        mManagedProfiles.clear();
+        mPendingApps.clear();
+        mHiddenApps.clear();
+    }
+
+    private AppOpsManager getAppOpsManager() {
+        return mContext.getSystemService(AppOpsManager.class);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.LocaleList;
+import android.telephony.SubscriptionInfo;
+import android.telephony.TelephonyManager;
+import android.telephony.UiccSlotInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The subscriptions shown to the user and what {@link SubscriptionUtil} derives from them,
+ * computed once per change of the subscriptions or of the SIM slots instead of once per caller.
+ *
+ * <p>Snapshots are only kept while a {@link SubscriptionsChangeListener} is running, since that
+ * is what tells when they are out of date. Otherwise every call reads the subscriptions again. The
+ * subscriptions are the same whatever the {@link Context} of the caller, so a single snapshot is
+ * shared by every caller, and only replaced when the locales of the display names change.
+ */
+class SubscriptionSnapshot {
+
+    private static final Object sLock = new Object();
+    private static int sTrackingCount;
+    private static Context sTrackingContext;
+    private static BroadcastReceiver sSlotReceiver;
+    private static SubscriptionSnapshot sSnapshot;
+
+    private final LocaleList mLocales;
+
+    private boolean mSelectableLoaded;
+    private List<SubscriptionInfo> mSelectable;
+    private boolean mSlotsLoaded;
+    private UiccSlotInfo[] mSlots;
+    private Map<Integer, CharSequence> mUniqueDisplayNames;
+
+    private SubscriptionSnapshot(LocaleList locales) {
+        mLocales = locales;
+    }
+
+    /** Starts keeping snapshots, until as many calls to {@link #stopTracking()} are made. */
+    static void startTracking(@NonNull Context context) {
+        synchronized (sLock) {
+            if (sTrackingCount++ > 0) {
+                return;
+            }
+            sTrackingContext = context.getApplicationContext();
+            sSlotReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    invalidate();
+                }
+            };
+            final IntentFilter filter =
+                    new IntentFilter(TelephonyManager.ACTION_SIM_SLOT_STATUS_CHANGED);
+            filter.addAction(TelephonyManager.ACTION_MULTI_SIM_CONFIG_CHANGED);
+            sTrackingContext.registerReceiver(sSlotReceiver, filter,
+                    Context.RECEIVER_EXPORTED/*UNAUDITED*/);
+        }
+    }
+
+    /** Stops keeping snapshots, once every {@link #startTracking(Context)} is matched. */
+    static void stopTracking() {
+        synchronized (sLock) {
+            if (sTrackingCount == 0 || --sTrackingCount > 0) {
+                return;
+            }
+            sTrackingContext.unregisterReceiver(sSlotReceiver);
+            sTrackingContext = null;
+            sSlotReceiver = null;
+            sSnapshot = null;
+        }
+    }
+
+    /** Drops the current snapshot, after the subscriptions or SIM slots changed. */
+    static void invalidate() {
+        synchronized (sLock) {
+            sSnapshot = null;
+        }
+    }
+
+    /**
+     * Returns the snapshot of the subscriptions, with display names in the locales of
+     * {@code context}, or null if they are not tracked and so have to be read again.
+     */
+    @Nullable
+    static SubscriptionSnapshot get(@NonNull Context context) {
+        synchronized (sLock) {
+            if (sTrackingCount == 0) {
+                return null;
+            }
+            final LocaleList locales = context.getResources().getConfiguration().getLocales();
+            if (sSnapshot == null || !sSnapshot.mLocales.equals(locales)) {
+                sSnapshot = new SubscriptionSnapshot(locales);
+            }
+            return sSnapshot;
+        }
+    }
+
+    @VisibleForTesting
+    static void resetForTesting() {
+        synchronized (sLock) {
+            if (sTrackingContext != null) {
+                sTrackingContext.unregisterReceiver(sSlotReceiver);
+            }
+            sTrackingCount = 0;
+            sTrackingContext = null;
+            sSlotReceiver = null;
+            sSnapshot = null;
+        }
+    }
+
+    /** Returns a copy of the selectable subscriptions, loading them on first use. */
+    @Nullable
+    synchronized List<SubscriptionInfo> getSelectableSubscriptions(
+            @NonNull Supplier<List<SubscriptionInfo>> loader) {
+        if (!mSelectableLoaded) {
+            mSelectable = loader.get();
+            mSelectableLoaded = true;
+        }
+        return mSelectable == null ? null : new ArrayList<>(mSelectable);
+    }
+
+    /** Returns the UICC slots, loading them on first use. */
+    @Nullable
+    synchronized UiccSlotInfo[] getUiccSlots(@NonNull Supplier<UiccSlotInfo[]> loader) {
+        if (!mSlotsLoaded) {
+            mSlots = loader.get();
+            mSlotsLoaded = true;
+        }
+        return mSlots;
+    }
+
+    /** Returns a copy of the unique display names by subscription id, computing them once. */
+    @NonNull
+    synchronized Map<Integer, CharSequence> getUniqueDisplayNames(
+            @NonNull Supplier<Map<Integer, CharSequence>> loader) {
+        if (mUniqueDisplayNames == null) {
+            mUniqueDisplayNames = loader.get();
+        }
+        return new HashMap<>(mUniqueDisplayNames);
+    }
+}
@@ -54,11 +54,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class SubscriptionUtil {
     private static final String TAG = "SubscriptionUtil";
@@ -76,11 +74,13 @@ public class SubscriptionUtil {
     @VisibleForTesting
     public static void setAvailableSubscriptionsForTesting(List<SubscriptionInfo> results) {
         sAvailableResultsForTesting = results;
+        SubscriptionSnapshot.invalidate();
     }
 
     @VisibleForTesting
     public static void setActiveSubscriptionsForTesting(List<SubscriptionInfo> results) {
         sActiveResultsForTesting = results;
+        SubscriptionSnapshot.invalidate();
     }
 
     public static List<SubscriptionInfo> getActiveSubscriptions(SubscriptionManager manager) {
@@ -117,6 +117,9 @@ public class SubscriptionUtil {
     /**
      * Get all of the subscriptions which is available to display to the user.
      *
+     * <p>These are the selectable subscriptions, so they are read from the same snapshot as
+     * {@link #getSelectableSubscriptionInfoList(Context)} while subscriptions are tracked.
+     *
      * @param context {@code Context}
      * @return list of {@code SubscriptionInfo}
      */
@@ -160,7 +163,9 @@ public class SubscriptionUtil {
 
     private static UiccSlotInfo [] getUiccSlotsInfo(Context context) {
         final TelephonyManager telMgr = context.getSystemService(TelephonyManager.class);
-        return telMgr.getUiccSlotsInfo();
+        final SubscriptionSnapshot snapshot = SubscriptionSnapshot.get(context);
+        return snapshot != null ? snapshot.getUiccSlots(telMgr::getUiccSlotsInfo)
+                : telMgr.getUiccSlotsInfo();
     }
 
     private static boolean isPrimarySubscriptionWithinSameUuid(UiccSlotInfo[] slotsInfo,
@@ -265,43 +270,50 @@ public class SubscriptionUtil {
      */
     @VisibleForTesting
     public static Map<Integer, CharSequence> getUniqueSubscriptionDisplayNames(Context context) {
+        final SubscriptionSnapshot snapshot =
+                sAvailableResultsForTesting == null ? SubscriptionSnapshot.get(context) : null;
+        return snapshot != null
+                ? snapshot.getUniqueDisplayNames(() -> computeUniqueDisplayNames(context))
+                : computeUniqueDisplayNames(context);
+    }
+
+    private static Map<Integer, CharSequence> computeUniqueDisplayNames(Context context) {
         class DisplayInfo {
             public SubscriptionInfo subscriptionInfo;
             public CharSequence originalName;
             public CharSequence uniqueName;
         }
 
-        // Map of SubscriptionId to DisplayName
-        final Supplier<Stream<DisplayInfo>> originalInfos =
-                () -> getAvailableSubscriptions(context)
-                        .stream()
-                        .filter(i -> {
-                            // Filter out null values.
-                            return (i != null && i.getDisplayName() != null);
-                        })
-                        .map(i -> {
-                            DisplayInfo info = new DisplayInfo();
-                            info.subscriptionInfo = i;
-                            String displayName = i.getDisplayName().toString();
-                            info.originalName =
-                                    TextUtils.equals(displayName, PROFILE_GENERIC_DISPLAY_NAME)
-                                            ? context.getResources().getString(R.string.sim_card)
-                                            : displayName.trim();
-                            return info;
-                        });
-
-        // TODO(goldmanj) consider using a map of DisplayName to SubscriptionInfos.
+        // List of SubscriptionId and DisplayName
+        final List<DisplayInfo> infos = new ArrayList<>();
+        for (SubscriptionInfo i : getAvailableSubscriptions(context)) {
+            // Filter out null values.
+            if (i == null || i.getDisplayName() == null) {
+                continue;
+            }
+            DisplayInfo info = new DisplayInfo();
+            info.subscriptionInfo = i;
+            String displayName = i.getDisplayName().toString();
+            info.originalName =
+                    TextUtils.equals(displayName, PROFILE_GENERIC_DISPLAY_NAME)
+                            ? context.getResources().getString(R.string.sim_card)
+                            : displayName.trim();
+            infos.add(info);
+        }
+
         // A Unique set of display names
         Set<CharSequence> uniqueNames = new HashSet<>();
-        // Return the set of duplicate names
-        final Set<CharSequence> duplicateOriginalNames = originalInfos.get()
-                .filter(info -> !uniqueNames.add(info.originalName))
-                .map(info -> info.originalName)
-                .collect(Collectors.toSet());
+        // The set of duplicate names
+        final Set<CharSequence> duplicateOriginalNames = new HashSet<>();
+        for (DisplayInfo info : infos) {
+            if (!uniqueNames.add(info.originalName)) {
+                duplicateOriginalNames.add(info.originalName);
+            }
+        }
 
         // If a display name is duplicate, append the final 4 digits of the phone number.
         // Creates a mapping of Subscription id to original display name + phone number display name
-        final Supplier<Stream<DisplayInfo>> uniqueInfos = () -> originalInfos.get().map(info -> {
+        for (DisplayInfo info : infos) {
             int infoSubId = info.subscriptionInfo.getSubscriptionId();
             String cachedDisplayName = getDisplayNameFromSharedPreference(
                     context, infoSubId);
@@ -309,7 +321,7 @@ public class SubscriptionUtil {
                 Log.d(TAG, "use cached display name : for subId : " + infoSubId
                         + "cached display name : " + cachedDisplayName);
                 info.uniqueName = cachedDisplayName;
-                return info;
+                continue;
             } else {
                 Log.d(TAG, "remove cached display name : " + infoSubId);
                 removeItemFromDisplayNameSharedPreference(context, infoSubId);
@@ -335,27 +347,28 @@ public class SubscriptionUtil {
             } else {
                 info.uniqueName = info.originalName;
             }
-            return info;
-        });
+        }
 
         // Check uniqueness a second time.
         // We might not have had permission to view the phone numbers.
         // There might also be multiple phone numbers whose last 4 digits the same.
         uniqueNames.clear();
-        final Set<CharSequence> duplicatePhoneNames = uniqueInfos.get()
-                .filter(info -> !uniqueNames.add(info.uniqueName))
-                .map(info -> info.uniqueName)
-                .collect(Collectors.toSet());
+        final Set<CharSequence> duplicatePhoneNames = new HashSet<>();
+        for (DisplayInfo info : infos) {
+            if (!uniqueNames.add(info.uniqueName)) {
+                duplicatePhoneNames.add(info.uniqueName);
+            }
+        }
 
-        return uniqueInfos.get().map(info -> {
+        final Map<Integer, CharSequence> displayNames = new HashMap<>();
+        for (DisplayInfo info : infos) {
             if (duplicatePhoneNames.contains(info.uniqueName)) {
                 info.uniqueName = info.originalName + " "
                         + info.subscriptionInfo.getSubscriptionId();
             }
-            return info;
-        }).collect(Collectors.toMap(
-                info -> info.subscriptionInfo.getSubscriptionId(),
-                info -> info.uniqueName));
+            displayNames.put(info.subscriptionInfo.getSubscriptionId(), info.uniqueName);
+        }
+        return displayNames;
     }
 
     /**
@@ -469,6 +482,13 @@ public class SubscriptionUtil {
      * @return list of user selectable subscriptions.
      */
     public static List<SubscriptionInfo> getSelectableSubscriptionInfoList(Context context) {
+        final SubscriptionSnapshot snapshot = SubscriptionSnapshot.get(context);
+        return snapshot != null
+                ? snapshot.getSelectableSubscriptions(() -> loadSelectableSubscriptions(context))
+                : loadSelectableSubscriptions(context);
+    }
+
+    private static List<SubscriptionInfo> loadSelectableSubscriptions(Context context) {
         SubscriptionManager subManager = context.getSystemService(SubscriptionManager.class);
         List<SubscriptionInfo> availableList = subManager.getAvailableSubscriptionInfoList();
         if (availableList == null) {
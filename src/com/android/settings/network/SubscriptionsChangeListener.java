@@ -79,6 +79,9 @@ public class SubscriptionsChangeListener extends ContentObserver {
         final IntentFilter radioTechnologyChangedFilter = new IntentFilter(
                 TelephonyIntents.ACTION_RADIO_TECHNOLOGY_CHANGED);
         mContext.registerReceiver(mBroadcastReceiver, radioTechnologyChangedFilter);
+        if (!mRunning) {
+            SubscriptionSnapshot.startTracking(mContext);
+        }
         mRunning = true;
     }
 
@@ -88,6 +91,7 @@ public class SubscriptionsChangeListener extends ContentObserver {
                     mSubscriptionsChangedListener);
             mContext.getContentResolver().unregisterContentObserver(this);
             mContext.unregisterReceiver(mBroadcastReceiver);
+            SubscriptionSnapshot.stopTracking();
             mRunning = false;
         } else {
             Log.d(TAG, "Stop has been called without associated Start.");
@@ -100,6 +104,7 @@ public class SubscriptionsChangeListener extends ContentObserver {
     }
 
     private void subscriptionsChangedCallback() {
+        SubscriptionSnapshot.invalidate();
         mClient.onSubscriptionsChanged();
     }
 
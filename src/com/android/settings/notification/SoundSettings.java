@@ -211,6 +211,11 @@ public class SoundSettings extends DashboardFragment implements OnActivityResult
         return R.xml.sound_settings;
     }
 
+    @Override
+    protected boolean isLazyUpdateStateEnabled() {
+        return true;
+    }
+
     @Override
     protected List<AbstractPreferenceController> createPreferenceControllers(Context context) {
         return buildPreferenceControllers(context, this, getSettingsLifecycle());
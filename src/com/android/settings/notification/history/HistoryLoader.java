@@ -24,6 +24,8 @@ import android.content.pm.PackageManager;
 import android.os.UserHandle;
 import android.util.Slog;
 
+import com.android.settings.applications.AppIconLabelCache;
+import com.android.settings.applications.PackageQueryCache;
 import com.android.settings.notification.NotificationBackend;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -69,7 +71,8 @@ public class HistoryLoader {
                 for (NotificationHistoryPackage nhp : packages) {
                     ApplicationInfo info;
                     try {
-                        info = mPm.getApplicationInfoAsUser(
+                        info = PackageQueryCache.getInstance(mContext).getApplicationInfoAsUser(
+                                mPm,
                                 nhp.pkgName,
                                 PackageManager.MATCH_UNINSTALLED_PACKAGES
                                         | PackageManager.MATCH_DISABLED_COMPONENTS
@@ -77,9 +80,11 @@ public class HistoryLoader {
                                         | PackageManager.MATCH_DIRECT_BOOT_AWARE,
                                 UserHandle.getUserId(nhp.uid));
                         if (info != null) {
-                            nhp.label = String.valueOf(mPm.getApplicationLabel(info));
-                            nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
-                                    UserHandle.of(UserHandle.getUserId(nhp.uid)));
+                            final AppIconLabelCache.Entry entry = AppIconLabelCache
+                                    .getInstance(mContext)
+                                    .getEntry(info, UserHandle.getUserId(nhp.uid));
+                            nhp.label = String.valueOf(entry.getLabel());
+                            nhp.icon = entry.getIcon();
                         }
                     } catch (PackageManager.NameNotFoundException e) {
                         // app is gone, just show package name and generic icon
@@ -121,4 +121,13 @@ public interface PanelContent extends Instrumentable {
     default boolean isProgressBarVisible() {
         return false;
     }
+
+    /**
+     * @return {@code true} to show the Panel as soon as its first Slice is ready, with rows
+     * of Slices still loading filled in as they arrive, {@code false} to wait for all of the
+     * Slices to load before showing the Panel.
+     */
+    default boolean isProgressiveLoadingEnabled() {
+        return true;
+    }
 }
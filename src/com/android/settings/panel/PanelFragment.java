@@ -25,7 +25,9 @@ import android.app.settings.SettingsEnums;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -45,6 +47,8 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.slice.Slice;
@@ -54,17 +58,20 @@ import androidx.slice.widget.SliceLiveData;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.panel.PanelLoggingContract.PanelActions;
 import com.android.settings.panel.PanelLoggingContract.PanelClosedKeys;
+import com.android.settings.panel.PanelLoggingContract.PanelSliceLoadKeys;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
 import com.google.android.setupdesign.DividerItemDecoration;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class PanelFragment extends Fragment {
 
@@ -105,6 +112,8 @@ public class PanelFragment extends Fragment {
     private ProgressBar mProgressBar;
 
     private final Map<Uri, LiveData<Slice>> mSliceLiveData = new LinkedHashMap<>();
+    private final Set<Uri> mFirstBoundSlices = new HashSet<>();
+    private long mSlicesLoadStartTimeMs;
 
     @VisibleForTesting
     PanelSlicesLoaderCountdownLatch mPanelSlicesLoaderCountdownLatch;
@@ -328,27 +337,36 @@ public class PanelFragment extends Fragment {
 
     private void loadAllSlices() {
         mSliceLiveData.clear();
+        mFirstBoundSlices.clear();
+        mSlicesLoadStartTimeMs = SystemClock.elapsedRealtime();
         final List<Uri> sliceUris = mPanel.getSlices();
         mPanelSlicesLoaderCountdownLatch = new PanelSlicesLoaderCountdownLatch(sliceUris.size());
 
         for (Uri uri : sliceUris) {
-            final LiveData<Slice> sliceLiveData = SliceLiveData.fromUri(getActivity(), uri,
+            final LiveData<Slice> liveSlice = SliceLiveData.fromUri(getActivity(), uri,
                     (int type, Throwable source)-> {
+                            PanelSliceCache.remove(uri);
                             removeSliceLiveData(uri);
                             mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
+                            notifySliceChanged(uri);
                     });
+            final LiveData<Slice> sliceLiveData = withCachedSlice(uri, liveSlice);
 
             // Add slice first to make it in order.  Will remove it later if there's an error.
             mSliceLiveData.put(uri, sliceLiveData);
 
             sliceLiveData.observe(getViewLifecycleOwner(), slice -> {
+                final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
+                if (slice != null && !metadata.isErrorSlice()) {
+                    logFirstBind(uri);
+                    if (metadata.getLoadingState() == SliceMetadata.LOADED_ALL) {
+                        PanelSliceCache.putSlice(uri, slice);
+                    }
+                }
 
                 // If the Slice has already loaded, refresh list with slice data.
                 if (mPanelSlicesLoaderCountdownLatch.isSliceLoaded(uri)) {
-                    if (mAdapter != null) {
-                        int itemIndex = (new ArrayList<>(mSliceLiveData.keySet())).indexOf(uri);
-                        mAdapter.notifyItemChanged(itemIndex);
-                    }
+                    notifySliceChanged(uri);
                     return;
                 }
 
@@ -366,26 +384,88 @@ public class PanelFragment extends Fragment {
                  *     it as loaded after 250ms timeout to avoid delay showing up the panel for
                  *     too long.  Since we are still having the Slice data in the list, the Slice
                  *     will show up later once it is loaded.
+                 * <p>
+                 *     When loading progressively, the Panel is shown as soon as the first Slice is
+                 *     ready, and rows of the Slices still loading are refreshed as they arrive.
                  */
-                final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
+                boolean renderable = false;
                 if (slice == null || metadata.isErrorSlice()) {
+                    PanelSliceCache.remove(uri);
                     removeSliceLiveData(uri);
                     mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
                 } else if (metadata.getLoadingState() == SliceMetadata.LOADED_ALL) {
                     mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
+                    renderable = true;
                 } else {
                     Handler handler = new Handler();
                     handler.postDelayed(() -> {
                         mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
-                        loadPanelWhenReady();
+                        loadPanelWhenReady(true /* hasRenderableSlice */);
                     }, DURATION_SLICE_BINDING_TIMEOUT_MS);
                 }
 
-                loadPanelWhenReady();
+                notifySliceChanged(uri);
+                loadPanelWhenReady(renderable);
             });
         }
     }
 
+    /**
+     * Wraps {@param liveSlice} so that it starts out with the Slice cached from the last time
+     * the Panel was opened, if any. Updates of the live Slice only replace the cached one once
+     * they are fully loaded, or turn out to be an error.
+     */
+    private LiveData<Slice> withCachedSlice(Uri uri, LiveData<Slice> liveSlice) {
+        final Slice cachedSlice = PanelSliceCache.getSlice(uri);
+        if (cachedSlice == null) {
+            return liveSlice;
+        }
+        // The cached Slice binds right away, so its first bind tells nothing about how long the
+        // Slice takes to load. Keep it out of the load time metric.
+        mFirstBoundSlices.add(uri);
+        final MediatorLiveData<Slice> sliceLiveData = new MediatorLiveData<>();
+        sliceLiveData.setValue(cachedSlice);
+        sliceLiveData.addSource(liveSlice, new Observer<Slice>() {
+            private boolean mReplacedCachedSlice;
+
+            @Override
+            public void onChanged(Slice slice) {
+                if (!mReplacedCachedSlice && slice != null) {
+                    final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
+                    if (!metadata.isErrorSlice()
+                            && metadata.getLoadingState() != SliceMetadata.LOADED_ALL) {
+                        return;
+                    }
+                }
+                mReplacedCachedSlice = true;
+                sliceLiveData.setValue(slice);
+            }
+        });
+        return sliceLiveData;
+    }
+
+    private void notifySliceChanged(Uri uri) {
+        if (mAdapter != null) {
+            mAdapter.notifySliceChanged(uri);
+        }
+    }
+
+    private void logFirstBind(Uri uri) {
+        if (!mFirstBoundSlices.add(uri)) {
+            return;
+        }
+        final long durationMs = SystemClock.elapsedRealtime() - mSlicesLoadStartTimeMs;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Slice " + uri + " ready to bind after " + durationMs + "ms");
+        }
+        mMetricsProvider.action(
+                0 /* attribution */,
+                PanelActions.ACTION_PANEL_SLICE_LOAD,
+                mPanel.getMetricsCategory(),
+                PanelSliceLoadKeys.KEY_PREFIX_SLICE_FIRST_BIND + uri.getLastPathSegment(),
+                (int) durationMs);
+    }
+
     private void removeSliceLiveData(Uri uri) {
         final List<String> allowList = Arrays.asList(
                 getResources().getStringArray(
@@ -396,14 +476,16 @@ public class PanelFragment extends Fragment {
     }
 
     /**
-     * When all of the Slices have loaded for the first time, then we can setup the
-     * {@link RecyclerView}.
+     * When all of the Slices have loaded for the first time, or the first of them when loading
+     * progressively, then we can setup the {@link RecyclerView}.
      * <p>
      * When the Recyclerview has been laid out, we can begin the animation with the
      * {@link mOnGlobalLayoutListener}, which calls {@link #animateIn()}.
      */
-    private void loadPanelWhenReady() {
-        if (mPanelSlicesLoaderCountdownLatch.isPanelReadyToLoad()) {
+    @VisibleForTesting
+    void loadPanelWhenReady(boolean hasRenderableSlice) {
+        if (mPanelSlicesLoaderCountdownLatch.isPanelReadyToLoad(
+                hasRenderableSlice && mPanel.isProgressiveLoadingEnabled())) {
             mAdapter = new PanelSlicesAdapter(
                     this, mSliceLiveData, mPanel.getMetricsCategory());
             mPanelSlices.setAdapter(mAdapter);
@@ -44,4 +44,31 @@ public class PanelLoggingContract {
          */
         String KEY_OTHERS = "others";
     }
+
+    /**
+     * Keys tracking how long the Slices of a Panel take to load.
+     */
+    interface PanelSliceLoadKeys {
+        /**
+         * Prefix of the key logged with the time, in milliseconds, from the Panel starting to
+         * load until a Slice first had content to bind. The last path segment of the Slice
+         * {@link android.net.Uri} is appended to it.
+         * <p>
+         *     Logged as {@link PanelActions#ACTION_PANEL_SLICE_LOAD}. Slices bound from the
+         *     Slice cached by {@link PanelSliceCache} are not logged.
+         */
+        String KEY_PREFIX_SLICE_FIRST_BIND = "slice_first_bind_";
+    }
+
+    /**
+     * Actions logged by Panels on top of the ones shared with the rest of Settings.
+     */
+    interface PanelActions {
+        /**
+         * Time, in milliseconds, a Slice of a Panel took to load. Kept apart from the
+         * contextual card load action, so that Panel Slices don't show up in the homepage card
+         * metrics. The value is outside of the range used by the Settings actions.
+         */
+        int ACTION_PANEL_SLICE_LOAD = 20000;
+    }
 }
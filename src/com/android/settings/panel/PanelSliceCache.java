@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.settings.panel;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+import java.util.Map;
+
+/**
+ * Remembers the last fully loaded {@link Slice} and the measured row height of every Slice shown
+ * in a Panel.
+ * <p>
+ *     A Panel reopened within {@link #MAX_SLICE_AGE_MS} shows the cached Slices right away while
+ *     the live ones load. Row heights are kept for the lifetime of the process, so that rows of
+ *     Slices which are still loading can reserve their space instead of making the Panel jump.
+ * <p>
+ *     Only accessed from the main thread.
+ */
+@MainThread
+class PanelSliceCache {
+
+    /**
+     * How long a cached Slice can be shown in place of the live one, in milliseconds.
+     */
+    @VisibleForTesting
+    static final long MAX_SLICE_AGE_MS = 30000;
+
+    private static final Map<Uri, Entry> sEntries = new ArrayMap<>();
+
+    private PanelSliceCache() {
+    }
+
+    /**
+     * @return the last fully loaded Slice for {@param uri}, or {@code null} if there is none or it
+     * is too old to be shown.
+     */
+    @Nullable
+    static Slice getSlice(Uri uri) {
+        final Entry entry = sEntries.get(uri);
+        if (entry == null || entry.mSlice == null
+                || SystemClock.elapsedRealtime() - entry.mSliceTimeMs > MAX_SLICE_AGE_MS) {
+            return null;
+        }
+        return entry.mSlice;
+    }
+
+    static void putSlice(Uri uri, Slice slice) {
+        final Entry entry = getOrCreateEntry(uri);
+        entry.mSlice = slice;
+        entry.mSliceTimeMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return the last measured height of the row showing {@param uri}, or 0 if unknown.
+     */
+    static int getHeight(Uri uri) {
+        final Entry entry = sEntries.get(uri);
+        return entry == null ? 0 : entry.mHeight;
+    }
+
+    static void putHeight(Uri uri, int height) {
+        getOrCreateEntry(uri).mHeight = height;
+    }
+
+    /**
+     * Forgets everything about {@param uri}, e.g. because the Slice returned an error.
+     */
+    static void remove(Uri uri) {
+        sEntries.remove(uri);
+    }
+
+    @VisibleForTesting
+    static void clear() {
+        sEntries.clear();
+    }
+
+    private static Entry getOrCreateEntry(Uri uri) {
+        Entry entry = sEntries.get(uri);
+        if (entry == null) {
+            entry = new Entry();
+            sEntries.put(uri, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        Slice mSlice;
+        long mSliceTimeMs;
+        int mHeight;
+    }
+}
@@ -58,6 +58,7 @@ public class PanelSlicesAdapter
     @VisibleForTesting
     static final int MAX_NUM_OF_SLICES = 9;
 
+    private final List<Uri> mSliceUris;
     private final List<LiveData<Slice>> mSliceLiveData;
     private final int mMetricsCategory;
     private final PanelFragment mPanelFragment;
@@ -65,6 +66,7 @@ public class PanelSlicesAdapter
     public PanelSlicesAdapter(
             PanelFragment fragment, Map<Uri, LiveData<Slice>> sliceLiveData, int metricsCategory) {
         mPanelFragment = fragment;
+        mSliceUris = new ArrayList<>(sliceLiveData.keySet());
         mSliceLiveData = new ArrayList<>(sliceLiveData.values());
         mMetricsCategory = metricsCategory;
     }
@@ -85,6 +87,7 @@ public class PanelSlicesAdapter
 
     @Override
     public void onBindViewHolder(@NonNull SliceRowViewHolder sliceRowViewHolder, int position) {
+        sliceRowViewHolder.mSliceUri = mSliceUris.get(position);
         sliceRowViewHolder.onBind(mSliceLiveData.get(position).getValue());
     }
 
@@ -96,6 +99,16 @@ public class PanelSlicesAdapter
         return Math.min(mSliceLiveData.size(), MAX_NUM_OF_SLICES);
     }
 
+    /**
+     * Rebinds the row showing the Slice for {@param uri}, if it is shown.
+     */
+    void notifySliceChanged(Uri uri) {
+        final int position = mSliceUris.indexOf(uri);
+        if (position >= 0 && position < getItemCount()) {
+            notifyItemChanged(position);
+        }
+    }
+
     @Override
     public int getItemViewType(int position) {
         return mPanelFragment.getPanelViewType();
@@ -124,6 +137,8 @@ public class PanelSlicesAdapter
         @VisibleForTesting
         final LinearLayout mSliceSliderLayout;
 
+        private Uri mSliceUri;
+
         public SliceRowViewHolder(View view) {
             super(view);
             sliceView = view.findViewById(R.id.slice_view);
@@ -131,6 +146,15 @@ public class PanelSlicesAdapter
             sliceView.setShowTitleItems(true);
             sliceView.setImportantForAccessibility(View.IMPORTANT_FOR_ACCESSIBILITY_NO);
             mSliceSliderLayout = view.findViewById(R.id.slice_slider_layout);
+            // Remember how tall the row is, so that it can reserve its space next time while
+            // its Slice is still loading.
+            view.addOnLayoutChangeListener((v, left, top, right, bottom,
+                    oldLeft, oldTop, oldRight, oldBottom) -> {
+                if (mSliceUri != null && sliceView.getVisibility() == View.VISIBLE
+                        && bottom - top > 0) {
+                    PanelSliceCache.putHeight(mSliceUri, bottom - top);
+                }
+            });
         }
 
         /**
@@ -141,8 +165,12 @@ public class PanelSlicesAdapter
             if (slice == null || !isValidSlice(slice)) {
                 updateActionLabel();
                 sliceView.setVisibility(View.GONE);
+                // A Slice without data is still loading, hold its place in the Panel.
+                itemView.setMinimumHeight(slice == null && mSliceUri != null
+                        ? PanelSliceCache.getHeight(mSliceUri) : 0);
                 return;
             } else {
+                itemView.setMinimumHeight(0);
                 sliceView.setSlice(slice);
                 sliceView.setVisibility(View.VISIBLE);
             }
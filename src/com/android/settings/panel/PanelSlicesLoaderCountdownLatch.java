@@ -70,11 +70,22 @@ public class PanelSlicesLoaderCountdownLatch {
      * @return {@code true} when all Slices have loaded, and the Panel has not yet been loaded.
      */
     public boolean isPanelReadyToLoad() {
+        return isPanelReadyToLoad(false /* hasRenderableSlice */);
+    }
+
+    /**
+     * Used when the Panel loads progressively: the Panel can then be shown as soon as any Slice
+     * is ready to be rendered, without waiting for the remaining ones.
+     *
+     * @return {@code true} when either all Slices have loaded or {@param hasRenderableSlice} is
+     * set, and the Panel has not yet been loaded.
+     */
+    public boolean isPanelReadyToLoad(boolean hasRenderableSlice) {
         /**
          * Use {@link slicesReadyToLoad} to track whether or not the Panel has been loaded. We
          * only want to animate the Panel a single time.
          */
-        if ((mCountDownLatch.getCount() == 0) && !slicesReadyToLoad) {
+        if ((hasRenderableSlice || mCountDownLatch.getCount() == 0) && !slicesReadyToLoad) {
             slicesReadyToLoad = true;
             return true;
         }
@@ -17,34 +17,56 @@
 package com.android.settings.spa.notification
 
 import android.content.pm.ApplicationInfo
-import androidx.lifecycle.LiveData
-import androidx.lifecycle.MutableLiveData
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
 
+/**
+ * The notification state of an app in the app list, shared by every row showing the app. The
+ * state is read once, and read again only after it was invalidated, e.g. when the user opened the
+ * notification settings of the app, where it may be changed.
+ */
 class AppNotificationController(
     private val repository: AppNotificationRepository,
-    private val app: ApplicationInfo,
+    val app: ApplicationInfo,
 ) {
-    val isEnabled: LiveData<Boolean>
-        get() = _isEnabled
+    /**
+     * The state of the app for a row. Collecting it reads the state in background if it is not
+     * known yet or was invalidated since, so rows coming into view don't query it again.
+     */
+    val isEnabledFlow: Flow<Boolean> = flow {
+        if (enabled.value == null) {
+            loadEnabled()
+        }
+        emitAll(enabled.filterNotNull())
+    }.flowOn(Dispatchers.IO)
+
+    /** Whether the user can change the notification state of the app, queried once. */
+    val isChangeable: Boolean by lazy { repository.isChangeable(app) }
 
-    fun getEnabled() = _isEnabled.get()
+    private val enabled = MutableStateFlow<Boolean?>(null)
+
+    fun getEnabled(): Boolean = enabled.value ?: loadEnabled()
 
     fun setEnabled(enabled: Boolean) {
         if (repository.setEnabled(app, enabled)) {
-            _isEnabled.postValue(enabled)
+            this.enabled.value = enabled
         }
     }
 
-    private val _isEnabled = object : MutableLiveData<Boolean>() {
-        override fun onActive() {
-            postValue(repository.isEnabled(app))
-        }
-
-        override fun onInactive() {
-        }
+    /**
+     * Reads the state again the next time it is collected, e.g. once it may have changed
+     * elsewhere. Rows keep showing the known state meanwhile.
+     */
+    fun invalidate() {
+        enabled.value = null
+    }
 
-        fun get(): Boolean = value ?: repository.isEnabled(app).also {
-            postValue(it)
-        }
+    private fun loadEnabled(): Boolean = repository.isEnabled(app).also {
+        enabled.value = it
     }
 }
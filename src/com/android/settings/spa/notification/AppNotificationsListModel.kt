@@ -21,8 +21,8 @@ import android.content.Context
 import android.content.pm.ApplicationInfo
 import android.icu.text.RelativeDateTimeFormatter
 import androidx.compose.runtime.Composable
-import androidx.compose.runtime.livedata.observeAsState
 import androidx.compose.runtime.produceState
+import androidx.lifecycle.compose.collectAsStateWithLifecycle
 import com.android.settings.R
 import com.android.settings.applications.AppInfoBase
 import com.android.settings.notification.app.AppNotificationSettings
@@ -37,6 +37,7 @@ import com.android.settingslib.spaprivileged.model.app.AppRecord
 import com.android.settingslib.spaprivileged.template.app.AppListItemModel
 import com.android.settingslib.spaprivileged.template.app.AppListSwitchItem
 import com.android.settingslib.utils.StringUtil
+import java.util.concurrent.ConcurrentHashMap
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.map
@@ -53,19 +54,33 @@ class AppNotificationsListModel(
     private val repository = AppNotificationRepository(context)
     private val now = System.currentTimeMillis()
 
+    // Reused across updates of the app list, so that only the apps new to it are queried up front.
+    private val controllers = ConcurrentHashMap<String, AppNotificationController>()
+
     override fun transform(
         userIdFlow: Flow<Int>, appListFlow: Flow<List<ApplicationInfo>>,
     ) = repository.getAggregatedUsageEvents(userIdFlow)
         .combine(appListFlow) { usageEvents, appList ->
+            // Apps that left the list, e.g. uninstalled ones, don't keep their controller.
+            controllers.keys.retainAll(appList.map { it.controllerKey }.toSet())
             appList.map { app ->
                 AppNotificationsRecord(
                     app = app,
                     sentState = usageEvents[app.packageName],
-                    controller = AppNotificationController(repository, app),
+                    controller = getController(app),
                 )
             }
         }
 
+    private fun getController(app: ApplicationInfo): AppNotificationController {
+        val key = app.controllerKey
+        return controllers[key]?.takeIf { it.app.longVersionCode == app.longVersionCode }
+            ?: AppNotificationController(repository, app).also { controllers[key] = it }
+    }
+
+    private val ApplicationInfo.controllerKey
+        get() = "$uid/$packageName"
+
     override fun filter(
         userIdFlow: Flow<Int>, option: Int, recordListFlow: Flow<List<AppNotificationsRecord>>,
     ) = recordListFlow.map { recordList ->
@@ -118,10 +133,15 @@ class AppNotificationsListModel(
     @Composable
     override fun AppListItemModel<AppNotificationsRecord>.AppItem() {
         AppListSwitchItem(
-            onClick = { navigateToAppNotificationSettings(app = record.app) },
-            checked = record.controller.isEnabled.observeAsState(),
+            onClick = {
+                // The state may be changed there, read it again when back.
+                record.controller.invalidate()
+                navigateToAppNotificationSettings(app = record.app)
+            },
+            checked = record.controller.isEnabledFlow
+                .collectAsStateWithLifecycle(initialValue = null),
             changeable = produceState(initialValue = false) {
-                value = repository.isChangeable(record.app)
+                value = record.controller.isChangeable
             },
             onCheckedChange = record.controller::setEnabled,
         )
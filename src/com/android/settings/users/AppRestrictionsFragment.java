@@ -32,7 +32,6 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.ResolveInfo;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.RemoteException;
 import android.os.ServiceManager;
@@ -47,6 +46,8 @@ import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.Switch;
 
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.preference.ListPreference;
 import androidx.preference.MultiSelectListPreference;
 import androidx.preference.Preference;
@@ -59,6 +60,8 @@ import androidx.preference.SwitchPreference;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.core.executor.TaskScope;
 import com.android.settingslib.users.AppRestrictionsHelper;
 
 import java.util.ArrayList;
@@ -66,8 +69,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class AppRestrictionsFragment extends SettingsPreferenceFragment implements
         OnPreferenceChangeListener, OnClickListener, OnPreferenceClickListener,
@@ -91,6 +98,9 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
 
     private static final int MAX_APP_RESTRICTIONS = 100;
 
+    // Number of apps resolved and added to the list at a time while it is loading.
+    private static final int APP_LOADING_BATCH_SIZE = 20;
+
     private static final String DELIMITER = ";";
 
     /** Key for extra passed in from calling fragment for the userId of the user being edited */
@@ -109,7 +119,20 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
 
     private HashMap<Integer, AppRestrictionsPreference> mCustomRequestMap = new HashMap<>();
 
-    private AsyncTask mAppLoadingTask;
+    // Incremented to start a new app list load, and to cancel the one in flight.
+    private volatile int mAppLoadingGeneration;
+    // Loads of the app list, cancelled when the fragment is destroyed.
+    @VisibleForTesting
+    final TaskScope mTaskScope = new TaskScope(this);
+    private boolean mAppLoading;
+
+    // Packages that can provide restriction entries. Shared by all loads until a package is
+    // added or removed.
+    private volatile Set<String> mRestrictionReceiverPackages;
+
+    // App preferences by key. Several entries of the same package share their key.
+    private final Map<String, List<AppRestrictionsPreference>> mAppPreferencesByKey =
+            new HashMap<>();
 
     private BroadcastReceiver mUserBackgrounding = new BroadcastReceiver() {
         @Override
@@ -128,6 +151,7 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
     private BroadcastReceiver mPackageObserver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            mRestrictionReceiverPackages = null;
             onPackageChanged(intent);
         }
     };
@@ -274,8 +298,8 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         getActivity().registerReceiver(mPackageObserver, packageFilter);
 
         mAppListChanged = false;
-        if (mAppLoadingTask == null || mAppLoadingTask.getStatus() == AsyncTask.Status.FINISHED) {
-            mAppLoadingTask = new AppLoadingTask().execute();
+        if (!mAppLoading) {
+            loadApps();
         }
     }
 
@@ -285,14 +309,13 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         mNewUser = false;
         getActivity().unregisterReceiver(mUserBackgrounding);
         getActivity().unregisterReceiver(mPackageObserver);
+        // Stop streaming in apps, the list is reloaded on resume.
+        stopLoadingApps();
         if (mAppListChanged) {
-            new AsyncTask<Void, Void, Void>() {
-                @Override
-                protected Void doInBackground(Void... params) {
-                    mHelper.applyUserAppsStates(AppRestrictionsFragment.this);
-                    return null;
-                }
-            }.execute();
+            // Not scoped to the fragment, the changes have to be saved even if it goes away.
+            SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND,
+                    "AppRestrictionsFragment#applyUserAppsStates",
+                    () -> mHelper.applyUserAppsStates(AppRestrictionsFragment.this));
         }
     }
 
@@ -323,17 +346,128 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         }
     }
 
-    private class AppLoadingTask extends AsyncTask<Void, Void, Void> {
+    /**
+     * Loads the visible apps in the background and streams them into the list, in their sorted
+     * order, {@link #APP_LOADING_BATCH_SIZE} at a time. The package info of the apps in a batch is
+     * fetched in parallel on {@link SettingsExecutors#POOL_IO}. The load stops as soon as the
+     * fragment is paused, and its pending work is cancelled when the fragment is destroyed.
+     */
+    private void loadApps() {
+        final int generation = ++mAppLoadingGeneration;
+        mAppLoading = true;
+        final int userId = mUser.getIdentifier();
+        mTaskScope.execute(SettingsExecutors.POOL_BACKGROUND,
+                "AppRestrictionsFragment#loadApps", () -> {
+                    final List<AppRestrictionsHelper.SelectableAppInfo> apps;
+                    synchronized (mHelper) {
+                        if (generation != mAppLoadingGeneration) {
+                            return;
+                        }
+                        mHelper.fetchAndMergeApps();
+                        apps = new ArrayList<>(mHelper.getVisibleApps());
+                    }
+                    loadAppBatches(generation, apps, getRestrictionReceiverPackages(), userId);
+                });
+    }
 
-        @Override
-        protected Void doInBackground(Void... params) {
-            mHelper.fetchAndMergeApps();
+    /**
+     * Fetches the package info of {@code apps} one batch at a time and posts each batch to
+     * {@link #populateApps}, until the load of {@code generation} is stopped.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    void loadAppBatches(int generation, List<AppRestrictionsHelper.SelectableAppInfo> apps,
+            Set<String> receiverPackages, int userId) {
+        for (int start = 0; start < apps.size(); start += APP_LOADING_BATCH_SIZE) {
+            if (generation != mAppLoadingGeneration || mTaskScope.isCancelled()) {
+                return;
+            }
+            final List<AppRestrictionsHelper.SelectableAppInfo> batchApps =
+                    apps.subList(start, Math.min(start + APP_LOADING_BATCH_SIZE, apps.size()));
+            final List<Future<PackageInfo>> packageInfos = new ArrayList<>(batchApps.size());
+            for (AppRestrictionsHelper.SelectableAppInfo app : batchApps) {
+                packageInfos.add(mTaskScope.submit(SettingsExecutors.POOL_IO,
+                        "AppRestrictionsFragment#getPackageInfo",
+                        () -> getPackageInfo(app, userId)));
+            }
+            final List<AppInfoHolder> batch = new ArrayList<>(batchApps.size());
+            for (int i = 0; i < batchApps.size(); i++) {
+                batch.add(new AppInfoHolder(batchApps.get(i), getResult(packageInfos.get(i))));
+            }
+            final boolean first = start == 0;
+            final boolean last = start + APP_LOADING_BATCH_SIZE >= apps.size();
+            mTaskScope.postOnMainThread(() -> {
+                if (generation == mAppLoadingGeneration) {
+                    populateApps(batch, receiverPackages, first, last);
+                }
+            });
+        }
+        if (apps.isEmpty()) {
+            mTaskScope.postOnMainThread(() -> {
+                if (generation == mAppLoadingGeneration) {
+                    populateApps(Collections.emptyList(), receiverPackages, true, true);
+                }
+            });
+        }
+    }
+
+    private static PackageInfo getResult(Future<PackageInfo> packageInfo) {
+        try {
+            return packageInfo.get();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Failed to get package info", e);
+            return null;
+        } catch (CancellationException e) {
+            // The fragment was destroyed, the batch is dropped anyway.
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
+    }
 
-        @Override
-        protected void onPostExecute(Void result) {
-            populateApps();
+    @VisibleForTesting
+    void stopLoadingApps() {
+        mAppLoadingGeneration++;
+        mAppLoading = false;
+    }
+
+    private Set<String> getRestrictionReceiverPackages() {
+        Set<String> packages = mRestrictionReceiverPackages;
+        if (packages == null) {
+            final Intent restrictionsIntent = new Intent(Intent.ACTION_GET_RESTRICTION_ENTRIES);
+            packages = new HashSet<>();
+            for (ResolveInfo info : mPackageManager.queryBroadcastReceivers(
+                    restrictionsIntent, 0)) {
+                packages.add(info.activityInfo.packageName);
+            }
+            mRestrictionReceiverPackages = packages;
+        }
+        return packages;
+    }
+
+    @VisibleForTesting
+    PackageInfo getPackageInfo(AppRestrictionsHelper.SelectableAppInfo app, int userId) {
+        if (app.packageName == null) {
+            return null;
+        }
+        try {
+            return mIPm.getPackageInfo(app.packageName,
+                    PackageManager.MATCH_ANY_USER | PackageManager.GET_SIGNATURES, userId);
+        } catch (RemoteException e) {
+            // Ignore
+            return null;
+        }
+    }
+
+    @VisibleForTesting
+    static class AppInfoHolder {
+        final AppRestrictionsHelper.SelectableAppInfo app;
+        final PackageInfo packageInfo;
+
+        AppInfoHolder(AppRestrictionsHelper.SelectableAppInfo app, PackageInfo packageInfo) {
+            this.app = app;
+            this.packageInfo = packageInfo;
         }
     }
 
@@ -351,40 +485,35 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
                 && (privateFlags&ApplicationInfo.PRIVATE_FLAG_HIDDEN) == 0);
     }
 
-    private void populateApps() {
+    @VisibleForTesting
+    void populateApps(List<AppInfoHolder> batch, Set<String> receiverPackages,
+            boolean firstBatch, boolean lastBatch) {
         final Context context = getActivity();
         if (context == null) return;
-        final PackageManager pm = mPackageManager;
-        final IPackageManager ipm = mIPm;
-        final int userId = mUser.getIdentifier();
 
         // Check if the user was removed in the meantime.
         if (Utils.getExistingUser(mUserManager, mUser) == null) {
+            mAppLoading = false;
             return;
         }
-        mAppList.removeAll();
-        Intent restrictionsIntent = new Intent(Intent.ACTION_GET_RESTRICTION_ENTRIES);
-        final List<ResolveInfo> receivers = pm.queryBroadcastReceivers(restrictionsIntent, 0);
-        for (AppRestrictionsHelper.SelectableAppInfo app : mHelper.getVisibleApps()) {
+        if (firstBatch) {
+            mAppList.removeAll();
+            mAppPreferencesByKey.clear();
+        }
+        for (AppInfoHolder holder : batch) {
+            final AppRestrictionsHelper.SelectableAppInfo app = holder.app;
             String packageName = app.packageName;
             if (packageName == null) continue;
             final boolean isSettingsApp = packageName.equals(context.getPackageName());
             AppRestrictionsPreference p = new AppRestrictionsPreference(getPrefContext(), this);
-            final boolean hasSettings = resolveInfoListHasPackage(receivers, packageName);
+            final boolean hasSettings = receiverPackages.contains(packageName);
             if (isSettingsApp) {
                 addLocationAppRestrictionsPreference(app, p);
                 // Settings app should be available to restricted user
                 mHelper.setPackageSelected(packageName, true);
                 continue;
             }
-            PackageInfo pi = null;
-            try {
-                pi = ipm.getPackageInfo(packageName,
-                        PackageManager.MATCH_ANY_USER
-                        | PackageManager.GET_SIGNATURES, userId);
-            } catch (RemoteException e) {
-                // Ignore
-            }
+            final PackageInfo pi = holder.packageInfo;
             if (pi == null) {
                 continue;
             }
@@ -422,8 +551,14 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
             p.setOrder(MAX_APP_RESTRICTIONS * (mAppList.getPreferenceCount() + 2));
             mHelper.setPackageSelected(packageName, p.isChecked());
             mAppList.addPreference(p);
+            mAppPreferencesByKey.computeIfAbsent(p.getKey(), key -> new ArrayList<>()).add(p);
         }
+        if (!lastBatch) {
+            return;
+        }
+        // Only now is the selection complete enough to be applied, e.g. on user backgrounding.
         mAppListChanged = true;
+        mAppLoading = false;
         // If this is the first time for a new profile, install/uninstall default apps for profile
         // to avoid taking the hit in onPause(), which can cause race conditions on user switch.
         if (mNewUser && mFirstTime) {
@@ -477,23 +612,13 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         return PKG_PREFIX + packageName;
     }
 
-    private boolean resolveInfoListHasPackage(List<ResolveInfo> receivers, String packageName) {
-        for (ResolveInfo info : receivers) {
-            if (info.activityInfo.packageName.equals(packageName)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private void updateAllEntries(String prefKey, boolean checked) {
-        for (int i = 0; i < mAppList.getPreferenceCount(); i++) {
-            Preference pref = mAppList.getPreference(i);
-            if (pref instanceof AppRestrictionsPreference) {
-                if (prefKey.equals(pref.getKey())) {
-                    ((AppRestrictionsPreference) pref).setChecked(checked);
-                }
-            }
+        final List<AppRestrictionsPreference> prefs = mAppPreferencesByKey.get(prefKey);
+        if (prefs == null) {
+            return;
+        }
+        for (AppRestrictionsPreference pref : prefs) {
+            pref.setChecked(checked);
         }
     }
 
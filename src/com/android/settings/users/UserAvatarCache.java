@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.UserInfo;
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.R;
+import com.android.settings.core.executor.SettingsExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide cache of user avatars, downscaled to the size they are shown at in the user list.
+ *
+ * <p>Entries are keyed by user id, serial number and photo version. The version of a user is
+ * bumped whenever the system reports that its information changed, so a replaced photo is
+ * never served from the cache.
+ */
+public class UserAvatarCache {
+
+    private static final String TAG = "UserAvatarCache";
+
+    // Enough for a few hundred list-sized avatars.
+    private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static UserAvatarCache sInstance;
+
+    private final int mIconSize;
+    private final LruCache<Integer, Entry> mCache;
+    private final SparseIntArray mPhotoVersions = new SparseIntArray();
+    // Users being loaded, with what to run once each of them is done.
+    private final SparseArray<List<Runnable>> mLoading = new SparseArray<>();
+
+    private final BroadcastReceiver mUserChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+            if (userId != UserHandle.USER_NULL) {
+                invalidate(userId);
+            }
+        }
+    };
+
+    /** Returns the shared instance, creating it on first use. */
+    public static synchronized UserAvatarCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new UserAvatarCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void resetForTesting() {
+        sInstance = null;
+    }
+
+    private UserAvatarCache(Context context) {
+        mIconSize = context.getResources().getDimensionPixelSize(
+                R.dimen.multiple_users_user_icon_size);
+        mCache = new LruCache<Integer, Entry>(MAX_SIZE_BYTES) {
+            @Override
+            protected int sizeOf(Integer key, Entry entry) {
+                return entry.mBitmap.getAllocationByteCount();
+            }
+        };
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_USER_INFO_CHANGED);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        context.registerReceiverAsUser(mUserChangeReceiver, UserHandle.ALL, filter, null, null,
+                Context.RECEIVER_EXPORTED_UNAUDITED);
+    }
+
+    /**
+     * Returns the cached avatar of the given user, or {@code null} if it has not been loaded
+     * yet or is out of date.
+     */
+    public Bitmap getCachedIcon(UserInfo user) {
+        final Entry entry = mCache.get(user.id);
+        if (entry == null || entry.mSerialNumber != user.serialNumber
+                || entry.mPhotoVersion != getPhotoVersion(user.id)) {
+            return null;
+        }
+        return entry.mBitmap;
+    }
+
+    /**
+     * Loads the avatars of the given users on background threads, one task per user, and runs
+     * {@code onLoaded} on the main thread once all of them are done. Users that are already
+     * being loaded by an earlier call are not loaded again, {@code onLoaded} waits for that load.
+     */
+    @MainThread
+    public void loadIcons(UserManager userManager, List<UserInfo> users,
+            IconFallback fallback, Runnable onLoaded) {
+        final AtomicInteger remaining = new AtomicInteger(users.size());
+        final Runnable onUserLoaded = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                SettingsExecutors.postOnMainThread(onLoaded);
+            }
+        };
+        for (UserInfo user : users) {
+            synchronized (mLoading) {
+                final List<Runnable> pending = mLoading.get(user.id);
+                if (pending != null) {
+                    pending.add(onUserLoaded);
+                    continue;
+                }
+                final List<Runnable> callbacks = new ArrayList<>();
+                callbacks.add(onUserLoaded);
+                mLoading.put(user.id, callbacks);
+            }
+            final int photoVersion = getPhotoVersion(user.id);
+            SettingsExecutors.execute(SettingsExecutors.POOL_UI_CRITICAL,
+                    "UserAvatarCache#loadIcon", () -> {
+                try {
+                    Bitmap bitmap = null;
+                    try {
+                        bitmap = userManager.getUserIcon(user.id);
+                    } catch (RuntimeException e) {
+                        // Shows the default avatar rather than trying again on every rebuild of
+                        // the list, until the user info changes.
+                        Log.w(TAG, "Can't load the photo of user " + user.id, e);
+                    }
+                    if (bitmap == null) {
+                        bitmap = fallback.getDefaultIcon(user.id);
+                    }
+                    put(user, photoVersion, downscale(bitmap));
+                } finally {
+                    final List<Runnable> callbacks;
+                    synchronized (mLoading) {
+                        callbacks = mLoading.get(user.id);
+                        mLoading.remove(user.id);
+                    }
+                    for (Runnable callback : callbacks) {
+                        callback.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /** Drops the cached avatar of the given user, e.g. after its photo was changed. */
+    public void invalidate(int userId) {
+        synchronized (mPhotoVersions) {
+            mPhotoVersions.put(userId, mPhotoVersions.get(userId) + 1);
+        }
+        mCache.remove(userId);
+    }
+
+    private int getPhotoVersion(int userId) {
+        synchronized (mPhotoVersions) {
+            return mPhotoVersions.get(userId);
+        }
+    }
+
+    private void put(UserInfo user, int photoVersion, Bitmap bitmap) {
+        synchronized (mPhotoVersions) {
+            // The photo changed while it was being loaded, the next load will pick it up.
+            if (photoVersion != mPhotoVersions.get(user.id)) {
+                return;
+            }
+            mCache.put(user.id, new Entry(bitmap, user.serialNumber, photoVersion));
+        }
+    }
+
+    @WorkerThread
+    private Bitmap downscale(Bitmap bitmap) {
+        if (bitmap.getWidth() <= mIconSize && bitmap.getHeight() <= mIconSize) {
+            return bitmap;
+        }
+        final float scale = (float) mIconSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        return Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), /* filter= */ true);
+    }
+
+    /** Provides the avatar to use for users that don't have a photo. */
+    public interface IconFallback {
+        /** Returns the default avatar of the given user. */
+        @WorkerThread
+        Bitmap getDefaultIcon(int userId);
+    }
+
+    private static final class Entry {
+        final Bitmap mBitmap;
+        final int mSerialNumber;
+        final int mPhotoVersion;
+
+        Entry(Bitmap bitmap, int serialNumber, int photoVersion) {
+            mBitmap = bitmap;
+            mSerialNumber = serialNumber;
+            mPhotoVersion = photoVersion;
+        }
+    }
+}
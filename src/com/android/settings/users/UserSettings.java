@@ -36,7 +36,6 @@ import android.graphics.BlendMode;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -72,6 +71,8 @@ import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.core.executor.SettingsExecutors;
+import com.android.settings.core.executor.TaskScope;
 import com.android.settings.password.ChooseLockGeneric;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.MainSwitchBarController;
@@ -86,7 +87,6 @@ import com.android.settingslib.users.CreateUserDialogController;
 import com.android.settingslib.users.EditUserInfoController;
 import com.android.settingslib.users.GrantAdminDialogController;
 import com.android.settingslib.users.UserCreatingDialog;
-import com.android.settingslib.utils.ThreadUtils;
 
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
@@ -96,8 +96,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -203,6 +201,9 @@ public class UserSettings extends SettingsPreferenceFragment
     RestrictedPreference mAddSupervisedUser;
     @VisibleForTesting
     SparseArray<Bitmap> mUserIcons = new SparseArray<>();
+    // Preferences of the other users currently shown in mUserListCategory, by user id.
+    private final SparseArray<UserPreference> mUserPreferences = new SparseArray<>();
+    private final ArrayList<UserPreference> mShownUserPreferences = new ArrayList<>();
     private int mRemovingUserId = -1;
     private boolean mAddingUser;
     private boolean mGuestUserAutoCreated;
@@ -211,6 +212,8 @@ public class UserSettings extends SettingsPreferenceFragment
     private UserCapabilities mUserCaps;
     private boolean mShouldUpdateUserList = true;
     private final Object mUserLock = new Object();
+    // Cancels loading the profile of the current user once the fragment is destroyed.
+    private final TaskScope mTaskScope = new TaskScope(this);
     private UserManager mUserManager;
     private static SparseArray<Bitmap> sDarkDefaultUserBitmapCache = new SparseArray<>();
 
@@ -229,7 +232,6 @@ public class UserSettings extends SettingsPreferenceFragment
     private TimeoutToDockUserPreferenceController mTimeoutToDockUserPreferenceController;
     private UserCreatingDialog mUserCreatingDialog;
     private final AtomicBoolean mGuestCreationScheduled = new AtomicBoolean();
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
 
     private CharSequence mPendingUserName;
     private Drawable mPendingUserIcon;
@@ -266,6 +268,7 @@ public class UserSettings extends SettingsPreferenceFragment
                 int userHandle = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, -1);
                 if (userHandle != -1) {
                     mUserIcons.remove(userHandle);
+                    UserAvatarCache.getInstance(context).invalidate(userHandle);
                 }
             }
             mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
@@ -517,31 +520,24 @@ public class UserSettings extends SettingsPreferenceFragment
             return;
         }
 
-        new AsyncTask<Void, Void, String>() {
-            @Override
-            protected void onPostExecute(String result) {
-                finishLoadProfile(result);
-            }
-
-            @Override
-            protected String doInBackground(Void... values) {
-                UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
-                if (user.iconPath == null || user.iconPath.equals("")) {
-                    // Assign profile photo.
-                    copyMeProfilePhoto(getActivity(), user);
-                }
-                return user.name;
+        final Context context = getActivity();
+        mTaskScope.execute(SettingsExecutors.POOL_UI_CRITICAL, "UserSettings#loadProfile", () -> {
+            final UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
+            if (user.iconPath == null || user.iconPath.equals("")) {
+                // Assign profile photo.
+                copyMeProfilePhoto(context, user);
             }
-        }.execute();
+            final Bitmap icon = mUserManager.getUserIcon(user.id);
+            mTaskScope.postOnMainThread(() -> finishLoadProfile(user.name, icon));
+        });
     }
 
-    private void finishLoadProfile(String profileName) {
+    private void finishLoadProfile(String profileName, Bitmap b) {
         if (getActivity() == null) {
             return;
         }
         mMePreference.setTitle(getString(R.string.user_you, profileName));
         int myUserId = UserHandle.myUserId();
-        Bitmap b = mUserManager.getUserIcon(myUserId);
         if (b != null) {
             mMePreference.setIcon(encircleUserIcon(b));
             mUserIcons.put(myUserId, b);
@@ -611,13 +607,14 @@ public class UserSettings extends SettingsPreferenceFragment
                 new UserCreatingDialog(getActivity(), /* isGuest= */ true);
         guestCreatingDialog.show();
 
-        ThreadUtils.postOnBackgroundThread(() -> {
+        SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND, "UserSettings#addGuest",
+                () -> {
             mMetricsFeatureProvider.action(getActivity(), SettingsEnums.ACTION_USER_GUEST_ADD);
             Trace.beginSection("UserSettings.addGuest");
             final UserInfo guest = mUserManager.createGuest(context);
             Trace.endSection();
 
-            ThreadUtils.postOnMainThread(() -> {
+            SettingsExecutors.postOnMainThread(() -> {
                 guestCreatingDialog.dismiss();
                 if (guest == null) {
                     Toast.makeText(context,
@@ -887,8 +884,8 @@ public class UserSettings extends SettingsPreferenceFragment
                 user.name,
                 (newUserName, newUserIcon) -> {
                     if (newUserIcon != userIcon) {
-                        ThreadUtils.postOnBackgroundThread(() ->
-                                mUserManager.setUserIcon(user.id,
+                        SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND,
+                                "UserSettings#setUserIcon", () -> mUserManager.setUserIcon(user.id,
                                         UserIcons.convertToBitmapAtUserIconSize(
                                                 activity.getResources(), newUserIcon)));
                         mMePreference.setIcon(newUserIcon);
@@ -959,15 +956,13 @@ public class UserSettings extends SettingsPreferenceFragment
         if (mRemovingUserId == UserHandle.myUserId()) {
             removeThisUser();
         } else {
-            ThreadUtils.postOnBackgroundThread(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (mUserLock) {
-                        mUserManager.removeUser(mRemovingUserId);
-                        mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
-                    }
-                }
-            });
+            SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND, "UserSettings#removeUser",
+                    () -> {
+                        synchronized (mUserLock) {
+                            mUserManager.removeUser(mRemovingUserId);
+                            mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
+                        }
+                    });
         }
     }
 
@@ -1019,7 +1014,8 @@ public class UserSettings extends SettingsPreferenceFragment
         Context context = getContext();
         Resources resources = getResources();
         final Drawable selectedUserIcon = mPendingUserIcon;
-        Future<?> unusedCreateUserFuture = ThreadUtils.postOnBackgroundThread(() -> {
+        Future<?> unusedCreateUserFuture = SettingsExecutors.execute(
+                SettingsExecutors.POOL_BACKGROUND, "UserSettings#createUser", () -> {
             UserInfo user;
 
             if (userType == USER_TYPE_USER) {
@@ -1034,7 +1030,7 @@ public class UserSettings extends SettingsPreferenceFragment
                 user = mUserManager.createRestrictedProfile(userName);
             }
 
-            ThreadUtils.postOnMainThread(() -> {
+            SettingsExecutors.postOnMainThread(() -> {
                 if (user == null) {
                     mAddingUser = false;
                     mPendingUserIcon = null;
@@ -1043,7 +1039,8 @@ public class UserSettings extends SettingsPreferenceFragment
                     return;
                 }
 
-                Future<?> unusedSettingIconFuture = ThreadUtils.postOnBackgroundThread(() -> {
+                Future<?> unusedSettingIconFuture = SettingsExecutors.execute(
+                        SettingsExecutors.POOL_BACKGROUND, "UserSettings#setUserIcon", () -> {
                     Drawable newUserIcon = selectedUserIcon;
                     if (newUserIcon == null) {
                         newUserIcon = UserIcons.getDefaultUserIcon(resources, user.id, false);
@@ -1163,7 +1160,8 @@ public class UserSettings extends SettingsPreferenceFragment
             // Once mGuestCreationScheduled=true, mAddGuest needs to be updated so that it shows
             // "Resetting guest..."
             mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
-            mExecutor.execute(() -> {
+            SettingsExecutors.execute(SettingsExecutors.POOL_BACKGROUND,
+                    "UserSettings#scheduleGuestCreation", () -> {
                 UserInfo guest = mUserManager.createGuest(getContext());
                 mGuestCreationScheduled.set(false);
                 if (guest == null) {
@@ -1198,7 +1196,8 @@ public class UserSettings extends SettingsPreferenceFragment
             users = List.of(mUserManager.getUserInfo(context.getUserId()));
         }
 
-        final ArrayList<Integer> missingIcons = new ArrayList<>();
+        final ArrayList<UserInfo> missingIcons = new ArrayList<>();
+        final UserAvatarCache avatarCache = UserAvatarCache.getInstance(context);
         final ArrayList<UserPreference> userPreferences = new ArrayList<>();
 
         // mMePreference shows a icon for current user. However when current user is a guest, we
@@ -1221,16 +1220,19 @@ public class UserSettings extends SettingsPreferenceFragment
             if (user.id == UserHandle.myUserId()) {
                 pref = mMePreference;
             } else {
-                pref = new UserPreference(getPrefContext(), null, user.id);
+                // Reuse the preference already shown for this user, so that only the
+                // users that were actually added or removed touch the list.
+                pref = mUserPreferences.get(user.id);
+                if (pref == null) {
+                    pref = new UserPreference(getPrefContext(), null, user.id);
+                    pref.setOnPreferenceClickListener(this);
+                    pref.setSelectable(true);
+                    pref.setKey("id=" + user.id);
+                }
                 pref.setTitle(user.name);
                 userPreferences.add(pref);
-                pref.setOnPreferenceClickListener(this);
                 pref.setEnabled(canOpenUserDetails);
-                pref.setSelectable(true);
-                pref.setKey("id=" + user.id);
-                if (user.isAdmin()) {
-                    pref.setSummary(R.string.user_admin);
-                }
+                pref.setSummary(user.isAdmin() ? getString(R.string.user_admin) : null);
             }
             if (pref == null) {
                 continue;
@@ -1250,9 +1252,15 @@ public class UserSettings extends SettingsPreferenceFragment
                 pref.setSummary(R.string.user_summary_restricted_profile);
             }
             if (user.iconPath != null) {
+                if (mUserIcons.get(user.id) == null) {
+                    final Bitmap cachedIcon = avatarCache.getCachedIcon(user);
+                    if (cachedIcon != null) {
+                        mUserIcons.put(user.id, cachedIcon);
+                    }
+                }
                 if (mUserIcons.get(user.id) == null) {
                     // Icon not loaded yet, print a placeholder
-                    missingIcons.add(user.id);
+                    missingIcons.add(user);
                     pref.setIcon(getEncircledDefaultIcon());
                 } else {
                     setPhotoId(pref, user);
@@ -1280,7 +1288,9 @@ public class UserSettings extends SettingsPreferenceFragment
 
         // Load the icons
         if (missingIcons.size() > 0) {
-            loadIconsAsync(missingIcons);
+            avatarCache.loadIcons(mUserManager, missingIcons,
+                    userId -> getDefaultUserIconAsBitmap(context.getResources(), userId),
+                    this::onIconsLoaded);
         }
 
         // If restricted profiles are supported, mUserListCategory will have a special title
@@ -1292,9 +1302,6 @@ public class UserSettings extends SettingsPreferenceFragment
             mUserListCategory.setTitle(R.string.user_category_title);
         }
 
-        // Remove everything from mUserListCategory and add new users.
-        mUserListCategory.removeAll();
-
         final Preference addUserOnLockScreen = getPreferenceScreen().findPreference(
                 mAddUserWhenLockedPreferenceController.getPreferenceKey());
         mAddUserWhenLockedPreferenceController.updateState(addUserOnLockScreen);
@@ -1311,11 +1318,36 @@ public class UserSettings extends SettingsPreferenceFragment
         updateAddUser(context);
         updateAddSupervisedUser(context);
 
-        for (UserPreference userPreference : userPreferences) {
-            userPreference.setOrder(Preference.DEFAULT_ORDER);
-            mUserListCategory.addPreference(userPreference);
+        updateUserListCategory(userPreferences);
+    }
+
+    /**
+     * Brings mUserListCategory in line with the given, sorted, user preferences. Preferences
+     * that are already shown are only reordered; only added and removed users change the
+     * preference hierarchy.
+     */
+    private void updateUserListCategory(List<UserPreference> userPreferences) {
+        final ArrayList<UserPreference> stalePreferences = new ArrayList<>(mShownUserPreferences);
+        for (int i = 0; i < userPreferences.size(); i++) {
+            final UserPreference userPreference = userPreferences.get(i);
+            userPreference.setOrder(i);
+            if (!stalePreferences.remove(userPreference)) {
+                mUserListCategory.addPreference(userPreference);
+            }
+        }
+        for (UserPreference stalePreference : stalePreferences) {
+            mUserListCategory.removePreference(stalePreference);
         }
 
+        mShownUserPreferences.clear();
+        mShownUserPreferences.addAll(userPreferences);
+        mUserPreferences.clear();
+        for (UserPreference userPreference : userPreferences) {
+            if (userPreference != mMePreference
+                    && userPreference.getUserId() != UserPreference.USERID_UNKNOWN) {
+                mUserPreferences.put(userPreference.getUserId(), userPreference);
+            }
+        }
     }
 
     @VisibleForTesting
@@ -1529,25 +1561,11 @@ public class UserSettings extends SettingsPreferenceFragment
                 .count();
     }
 
-    private void loadIconsAsync(List<Integer> missingIcons) {
-        new AsyncTask<List<Integer>, Void, Void>() {
-            @Override
-            protected void onPostExecute(Void result) {
-                updateUserList();
-            }
-
-            @Override
-            protected Void doInBackground(List<Integer>... values) {
-                for (int userId : values[0]) {
-                    Bitmap bitmap = mUserManager.getUserIcon(userId);
-                    if (bitmap == null) {
-                        bitmap = getDefaultUserIconAsBitmap(getContext().getResources(), userId);
-                    }
-                    mUserIcons.append(userId, bitmap);
-                }
-                return null;
-            }
-        }.execute(missingIcons);
+    private void onIconsLoaded() {
+        if (getActivity() == null) {
+            return;
+        }
+        updateUserList();
     }
 
     private Drawable getEncircledDefaultIcon() {
@@ -1646,7 +1664,8 @@ public class UserSettings extends SettingsPreferenceFragment
      * @param resources resources object to fetch the user icon.
      * @param userId    the user id or {@code UserHandle.USER_NULL} for a non-user specific icon
      */
-    private static Bitmap getDefaultUserIconAsBitmap(Resources resources, int userId) {
+    private static synchronized Bitmap getDefaultUserIconAsBitmap(Resources resources,
+            int userId) {
         Bitmap bitmap = null;
         // Try finding the corresponding bitmap in the dark bitmap cache
         bitmap = sDarkDefaultUserBitmapCache.get(userId);
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.android.settings.applications.manageapplications.AppFilterRegistry.FILTER_APPS_ALL;
+import static com.android.settings.applications.manageapplications.ManageApplications.LIST_TYPE_STORAGE;
+import static com.android.settings.applications.manageapplications.ManageApplications.STORAGE_TYPE_DEFAULT;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.IPackageManager;
+import android.content.pm.ParceledListSlice;
+import android.os.Looper;
+import android.os.Process;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.testutils.shadow.ShadowApplicationsState;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+import com.android.settingslib.applications.ApplicationsState.AppFilter;
+import com.android.settingslib.applications.ApplicationsState.CompoundFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks the rebuild of the {@link ApplicationsState.Session} that {@link ManageApplications}
+ * requests on every change, for the "All apps" list and the storage list.
+ *
+ * <p>The session runs its background handler on the main looper, so that one rebuild is measured
+ * from the request to the delivery of the sorted list.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowApplicationsState.class)
+public class ManageApplicationsBenchmark {
+
+    // A device with a lot of apps installed, about half of them preinstalled.
+    private static final int APPS = 400;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private ApplicationsState.Session mSession;
+    private ArrayList<AppEntry> mRebuiltEntries;
+    private File mApkFile;
+
+    @Before
+    public void setUp() throws IOException {
+        final Application application = RuntimeEnvironment.application;
+        // The apps are only loaded for labels if their apk exists.
+        mApkFile = File.createTempFile("app", ".apk");
+
+        // Fixed seed, so that every run measures the same input.
+        final Random random = new Random(42);
+        final List<ApplicationInfo> infos = new ArrayList<>(APPS);
+        for (int i = 0; i < APPS; i++) {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.packageName = "com.example.app" + i;
+            info.uid = Process.FIRST_APPLICATION_UID + i;
+            info.sourceDir = mApkFile.getPath();
+            info.nonLocalizedLabel = "App " + Integer.toString(random.nextInt(100000), 36);
+            info.enabled = true;
+            if (i % 2 == 0) {
+                info.flags |= ApplicationInfo.FLAG_SYSTEM;
+            }
+            info.flags |= ApplicationInfo.FLAG_INSTALLED;
+            infos.add(info);
+        }
+        final IPackageManager packageManager = mock(IPackageManager.class, invocation ->
+                "getInstalledApplications".equals(invocation.getMethod().getName())
+                        ? new ParceledListSlice<>(infos)
+                        : RETURNS_DEFAULTS.answer(invocation));
+
+        ReflectionHelpers.setStaticField(ApplicationsState.class, "sInstance", null);
+        final ApplicationsState state = ReflectionHelpers.callStaticMethod(
+                ApplicationsState.class, "getInstance",
+                ClassParameter.from(Application.class, application),
+                ClassParameter.from(IPackageManager.class, packageManager));
+        mSession = state.newSession(new RebuildCallbacks());
+        // Only the entries are loaded, the launcher and size info is filled in below.
+        mSession.setSessionFlags(0);
+        mSession.onResume();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        for (AppEntry entry : mSession.getAllApps()) {
+            entry.hasLauncherEntry = entry.id % 3 != 0;
+            entry.size = random.nextInt(1 << 30);
+            entry.internalSize = entry.size;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mSession.onPause();
+        mSession.onDestroy();
+        ReflectionHelpers.setStaticField(ApplicationsState.class, "sInstance", null);
+        mApkFile.delete();
+    }
+
+    @Test
+    public void rebuild_allApps() {
+        AppFilter filter = AppFilterRegistry.getInstance().get(FILTER_APPS_ALL).getFilter();
+        filter = new CompoundFilter(filter,
+                ApplicationsState.FILTER_DOWNLOADED_AND_LAUNCHER_AND_INSTANT);
+        filter = new CompoundFilter(filter, ApplicationsState.FILTER_NOT_HIDE);
+        measureRebuild(filter, ApplicationsState.ALPHA_COMPARATOR);
+    }
+
+    @Test
+    public void rebuild_storage() {
+        AppFilter filter = AppFilterRegistry.getInstance().get(FILTER_APPS_ALL).getFilter();
+        filter = new CompoundFilter(filter, ManageApplications.getCompositeFilter(
+                LIST_TYPE_STORAGE, STORAGE_TYPE_DEFAULT, /* volumeUuid= */ null));
+        filter = new CompoundFilter(filter, ApplicationsState.FILTER_NOT_HIDE);
+        measureRebuild(filter, ApplicationsState.SIZE_COMPARATOR);
+    }
+
+    /** Requests a rebuild of the session, as {@code ApplicationsAdapter#rebuild} does. */
+    private void measureRebuild(AppFilter filter, Comparator<AppEntry> comparator) {
+        mBenchmarkRule.measure(() -> {
+            mRebuiltEntries = null;
+            mSession.rebuild(filter, comparator, /* foreground= */ false);
+            shadowOf(Looper.getMainLooper()).idle();
+            if (mRebuiltEntries == null) {
+                throw new IllegalStateException("Session didn't complete the rebuild");
+            }
+            return mRebuiltEntries;
+        });
+    }
+
+    private class RebuildCallbacks implements ApplicationsState.Callbacks {
+        @Override
+        public void onRebuildComplete(ArrayList<AppEntry> entries) {
+            mRebuiltEntries = entries;
+        }
+
+        @Override
+        public void onRunningStateChanged(boolean running) {
+        }
+
+        @Override
+        public void onPackageListChanged() {
+        }
+
+        @Override
+        public void onPackageIconChanged() {
+        }
+
+        @Override
+        public void onLoadEntriesCompleted() {
+        }
+
+        @Override
+        public void onPackageSizeChanged(String packageName) {
+        }
+
+        @Override
+        public void onLauncherInfoChanged() {
+        }
+
+        @Override
+        public void onAllSizesComputed() {
+        }
+    }
+}
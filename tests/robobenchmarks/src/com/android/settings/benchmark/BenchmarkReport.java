@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects benchmark results and writes them in the JSON format of JMH, so that existing tooling
+ * can read them.
+ *
+ * <p>Results are written to the file named by the {@code settings.benchmark.output} system
+ * property after every benchmark, so a partial run still leaves a valid file behind. If the
+ * {@code settings.benchmark.baseline} property names a file in the same format, every benchmark
+ * fails when its score is more than {@code settings.benchmark.threshold} (20% by default) above
+ * the baseline score.
+ */
+public class BenchmarkReport {
+
+    static final double REGRESSION_THRESHOLD =
+            Double.parseDouble(System.getProperty("settings.benchmark.threshold", "0.2"));
+
+    private static final String OUTPUT_PATH = System.getProperty("settings.benchmark.output");
+    private static final String BASELINE_PATH = System.getProperty("settings.benchmark.baseline");
+
+    // z-score of the two-sided 99.9% confidence interval that JMH reports as the score error.
+    private static final double Z_999 = 3.291;
+
+    // Set once the output file was started by this process. Robolectric loads test classes in
+    // separate sandboxes, each with its own copy of this class, so this lives in a system property.
+    private static final String STARTED_PROPERTY = "settings.benchmark.outputStarted";
+
+    private static BenchmarkReport sInstance;
+
+    private final Map<String, JSONObject> mResults = new LinkedHashMap<>();
+    private Map<String, Double> mBaseline;
+
+    /** Returns the report shared by all benchmarks of this run. */
+    public static synchronized BenchmarkReport getInstance() {
+        if (sInstance == null) {
+            sInstance = new BenchmarkReport();
+        }
+        return sInstance;
+    }
+
+    private BenchmarkReport() {
+        if (OUTPUT_PATH == null) {
+            return;
+        }
+        synchronized (System.class) {
+            if (System.getProperty(STARTED_PROPERTY) != null) {
+                // Keep the results that other sandboxes already wrote.
+                mResults.putAll(readResults(new File(OUTPUT_PATH)));
+            }
+            System.setProperty(STARTED_PROPERTY, "true");
+        }
+    }
+
+    /** Adds a result, replacing any earlier result of the same benchmark, and writes the file. */
+    public synchronized void add(Result result) {
+        try {
+            mResults.put(result.mName, result.toJson());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        if (OUTPUT_PATH == null) {
+            return;
+        }
+        try {
+            final JSONArray json = new JSONArray();
+            for (JSONObject r : mResults.values()) {
+                json.put(r);
+            }
+            Files.write(new File(OUTPUT_PATH).toPath(),
+                    json.toString(2).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException("Can't write benchmark results to " + OUTPUT_PATH, e);
+        }
+    }
+
+    /** Returns the baseline score of the given benchmark in ns/op, or {@code null} if unknown. */
+    public synchronized Double getBaselineScore(String name) {
+        if (BASELINE_PATH == null) {
+            return null;
+        }
+        if (mBaseline == null) {
+            mBaseline = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<String, JSONObject> entry
+                        : readResults(new File(BASELINE_PATH)).entrySet()) {
+                    mBaseline.put(entry.getKey(),
+                            entry.getValue().getJSONObject("primaryMetric").getDouble("score"));
+                }
+            } catch (JSONException e) {
+                throw new IllegalStateException("Malformed benchmark baseline " + BASELINE_PATH, e);
+            }
+        }
+        return mBaseline.get(name);
+    }
+
+    private static Map<String, JSONObject> readResults(File file) {
+        final Map<String, JSONObject> results = new LinkedHashMap<>();
+        try {
+            final JSONArray json = new JSONArray(
+                    new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            for (int i = 0; i < json.length(); i++) {
+                final JSONObject benchmark = json.getJSONObject(i);
+                results.put(benchmark.getString("benchmark"), benchmark);
+            }
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException("Can't read benchmark results from " + file, e);
+        }
+        return results;
+    }
+
+    /** The measurement of one benchmark, in nanoseconds per operation. */
+    public static class Result {
+        private final String mName;
+        private final int mWarmupIterations;
+        private final double[] mScores;
+        private final double mScore;
+        private final double mScoreError;
+
+        Result(String name, int warmupIterations, double[] scores) {
+            mName = name;
+            mWarmupIterations = warmupIterations;
+            mScores = scores;
+
+            double sum = 0;
+            for (double score : scores) {
+                sum += score;
+            }
+            mScore = sum / scores.length;
+            if (scores.length > 1) {
+                double squares = 0;
+                for (double score : scores) {
+                    squares += (score - mScore) * (score - mScore);
+                }
+                final double stdDev = Math.sqrt(squares / (scores.length - 1));
+                mScoreError = Z_999 * stdDev / Math.sqrt(scores.length);
+            } else {
+                mScoreError = Double.NaN;
+            }
+        }
+
+        public double getScore() {
+            return mScore;
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONArray rawData = new JSONArray();
+            for (double score : mScores) {
+                rawData.put(score);
+            }
+            final JSONObject primaryMetric = new JSONObject()
+                    .put("score", mScore)
+                    .put("scoreError", Double.isNaN(mScoreError) ? "NaN" : mScoreError)
+                    .put("scoreUnit", "ns/op")
+                    .put("rawData", new JSONArray().put(rawData));
+            return new JSONObject()
+                    .put("benchmark", mName)
+                    .put("mode", "avgt")
+                    .put("threads", 1)
+                    .put("forks", 1)
+                    .put("warmupIterations", mWarmupIterations)
+                    .put("measurementIterations", mScores.length)
+                    .put("primaryMetric", primaryMetric);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Measures the average time of an operation, JMH style: a number of warmup iterations whose
+ * results are discarded, followed by measurement iterations of a calibrated number of calls each.
+ *
+ * <p>Usage:
+ * <pre>
+ *     &#64;Rule
+ *     public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+ *
+ *     &#64;Test
+ *     public void sortTiles() {
+ *         mBenchmarkRule.measure(() -> mCategoryManager.sortCategories(mContext, mCategories));
+ *     }
+ * </pre>
+ *
+ * <p>Every measurement is reported to {@link BenchmarkReport}, and compared to the stored
+ * baseline if one was given. Iteration counts can be tuned with the
+ * {@code settings.benchmark.warmupIterations}, {@code settings.benchmark.iterations} and
+ * {@code settings.benchmark.iterationTimeMs} system properties.
+ */
+public class BenchmarkRule implements TestRule {
+
+    private static final int WARMUP_ITERATIONS =
+            Integer.getInteger("settings.benchmark.warmupIterations", 5);
+    private static final int MEASUREMENT_ITERATIONS =
+            Integer.getInteger("settings.benchmark.iterations", 10);
+    private static final long ITERATION_TIME_NS =
+            Long.getLong("settings.benchmark.iterationTimeMs", 100L) * 1000000L;
+
+    // Keeps the results of measured operations reachable, so that they can't be optimized away.
+    private static volatile Object sSink;
+
+    private Description mDescription;
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                mDescription = description;
+                try {
+                    base.evaluate();
+                } finally {
+                    mDescription = null;
+                }
+            }
+        };
+    }
+
+    /** Measures {@code operation}, which is expected to have no lasting side effects. */
+    public void measure(ThrowingRunnable operation) {
+        measure(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /** Measures {@code operation}, whose result is consumed so it can't be eliminated. */
+    public void measure(Callable<?> operation) {
+        if (mDescription == null) {
+            throw new IllegalStateException("measure() must be called from a running test");
+        }
+        final long opsPerIteration = calibrate(operation);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(operation, opsPerIteration);
+        }
+        final double[] scores = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            scores[i] = (double) runIteration(operation, opsPerIteration) / opsPerIteration;
+        }
+
+        final String name = mDescription.getClassName() + "." + mDescription.getMethodName();
+        final BenchmarkReport.Result result = new BenchmarkReport.Result(name,
+                WARMUP_ITERATIONS, scores);
+        BenchmarkReport.getInstance().add(result);
+
+        final Double baseline = BenchmarkReport.getInstance().getBaselineScore(name);
+        if (baseline != null) {
+            final double limit = baseline * (1 + BenchmarkReport.REGRESSION_THRESHOLD);
+            assertWithMessage("%s regressed: %s ns/op, baseline %s ns/op", name,
+                    result.getScore(), baseline)
+                    .that(result.getScore()).isAtMost(limit);
+        }
+    }
+
+    /** Finds how many calls fill one iteration, starting from a single call. */
+    private static long calibrate(Callable<?> operation) {
+        long ops = 1;
+        while (true) {
+            final long elapsedNs = runIteration(operation, ops);
+            if (elapsedNs >= ITERATION_TIME_NS || ops >= Integer.MAX_VALUE) {
+                return ops;
+            }
+            // Aim slightly above the target, without growing more than 10x per round.
+            final long estimate = elapsedNs == 0
+                    ? ops * 10 : (long) (ops * 1.2 * ITERATION_TIME_NS / elapsedNs);
+            ops = Math.max(ops + 1, Math.min(estimate, ops * 10));
+        }
+    }
+
+    private static long runIteration(Callable<?> operation, long ops) {
+        final long startNs = System.nanoTime();
+        try {
+            for (long i = 0; i < ops; i++) {
+                sSink = operation.call();
+            }
+        } catch (Exception e) {
+            throw new AssertionError("Benchmarked operation failed", e);
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    /** An operation without result that may throw. */
+    public interface ThrowingRunnable {
+        /** Runs the operation once. */
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.drawer.TileUtils.META_DATA_KEY_ORDER;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYHINT;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ProviderInfo;
+import android.os.Bundle;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settingslib.drawer.ActivityTile;
+import com.android.settingslib.drawer.DashboardCategory;
+import com.android.settingslib.drawer.ProviderTile;
+import com.android.settingslib.drawer.Tile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks sorting and de-duplicating the tiles injected into the dashboard categories.
+ *
+ * <p>Both operations change the categories in place, so every call works on fresh categories
+ * built from the same shuffled tiles; building them is part of the measured time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CategoryManagerBenchmark {
+
+    private static final int CATEGORIES = 20;
+    private static final int TILES_PER_CATEGORY = 15;
+    private static final int PACKAGES = 12;
+    // Share of tiles that are injected twice, e.g. by a work profile.
+    private static final double DUPLICATE_RATIO = 0.1;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private CategoryManager mCategoryManager;
+    private Map<String, List<Tile>> mTilesByCategory;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCategoryManager = new CategoryManager(mContext);
+
+        // Fixed seed, so that every run measures the same input.
+        final Random random = new Random(42);
+        mTilesByCategory = new HashMap<>();
+        for (int c = 0; c < CATEGORIES; c++) {
+            final String categoryKey = "com.android.settings.category.ia.benchmark" + c;
+            final List<Tile> tiles = new ArrayList<>();
+            for (int t = 0; t < TILES_PER_CATEGORY; t++) {
+                final String packageName = "com.example.package" + random.nextInt(PACKAGES);
+                final int order = random.nextInt(10) * 10;
+                final Tile tile = t % 3 == 0
+                        ? createProviderTile(categoryKey, packageName, "key" + t, order)
+                        : createActivityTile(categoryKey, packageName, "Activity" + t, order);
+                tiles.add(tile);
+                if (random.nextDouble() < DUPLICATE_RATIO) {
+                    tiles.add(tile);
+                }
+            }
+            Collections.shuffle(tiles, random);
+            mTilesByCategory.put(categoryKey, tiles);
+        }
+    }
+
+    @Test
+    public void sortCategories() {
+        mBenchmarkRule.measure(() -> {
+            final Map<String, DashboardCategory> categories = buildCategories();
+            mCategoryManager.sortCategories(mContext, categories);
+            return categories;
+        });
+    }
+
+    @Test
+    public void filterDuplicateTiles() {
+        mBenchmarkRule.measure(() -> {
+            final Map<String, DashboardCategory> categories = buildCategories();
+            mCategoryManager.filterDuplicateTiles(categories);
+            return categories;
+        });
+    }
+
+    private Map<String, DashboardCategory> buildCategories() {
+        final Map<String, DashboardCategory> categories = new HashMap<>();
+        for (Map.Entry<String, List<Tile>> entry : mTilesByCategory.entrySet()) {
+            final DashboardCategory category = new DashboardCategory(entry.getKey());
+            for (Tile tile : entry.getValue()) {
+                category.addTile(tile);
+            }
+            categories.put(entry.getKey(), category);
+        }
+        return categories;
+    }
+
+    private static Tile createActivityTile(String categoryKey, String packageName,
+            String className, int order) {
+        final ActivityInfo activityInfo = new ActivityInfo();
+        activityInfo.packageName = packageName;
+        activityInfo.name = className;
+        activityInfo.metaData = new Bundle();
+        activityInfo.metaData.putInt(META_DATA_KEY_ORDER, order);
+        return new ActivityTile(activityInfo, categoryKey);
+    }
+
+    private static Tile createProviderTile(String categoryKey, String packageName, String key,
+            int order) {
+        final ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.packageName = packageName;
+        providerInfo.name = "Provider";
+        providerInfo.authority = packageName + ".settings";
+        final Bundle metaData = new Bundle();
+        metaData.putString(META_DATA_PREFERENCE_KEYHINT, key);
+        metaData.putInt(META_DATA_KEY_ORDER, order);
+        return new ProviderTile(providerInfo, categoryKey, metaData);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.UserManager;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Benchmarks turning a week of hourly battery history into the usage shown by the battery
+ * usage chart.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class DataProcessorBenchmark {
+
+    // The history kept by the battery usage database: a week, one snapshot per hour.
+    private static final int HOURS = 7 * 24;
+    // Apps and system components with a battery usage entry in every snapshot.
+    private static final int APPS = 150;
+    private static final int SYSTEM_COMPONENTS = 20;
+    private static final long START_TIMESTAMP = 1641045600000L; // 2022-01-01 22:00:00
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Mock
+    private Intent mIntent;
+    @Mock
+    private UserManager mUserManager;
+
+    private Context mContext;
+    private BatteryLevelData mBatteryLevelData;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+8"));
+
+        mContext = spy(RuntimeEnvironment.application);
+        FakeFeatureFactory.setupForTest();
+        DataProcessor.sTestSystemAppsPackageNames = Set.of();
+        doReturn(mIntent).when(mContext).registerReceiver(
+                isA(BroadcastReceiver.class), isA(IntentFilter.class));
+        doReturn(100).when(mIntent).getIntExtra(eq(BatteryManager.EXTRA_SCALE), anyInt());
+        doReturn(66).when(mIntent).getIntExtra(eq(BatteryManager.EXTRA_LEVEL), anyInt());
+        doReturn(mContext).when(mContext).getApplicationContext();
+        doReturn(mUserManager).when(mContext).getSystemService(UserManager.class);
+        doReturn(new int[]{0}).when(mUserManager).getProfileIdsWithDisabled(anyInt());
+
+        final Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
+        mBatteryHistoryMap = new HashMap<>();
+        for (int hour = 0; hour <= HOURS; hour++) {
+            final long timestamp = START_TIMESTAMP + hour * DateUtils.HOUR_IN_MILLIS;
+            // Discharges from full to ~20% and is charged again, a few times a week.
+            batteryLevelMap.put(timestamp, 100 - (hour % 40) * 2);
+            mBatteryHistoryMap.put(timestamp, createSnapshot(hour));
+        }
+        mBatteryLevelData = new BatteryLevelData(batteryLevelMap);
+    }
+
+    @Test
+    public void getBatteryDiffDataMap() {
+        final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay =
+                mBatteryLevelData.getHourlyBatteryLevelsPerDay();
+        mBenchmarkRule.measure(() -> DataProcessor.getBatteryDiffDataMap(mContext,
+                hourlyBatteryLevelsPerDay, mBatteryHistoryMap, /* appUsagePeriodMap= */ null,
+                Set.of(), Set.of()));
+    }
+
+    @Test
+    public void generateBatteryUsageMap() {
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = DataProcessor.getBatteryDiffDataMap(
+                mContext, mBatteryLevelData.getHourlyBatteryLevelsPerDay(), mBatteryHistoryMap,
+                /* appUsagePeriodMap= */ null, Set.of(), Set.of());
+        mBenchmarkRule.measure(() -> DataProcessor.generateBatteryUsageMap(mContext,
+                batteryDiffDataMap, mBatteryLevelData));
+    }
+
+    private Map<String, BatteryHistEntry> createSnapshot(int hour) {
+        final Map<String, BatteryHistEntry> snapshot = new HashMap<>();
+        final int userId = mContext.getUserId();
+        for (int i = 0; i < APPS; i++) {
+            // Usage is cumulative between snapshots, heavier apps grow faster.
+            final double consumePower = hour * (1 + i % 10) * 0.5;
+            final BatteryHistEntry entry = createBatteryHistEntry("com.example.app" + i,
+                    "App " + i, consumePower, /* uid= */ 10000 + i, userId,
+                    ConvertUtils.CONSUMER_TYPE_UID_BATTERY, hour * (i % 7) * 1000L);
+            snapshot.put(entry.getKey(), entry);
+        }
+        for (int i = 0; i < SYSTEM_COMPONENTS; i++) {
+            final BatteryHistEntry entry = createBatteryHistEntry(/* packageName= */ null,
+                    "Component " + i, hour * 2.0, /* uid= */ i, userId,
+                    ConvertUtils.CONSUMER_TYPE_SYSTEM_BATTERY, /* usageTimeInMs= */ 0L);
+            snapshot.put(entry.getKey(), entry);
+        }
+        return snapshot;
+    }
+
+    private static BatteryHistEntry createBatteryHistEntry(String packageName, String appLabel,
+            double consumePower, long uid, long userId, int consumerType, long usageTimeInMs) {
+        final BatteryInformation.Builder batteryInformation =
+                BatteryInformation
+                        .newBuilder()
+                        .setAppLabel(appLabel)
+                        .setConsumePower(consumePower)
+                        .setForegroundUsageConsumePower(consumePower * 0.6)
+                        .setBackgroundUsageConsumePower(consumePower * 0.4)
+                        .setForegroundUsageTimeInMs(usageTimeInMs)
+                        .setBackgroundUsageTimeInMs(usageTimeInMs / 2);
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_UID, uid);
+        values.put(BatteryHistEntry.KEY_USER_ID, userId);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, consumerType);
+        if (consumerType == ConvertUtils.CONSUMER_TYPE_SYSTEM_BATTERY) {
+            batteryInformation.setDrainType((int) uid);
+        }
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                ConvertUtils.convertBatteryInformationToString(batteryInformation.build()));
+        return new BatteryHistEntry(values);
+    }
+}
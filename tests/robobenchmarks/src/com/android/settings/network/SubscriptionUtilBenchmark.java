@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks computing the unique display names of the subscriptions of a device with several
+ * downloaded eSIM profiles, some of them from the same carrier.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SubscriptionUtilBenchmark {
+
+    private static final int SUBSCRIPTIONS = 8;
+    private static final String[] CARRIERS = {"Carrier A", "Carrier A", "Carrier B", "Carrier C"};
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Mock
+    private SubscriptionManager mSubscriptionManager;
+    @Mock
+    private TelephonyManager mTelephonyManager;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        when(mContext.getSystemService(SubscriptionManager.class))
+                .thenReturn(mSubscriptionManager);
+        when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
+
+        final List<SubscriptionInfo> subscriptions = new ArrayList<>();
+        for (int subId = 1; subId <= SUBSCRIPTIONS; subId++) {
+            final SubscriptionInfo info = mock(SubscriptionInfo.class);
+            when(info.getSubscriptionId()).thenReturn(subId);
+            when(info.getDisplayName()).thenReturn(CARRIERS[subId % CARRIERS.length]);
+            when(mSubscriptionManager.getPhoneNumber(subId)).thenReturn("555010" + subId + "000");
+            when(mTelephonyManager.createForSubscriptionId(subId))
+                    .thenReturn(mock(TelephonyManager.class));
+            subscriptions.add(info);
+        }
+        SubscriptionUtil.setAvailableSubscriptionsForTesting(subscriptions);
+    }
+
+    @After
+    public void tearDown() {
+        SubscriptionUtil.setAvailableSubscriptionsForTesting(null);
+    }
+
+    @Test
+    public void getUniqueSubscriptionDisplayNames() {
+        mBenchmarkRule.measure(() -> SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext));
+    }
+}
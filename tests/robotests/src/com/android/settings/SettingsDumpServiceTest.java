@@ -29,6 +29,7 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 
+import com.android.settings.core.executor.SettingsExecutors;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
 
 import org.json.JSONException;
@@ -100,6 +101,22 @@ public class SettingsDumpServiceTest {
                 ANOMALY_VERSION);
     }
 
+    @Test
+    public void testDumpExecutors_returnStatsOfEachPool() throws JSONException {
+        SettingsExecutors.execute(SettingsExecutors.POOL_IO, "SettingsDumpServiceTest", () -> {
+        });
+
+        final JSONObject jsonObject = mTestService.dumpExecutors();
+
+        assertThat(jsonObject.getJSONObject(
+                SettingsExecutors.getPoolName(SettingsExecutors.POOL_IO)).getLong("tasks"))
+                .isEqualTo(SettingsExecutors.getStats(SettingsExecutors.POOL_IO).getTaskCount());
+        assertThat(jsonObject.has(
+                SettingsExecutors.getPoolName(SettingsExecutors.POOL_UI_CRITICAL))).isTrue();
+        assertThat(jsonObject.has(
+                SettingsExecutors.getPoolName(SettingsExecutors.POOL_BACKGROUND))).isTrue();
+    }
+
     @Ignore
     @Test
     public void testDump_printServiceAsKey() {
@@ -106,6 +106,7 @@ public class AccountPreferenceControllerTest {
     @After
     public void tearDown() {
         ShadowContentResolver.reset();
+        AccountTypeMetadataCache.resetForTesting();
     }
 
     @Test
@@ -30,6 +30,7 @@ import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.testutils.shadow.ShadowContentResolver;
+import com.android.settings.testutils.shadow.ShadowSettingsExecutors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -38,11 +39,18 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @RunWith(RobolectricTestRunner.class)
 @Config(shadows = {ShadowContentResolver.class})
 public class AccountSyncSettingsTest {
+    private static final Account ACCOUNT = new Account("acct1", "type1");
+
     private Context mContext;
     private AccountSyncSettings mAccountSyncSettings;
 
@@ -94,6 +102,102 @@ public class AccountSyncSettingsTest {
         assertThat(mAccountSyncSettings.enabledSyncNowMenu()).isFalse();
     }
 
+    @Test
+    public void onSyncStateUpdated_single_loadsAfterDelay() {
+        final SyncStateTestFragment fragment = newSyncStateFragment();
+
+        fragment.onSyncStateUpdated();
+        idleMainLooper(AccountSyncSettings.SYNC_STATE_UPDATE_DELAY_MS - 1);
+        assertThat(fragment.mLoadCount).isEqualTo(0);
+        idleMainLooper(1);
+
+        assertThat(fragment.mLoadCount).isEqualTo(1);
+    }
+
+    @Test
+    public void onSyncStateUpdated_burst_loadsWithinMaxDelay() {
+        final SyncStateTestFragment fragment = newSyncStateFragment();
+        // Each update comes before the previous one is handled.
+        final long interval = AccountSyncSettings.SYNC_STATE_UPDATE_DELAY_MS - 100;
+
+        for (long elapsed = 0; elapsed < AccountSyncSettings.SYNC_STATE_UPDATE_MAX_DELAY_MS;
+                elapsed += interval) {
+            fragment.onSyncStateUpdated();
+            idleMainLooper(interval);
+        }
+
+        assertThat(fragment.mLoadCount).isEqualTo(1);
+    }
+
+    @Test
+    public void updateSyncStateNow_showsKnownStateAndLoadsWithoutDelay() {
+        final SyncStateTestFragment fragment = newSyncStateFragment();
+        fragment.onSyncStateUpdated();
+
+        fragment.updateSyncStateNow();
+
+        assertThat(fragment.mShownStates).hasSize(1);
+        assertThat(fragment.mLoadCount).isEqualTo(1);
+        // The pending debounced load is replaced by the one that was just started.
+        idleMainLooper(AccountSyncSettings.SYNC_STATE_UPDATE_MAX_DELAY_MS);
+        assertThat(fragment.mLoadCount).isEqualTo(1);
+    }
+
+    @Test
+    public void loadSyncState_newerLoadStarted_dropsOlderState() {
+        final SyncStateTestFragment fragment = newSyncStateFragment();
+        fragment.mCountLoadsOnly = false;
+        ShadowSettingsExecutors.setDeferTasks(true);
+
+        fragment.loadSyncState();
+        fragment.loadSyncState();
+        ShadowSettingsExecutors.runTasks();
+
+        assertThat(fragment.mShownStates).hasSize(1);
+    }
+
+    private SyncStateTestFragment newSyncStateFragment() {
+        final SyncStateTestFragment fragment = new SyncStateTestFragment(mContext);
+        ReflectionHelpers.setField(fragment, "mAccount", ACCOUNT);
+        ReflectionHelpers.setField(fragment, "mUserHandle", UserHandle.SYSTEM);
+        // A state is shown already, so updates are debounced.
+        ReflectionHelpers.setField(fragment, "mSyncState",
+                SyncStateSnapshot.load(ACCOUNT, UserHandle.USER_SYSTEM));
+        return fragment;
+    }
+
+    private static void idleMainLooper(long timeMs) {
+        ShadowLooper.idleMainLooper(timeMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static class SyncStateTestFragment extends TestAccountSyncSettings {
+        private final List<SyncStateSnapshot> mShownStates = new ArrayList<>();
+        private boolean mCountLoadsOnly = true;
+        private int mLoadCount;
+
+        SyncStateTestFragment(Context context) {
+            super(context);
+        }
+
+        @Override
+        boolean isSyncStateShown() {
+            return true;
+        }
+
+        @Override
+        void loadSyncState() {
+            mLoadCount++;
+            if (!mCountLoadsOnly) {
+                super.loadSyncState();
+            }
+        }
+
+        @Override
+        void setFeedsState(SyncStateSnapshot snapshot) {
+            mShownStates.add(snapshot);
+        }
+    }
+
     public static class TestAccountSyncSettings extends AccountSyncSettings {
         private PreferenceScreen mScreen;
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+
+import com.android.settingslib.accounts.AuthenticatorHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class AccountTypeMetadataCacheTest {
+
+    private static final String ACCOUNT_TYPE = "com.acct1";
+    private static final String PACKAGE_NAME = "com.acct1.authenticator";
+    private static final UserHandle USER = UserHandle.of(0);
+
+    @Mock
+    private AuthenticatorHelper mHelper;
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private PackageInfo mPackageInfo;
+    private AccountTypeMetadataCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        mPackageInfo = new PackageInfo();
+        mPackageInfo.packageName = PACKAGE_NAME;
+        mPackageInfo.setLongVersionCode(1);
+        when(mPackageManager.getPackageInfoAsUser(eq(PACKAGE_NAME), eq(0), anyInt()))
+                .thenReturn(mPackageInfo);
+        when(mHelper.getPackageForType(ACCOUNT_TYPE)).thenReturn(PACKAGE_NAME);
+        when(mHelper.getLabelForType(mContext, ACCOUNT_TYPE)).thenReturn("Account");
+        mCache = AccountTypeMetadataCache.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        AccountTypeMetadataCache.resetForTesting();
+    }
+
+    @Test
+    public void get_samePackageVersion_resolvesOnce() {
+        mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+        final AccountTypeMetadataCache.Metadata metadata =
+                mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+
+        assertThat(metadata.getLabel().toString()).isEqualTo("Account");
+        verify(mHelper, times(1)).getLabelForType(mContext, ACCOUNT_TYPE);
+        verify(mHelper, times(1)).getDrawableForType(mContext, ACCOUNT_TYPE);
+    }
+
+    @Test
+    public void get_packageUpdated_resolvesAgain() {
+        mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+        mPackageInfo.setLongVersionCode(2);
+        when(mHelper.getLabelForType(mContext, ACCOUNT_TYPE)).thenReturn("New account");
+
+        final AccountTypeMetadataCache.Metadata metadata =
+                mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+
+        assertThat(metadata.getLabel().toString()).isEqualTo("New account");
+    }
+
+    @Test
+    public void get_packageNotFound_notCached() throws Exception {
+        when(mPackageManager.getPackageInfoAsUser(eq(PACKAGE_NAME), eq(0), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+        mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER);
+
+        verify(mHelper, times(2)).getLabelForType(mContext, ACCOUNT_TYPE);
+    }
+
+    @Test
+    public void get_noLabel_returnsNull() {
+        when(mHelper.getLabelForType(mContext, ACCOUNT_TYPE)).thenReturn(null);
+
+        assertThat(mCache.get(mContext, mHelper, ACCOUNT_TYPE, USER)).isNull();
+    }
+}
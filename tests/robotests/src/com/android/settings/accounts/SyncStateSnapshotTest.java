@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.accounts.Account;
+import android.content.SyncAdapterType;
+import android.content.SyncInfo;
+import android.content.SyncStatusInfo;
+import android.os.UserHandle;
+
+import com.android.settings.testutils.shadow.ShadowContentResolver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowContentResolver.class})
+public class SyncStateSnapshotTest {
+
+    private static final Account ACCOUNT = new Account("acct1", "type1");
+    private static final int USER_ID = UserHandle.USER_SYSTEM;
+
+    @Before
+    public void setUp() {
+        ShadowContentResolver.setSyncAdapterTypes(new SyncAdapterType[] {
+                new SyncAdapterType("visible", "type1", true /* userVisible */,
+                        true /* supportsUploading */),
+                new SyncAdapterType("invisible", "type1", false /* userVisible */,
+                        true /* supportsUploading */),
+                new SyncAdapterType("unsyncable", "type1", true /* userVisible */,
+                        true /* supportsUploading */),
+                new SyncAdapterType("other", "type2", true /* userVisible */,
+                        true /* supportsUploading */)});
+        ShadowContentResolver.setSyncable("unsyncable", 0);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowContentResolver.reset();
+    }
+
+    @Test
+    public void load_onlyVisibleSyncableAuthoritiesOfAccount() {
+        final SyncStateSnapshot snapshot = SyncStateSnapshot.load(ACCOUNT, USER_ID);
+
+        assertThat(snapshot.getAuthorities()).containsExactly("visible");
+        assertThat(snapshot.getState(ACCOUNT, "invisible")).isNull();
+        assertThat(snapshot.isSyncActive()).isFalse();
+    }
+
+    @Test
+    public void load_currentSync_isActive() {
+        ShadowContentResolver.setCurrentSyncs(Collections.singletonList(
+                new SyncInfo(0 /* authorityId */, ACCOUNT, "visible", 0 /* startTime */)));
+
+        final SyncStateSnapshot snapshot = SyncStateSnapshot.load(ACCOUNT, USER_ID);
+
+        assertThat(snapshot.isSyncActive()).isTrue();
+        assertThat(snapshot.getState(ACCOUNT, "visible").mActivelySyncing).isTrue();
+    }
+
+    @Test
+    public void load_sameState_equalsPreviousState() {
+        final SyncStatusInfo status = new SyncStatusInfo(0 /* authorityId */);
+        status.lastSuccessTime = 1000;
+        ShadowContentResolver.setSyncStatus("visible", status);
+
+        final SyncStateSnapshot.State first =
+                SyncStateSnapshot.load(ACCOUNT, USER_ID).getState(ACCOUNT, "visible");
+        final SyncStateSnapshot.State second =
+                SyncStateSnapshot.load(ACCOUNT, USER_ID).getState(ACCOUNT, "visible");
+        status.lastSuccessTime = 2000;
+        final SyncStateSnapshot.State third =
+                SyncStateSnapshot.load(ACCOUNT, USER_ID).getState(ACCOUNT, "visible");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(third).isNotEqualTo(first);
+    }
+}
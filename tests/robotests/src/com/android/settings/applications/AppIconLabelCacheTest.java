@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+
+import com.android.settings.testutils.shadow.ShadowSettingsExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppIconLabelCacheTest {
+
+    private AppIconLabelCache mCache;
+    private ApplicationInfo mInfo;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        mCache = AppIconLabelCache.getInstance(context);
+        mInfo = new ApplicationInfo(context.getApplicationInfo());
+        mInfo.longVersionCode = 1;
+    }
+
+    @After
+    public void tearDown() {
+        AppIconLabelCache.resetForTesting();
+    }
+
+    @Test
+    public void getEntry_twice_loadsOnce() {
+        final AppIconLabelCache.Entry first = mCache.getEntry(mInfo, UserHandle.USER_SYSTEM);
+        final AppIconLabelCache.Entry second = mCache.getEntry(mInfo, UserHandle.USER_SYSTEM);
+
+        assertThat(second).isSameInstanceAs(first);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(mCache.getHitRate()).isEqualTo(0.5f);
+    }
+
+    @Test
+    public void getCachedEntry_otherVersionOrUser_returnsNull() {
+        mCache.getEntry(mInfo, UserHandle.USER_SYSTEM);
+        final ApplicationInfo updated = new ApplicationInfo(mInfo);
+        updated.longVersionCode = 2;
+
+        assertThat(mCache.getCachedEntry(mInfo, UserHandle.USER_SYSTEM)).isNotNull();
+        assertThat(mCache.getCachedEntry(updated, UserHandle.USER_SYSTEM)).isNull();
+        assertThat(mCache.getCachedEntry(mInfo, 10)).isNull();
+    }
+
+    @Test
+    public void invalidate_dropsEntry() {
+        mCache.getEntry(mInfo, UserHandle.USER_SYSTEM);
+
+        mCache.invalidate(mInfo.packageName, UserHandle.USER_SYSTEM);
+
+        assertThat(mCache.getCachedEntry(mInfo, UserHandle.USER_SYSTEM)).isNull();
+    }
+
+    @Test
+    public void getEntry_invalidatedWhileLoading_doesNotCacheEntry() {
+        final ApplicationInfo info = new ApplicationInfo(mInfo) {
+            @Override
+            public CharSequence loadLabel(PackageManager pm) {
+                mCache.invalidate(packageName, UserHandle.USER_SYSTEM);
+                return super.loadLabel(pm);
+            }
+        };
+
+        assertThat(mCache.getEntry(info, UserHandle.USER_SYSTEM)).isNotNull();
+        assertThat(mCache.getCachedEntry(info, UserHandle.USER_SYSTEM)).isNull();
+    }
+
+    @Test
+    public void load_passesEntryAndCachesIt() {
+        final List<AppIconLabelCache.Entry> loaded = new ArrayList<>();
+
+        mCache.load(mInfo, UserHandle.USER_SYSTEM, loaded::add);
+        mCache.load(mInfo, UserHandle.USER_SYSTEM, loaded::add);
+
+        assertThat(loaded).hasSize(2);
+        assertThat(loaded.get(1)).isSameInstanceAs(loaded.get(0));
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void load_alreadyLoading_joinsThatLoad() {
+        final List<AppIconLabelCache.Entry> loaded = new ArrayList<>();
+        ShadowSettingsExecutors.setDeferTasks(true);
+
+        mCache.load(mInfo, UserHandle.USER_SYSTEM, loaded::add);
+        mCache.load(mInfo, UserHandle.USER_SYSTEM, loaded::add);
+        assertThat(loaded).isEmpty();
+        ShadowSettingsExecutors.runTasks();
+
+        assertThat(loaded).hasSize(2);
+        assertThat(loaded.get(1)).isSameInstanceAs(loaded.get(0));
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getDedupedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void trimMemory_uiHidden_keepsHalf_moderate_evictsAll() {
+        mCache.getEntry(mInfo, UserHandle.USER_SYSTEM);
+
+        AppIconLabelCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertThat(mCache.getCachedEntry(mInfo, UserHandle.USER_SYSTEM)).isNotNull();
+
+        AppIconLabelCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertThat(mCache.getCachedEntry(mInfo, UserHandle.USER_SYSTEM)).isNull();
+        assertThat(mCache.getSizeBytes()).isEqualTo(0);
+    }
+}
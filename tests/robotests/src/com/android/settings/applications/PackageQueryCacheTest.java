@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentCallbacks2;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.UserHandle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PackageQueryCacheTest {
+
+    private static final String PACKAGE_NAME = "com.example.app";
+    private static final String OTHER_PACKAGE_NAME = "com.example.other";
+    private static final int USER_ID = UserHandle.myUserId();
+    private static final int OTHER_USER_ID = 10;
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private PackageQueryCache mCache;
+    private Intent mLauncherIntent;
+    private ResolveInfo mResolveInfo;
+    private ApplicationInfo mApplicationInfo;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mCache = PackageQueryCache.getInstance(RuntimeEnvironment.application);
+        mLauncherIntent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        mResolveInfo = new ResolveInfo();
+        mResolveInfo.activityInfo = new ActivityInfo();
+        mResolveInfo.activityInfo.packageName = PACKAGE_NAME;
+        mResolveInfo.activityInfo.name = PACKAGE_NAME + ".Main";
+        mResolveInfo.activityInfo.applicationInfo = new ApplicationInfo();
+        when(mPackageManager.queryIntentActivitiesAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(Collections.singletonList(mResolveInfo));
+        mApplicationInfo = new ApplicationInfo();
+        mApplicationInfo.packageName = PACKAGE_NAME;
+        when(mPackageManager.getApplicationInfoAsUser(anyString(), anyInt(), anyInt()))
+                .thenReturn(mApplicationInfo);
+    }
+
+    @After
+    public void tearDown() {
+        PackageQueryCache.resetForTesting();
+    }
+
+    @Test
+    public void queryIntentActivitiesAsUser_sameQuery_queriesOnce() {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.queryIntentActivitiesAsUser(mPackageManager,
+                new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER), 0, USER_ID);
+
+        verify(mPackageManager, times(1)).queryIntentActivitiesAsUser(any(Intent.class), anyInt(),
+                anyInt());
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitRate()).isEqualTo(0.5f);
+    }
+
+    @Test
+    public void queryIntentActivitiesAsUser_otherFlags_queriesAgain() {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent,
+                PackageManager.MATCH_DISABLED_COMPONENTS, USER_ID);
+
+        verify(mPackageManager, times(2)).queryIntentActivitiesAsUser(any(Intent.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void queryIntentActivitiesAsUser_otherUser_queriesAgain() {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, OTHER_USER_ID);
+
+        verify(mPackageManager).queryIntentActivitiesAsUser(any(Intent.class), anyInt(),
+                eq(USER_ID));
+        verify(mPackageManager).queryIntentActivitiesAsUser(any(Intent.class), anyInt(),
+                eq(OTHER_USER_ID));
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void queryIntentActivitiesAsUser_invalidatedWhileQuerying_doesNotCacheResult() {
+        final List<ResolveInfo> resolveInfos = Collections.singletonList(mResolveInfo);
+        when(mPackageManager.queryIntentActivitiesAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    mCache.invalidate(PACKAGE_NAME, USER_ID, /* componentsAdded= */ true);
+                    return resolveInfos;
+                });
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+        assertThat(mCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void getApplicationInfoAsUser_invalidatedWhileQuerying_doesNotCacheResult()
+            throws Exception {
+        when(mPackageManager.getApplicationInfoAsUser(anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    mCache.invalidate(PACKAGE_NAME, USER_ID, /* componentsAdded= */ false);
+                    return mApplicationInfo;
+                });
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getApplicationInfoAsUser_sameUser_queriesOnce() throws Exception {
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, UserHandle.USER_SYSTEM);
+        final ApplicationInfo info = mCache.getApplicationInfoAsUser(mPackageManager,
+                PACKAGE_NAME, 0, UserHandle.USER_SYSTEM);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, 10);
+
+        assertThat(info).isSameInstanceAs(mApplicationInfo);
+        verify(mPackageManager, times(1)).getApplicationInfoAsUser(PACKAGE_NAME, 0,
+                UserHandle.USER_SYSTEM);
+        verify(mPackageManager, times(1)).getApplicationInfoAsUser(PACKAGE_NAME, 0, 10);
+    }
+
+    @Test(expected = PackageManager.NameNotFoundException.class)
+    public void getApplicationInfoAsUser_notFound_throws() throws Exception {
+        when(mPackageManager.getApplicationInfoAsUser(anyString(), anyInt(), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, UserHandle.USER_SYSTEM);
+    }
+
+    @Test
+    public void invalidate_otherPackageRemoved_keepsResults() throws Exception {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        mCache.invalidate(OTHER_PACKAGE_NAME, USER_ID,
+                /* componentsAdded= */ false);
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        assertThat(mCache.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate_otherPackageAdded_dropsOpenQueriesOnly() throws Exception {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        mCache.invalidate(OTHER_PACKAGE_NAME, USER_ID, /* componentsAdded= */ true);
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        verify(mPackageManager, times(2)).queryIntentActivitiesAsUser(any(Intent.class), anyInt(),
+                anyInt());
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidate_packageRemoved_dropsItsResults() throws Exception {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        mCache.invalidate(PACKAGE_NAME, USER_ID, /* componentsAdded= */ false);
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+        mCache.getApplicationInfoAsUser(mPackageManager, PACKAGE_NAME, 0, USER_ID);
+
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+        assertThat(mCache.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void setMaxSizeBytes_tooSmall_evicts() {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+
+        mCache.setMaxSizeBytes(1);
+
+        assertThat(mCache.getSizeBytes()).isAtMost(1);
+    }
+
+    @Test
+    public void onTrimMemory_moderate_evictsAll() {
+        mCache.queryIntentActivitiesAsUser(mPackageManager, mLauncherIntent, 0, USER_ID);
+
+        mCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+
+        assertThat(mCache.getSizeBytes()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.pm.ApplicationInfo;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    private List<AppEntry> mEntries;
+    private AppSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mEntries = new ArrayList<>();
+        mEntries.add(createEntry("Calculator", "com.android.calculator2"));
+        mEntries.add(createEntry("Café Finder", "com.example.cafe"));
+        mEntries.add(createEntry("Почта", "com.example.mail"));
+        mEntries.add(createEntry("WhatsApp", "com.whatsapp"));
+        mEntries.add(createEntry("Chrome", "com.android.chrome"));
+        mIndex = new AppSearchIndex(mEntries, Locale.US);
+    }
+
+    @Test
+    public void search_emptyQuery_returnsAllEntries() {
+        assertThat(mIndex.search("")).containsExactlyElementsIn(mEntries).inOrder();
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        assertThat(labels(mIndex.search("CAFE"))).containsExactly("Café Finder");
+    }
+
+    @Test
+    public void search_matchesTransliteration() {
+        assertThat(labels(mIndex.search("pocta"))).containsExactly("Почта");
+    }
+
+    @Test
+    public void search_withoutDot_matchesStartOfLastPackageSegmentOnly() {
+        assertThat(labels(mIndex.search("android"))).isEmpty();
+        assertThat(labels(mIndex.search("calculator2"))).containsExactly("Calculator");
+    }
+
+    @Test
+    public void search_withDot_matchesWholePackageName() {
+        assertThat(labels(mIndex.search("android.c")))
+                .containsExactly("Calculator", "Chrome").inOrder();
+    }
+
+    @Test
+    public void search_longerQuery_isRefinedFromPreviousResult() {
+        assertThat(labels(mIndex.search("c"))).hasSize(4);
+
+        assertThat(labels(mIndex.search("ch"))).containsExactly("Chrome");
+        assertThat(labels(mIndex.search("c"))).hasSize(4);
+    }
+
+    @Test
+    public void isIndexOf_otherList_returnsFalse() {
+        assertThat(mIndex.isIndexOf(mEntries, Locale.US)).isTrue();
+        assertThat(mIndex.isIndexOf(new ArrayList<>(mEntries), Locale.US)).isFalse();
+        assertThat(mIndex.isIndexOf(mEntries, Locale.FRANCE)).isFalse();
+    }
+
+    private static AppEntry createEntry(String label, String packageName) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.label = label;
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = packageName;
+        return entry;
+    }
+
+    private static List<String> labels(List<AppEntry> entries) {
+        final List<String> labels = new ArrayList<>();
+        for (AppEntry entry : entries) {
+            labels.add(entry.label);
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class CloneableAppIndexTest {
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private CloneableAppIndex mIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        final Context context = spy(RuntimeEnvironment.application);
+        doReturn(context).when(context).getApplicationContext();
+        when(context.getPackageManager()).thenReturn(mPackageManager);
+        when(mPackageManager.getChangedPackages(0))
+                .thenReturn(new ChangedPackages(1, Collections.emptyList()));
+        when(mPackageManager.getInstalledPackagesAsUser(eq(0), anyInt())).thenReturn(
+                Arrays.asList(packageInfo("user.app", false), packageInfo("system.app", true)));
+        mIndex = new CloneableAppIndex(context);
+    }
+
+    @Test
+    public void getPackages_onlyUserApps() {
+        assertThat(mIndex.getPackages()).containsExactly("user.app");
+    }
+
+    @Test
+    public void getPackages_packagesChanged_updatesChangedPackagesOnly() throws Exception {
+        mIndex.getPackages();
+        when(mPackageManager.getChangedPackages(1))
+                .thenReturn(new ChangedPackages(2, Arrays.asList("new.app", "user.app")));
+        when(mPackageManager.getPackageInfoAsUser(eq("new.app"), eq(0), anyInt()))
+                .thenReturn(packageInfo("new.app", false));
+        when(mPackageManager.getPackageInfoAsUser(eq("user.app"), eq(0), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        assertThat(mIndex.getPackages()).containsExactly("new.app");
+        verify(mPackageManager, times(1)).getInstalledPackagesAsUser(eq(0), anyInt());
+    }
+
+    private static PackageInfo packageInfo(String packageName, boolean system) {
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = new ApplicationInfo();
+        packageInfo.applicationInfo.packageName = packageName;
+        if (system) {
+            packageInfo.applicationInfo.flags |= ApplicationInfo.FLAG_SYSTEM;
+        }
+        return packageInfo;
+    }
+}
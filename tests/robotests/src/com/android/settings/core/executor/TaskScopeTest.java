@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.executor;
+
+import static com.android.settings.core.executor.SettingsExecutors.POOL_BACKGROUND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+@RunWith(RobolectricTestRunner.class)
+public class TaskScopeTest {
+
+    private LifecycleOwner mLifecycleOwner;
+    private LifecycleRegistry mLifecycle;
+    private TaskScope mTaskScope;
+    private List<String> mEvents;
+
+    @Before
+    public void setUp() {
+        mLifecycleOwner = () -> mLifecycle;
+        mLifecycle = new LifecycleRegistry(mLifecycleOwner);
+        mLifecycle.setCurrentState(Lifecycle.State.CREATED);
+        mTaskScope = new TaskScope(mLifecycleOwner);
+        mEvents = new ArrayList<>();
+    }
+
+    @Test
+    public void execute_shouldRunTaskAndDeliverResult() {
+        mTaskScope.execute(POOL_BACKGROUND, "test", () -> {
+            mEvents.add("task");
+            mTaskScope.postOnMainThread(() -> mEvents.add("result"));
+        });
+
+        assertThat(mEvents).containsExactly("task", "result").inOrder();
+    }
+
+    @Test
+    public void execute_afterDestroy_shouldNotRunTask() {
+        mLifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+
+        final Future<?> future = mTaskScope.submit(POOL_BACKGROUND, "test",
+                () -> mEvents.add("task"));
+
+        assertThat(mTaskScope.isCancelled()).isTrue();
+        assertThat(mEvents).isEmpty();
+        assertThat(future.isDone()).isTrue();
+    }
+
+    @Test
+    public void postOnMainThread_afterCancel_shouldDropResult() {
+        mTaskScope.cancel();
+
+        mTaskScope.postOnMainThread(() -> mEvents.add("result"));
+
+        assertThat(mEvents).isEmpty();
+    }
+
+    @Test
+    public void execute_shouldRecordStats() {
+        final long taskCount = SettingsExecutors.getStats(POOL_BACKGROUND).getTaskCount();
+
+        mTaskScope.execute(POOL_BACKGROUND, "test", () -> mEvents.add("task"));
+
+        assertThat(SettingsExecutors.getStats(POOL_BACKGROUND).getTaskCount())
+                .isEqualTo(taskCount + 1);
+    }
+
+    @Test
+    public void serialExecutor_nestedTasks_shouldRunInOrder() {
+        final Executor executor = SettingsExecutors.newSerialExecutor(POOL_BACKGROUND, "test");
+
+        executor.execute(() -> {
+            executor.execute(() -> mEvents.add("second"));
+            mEvents.add("first");
+        });
+
+        assertThat(mEvents).containsExactly("first", "second").inOrder();
+    }
+}
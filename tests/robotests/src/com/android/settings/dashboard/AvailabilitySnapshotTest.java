@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.android.settings.core.BasePreferenceController.ThreadSafeAvailability;
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class AvailabilitySnapshotTest {
+
+    @Test
+    public void isAvailable_evaluatesEachControllerOnce() {
+        final AbstractPreferenceController available = mock(AbstractPreferenceController.class);
+        final AbstractPreferenceController unavailable = mock(AbstractPreferenceController.class);
+        when(available.isAvailable()).thenReturn(true);
+        when(unavailable.isAvailable()).thenReturn(false);
+
+        final AvailabilitySnapshot snapshot =
+                AvailabilitySnapshot.evaluate(Arrays.asList(available, unavailable));
+
+        assertThat(snapshot.isAvailable(available)).isTrue();
+        assertThat(snapshot.isAvailable(available)).isTrue();
+        assertThat(snapshot.isAvailable(unavailable)).isFalse();
+        verify(available, times(1)).isAvailable();
+        verify(unavailable, times(1)).isAvailable();
+    }
+
+    @Test
+    public void evaluate_threadSafeController_isEvaluated() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class,
+                withSettings().extraInterfaces(ThreadSafeAvailability.class));
+        when(controller.isAvailable()).thenReturn(true);
+
+        final AvailabilitySnapshot snapshot =
+                AvailabilitySnapshot.evaluate(Collections.singletonList(controller));
+
+        assertThat(snapshot.isAvailable(controller)).isTrue();
+        assertThat(snapshot.getCostNanos(controller)).isAtLeast(0L);
+        verify(controller, times(1)).isAvailable();
+    }
+
+    @Test
+    public void isAvailable_controllerNotInSnapshot_evaluatesItNow() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        when(controller.isAvailable()).thenReturn(true);
+
+        final AvailabilitySnapshot snapshot =
+                AvailabilitySnapshot.evaluate(Collections.emptyList());
+
+        assertThat(snapshot.getCostNanos(controller)).isEqualTo(-1L);
+        assertThat(snapshot.isAvailable(controller)).isTrue();
+        assertThat(snapshot.getCostNanos(controller)).isAtLeast(0L);
+    }
+}
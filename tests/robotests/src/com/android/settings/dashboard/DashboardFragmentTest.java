@@ -56,6 +56,7 @@ import com.android.settings.R;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.slices.BlockingSlicePrefController;
 import com.android.settings.testutils.FakeFeatureFactory;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settingslib.PrimarySwitchPreference;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
@@ -322,6 +323,23 @@ public class DashboardFragmentTest {
         verify(mockController2).getPreferenceKey();
     }
 
+    @Test
+    public void updatePreferenceStates_samePass_evaluatesAvailabilityOnce() {
+        ShadowThreadUtils.setDeferMainThreadTasks(true);
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        when(controller.isAvailable()).thenReturn(true);
+        mTestFragment.addPreferenceController(controller);
+
+        mTestFragment.updatePreferenceStates();
+        mTestFragment.updatePreferenceStates();
+        verify(controller).isAvailable();
+
+        // The next pass evaluates it again.
+        ShadowThreadUtils.runMainThreadTasks();
+        mTestFragment.updatePreferenceStates();
+        verify(controller, times(2)).isAvailable();
+    }
+
     @Test
     public void onExpandButtonClick_shouldLogAdvancedButtonExpand() {
         final MetricsFeatureProvider metricsFeatureProvider
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroupAdapter;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class ViewportStateUpdaterTest {
+
+    private static final int PREFERENCES = 60;
+    private static final String HIGHLIGHT_KEY = "key_55";
+
+    private Context mContext;
+    private PreferenceScreen mScreen;
+    private RecyclerView mListView;
+    private ViewportStateUpdater mUpdater;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mScreen = new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        for (int i = 0; i < PREFERENCES; i++) {
+            final Preference preference = new Preference(mContext);
+            preference.setKey("key_" + i);
+            mScreen.addPreference(preference);
+        }
+        mListView = new RecyclerView(mContext);
+        mListView.setLayoutManager(new LinearLayoutManager(mContext));
+        mListView.setAdapter(new PreferenceGroupAdapter(mScreen));
+        mUpdater = new ViewportStateUpdater(mListView, HIGHLIGHT_KEY);
+    }
+
+    @Test
+    public void updateState_nearViewport_updatesNow() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        final Preference preference = mScreen.findPreference("key_3");
+
+        mUpdater.updateState(controller, preference);
+
+        verify(controller).updateState(preference);
+        assertThat(mUpdater.isDeferred(preference)).isFalse();
+    }
+
+    @Test
+    public void updateState_farFromViewport_defersUntilUpdateAll() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        final Preference preference = mScreen.findPreference("key_50");
+
+        mUpdater.updateState(controller, preference);
+
+        verify(controller, never()).updateState(preference);
+        assertThat(mUpdater.isDeferred(preference)).isTrue();
+
+        mUpdater.updateAll();
+
+        verify(controller).updateState(preference);
+        assertThat(mUpdater.isDeferred(preference)).isFalse();
+    }
+
+    @Test
+    public void updateState_highlightedPreference_updatesNow() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        final Preference preference = mScreen.findPreference(HIGHLIGHT_KEY);
+
+        mUpdater.updateState(controller, preference);
+
+        verify(controller).updateState(preference);
+    }
+
+    @Test
+    public void updateState_preferenceNotInList_updatesNow() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        final Preference preference = new Preference(mContext);
+        preference.setKey("not_in_list");
+
+        mUpdater.updateState(controller, preference);
+
+        verify(controller).updateState(preference);
+    }
+
+    @Test
+    public void release_dropsDeferredUpdates() {
+        final AbstractPreferenceController controller = mock(AbstractPreferenceController.class);
+        final Preference preference = mScreen.findPreference("key_50");
+        mUpdater.updateState(controller, preference);
+
+        mUpdater.release();
+        mUpdater.updateAll();
+
+        verify(controller, never()).updateState(preference);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class WordPrefixIndexTest {
+
+    private WordPrefixIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new WordPrefixIndex(Arrays.asList(
+                new String[] {"United States"},
+                new String[] {"Hong Kong"},
+                new String[] {"United Kingdom", "Great Britain"},
+                new String[] {"Kongo-Brazzaville"}), Locale.US);
+    }
+
+    @Test
+    public void find_matchesKeysAndWordStarts() {
+        assertThat(mIndex.find("unit")).asList().containsExactly(0, 2).inOrder();
+        assertThat(mIndex.find("KON")).asList().containsExactly(1, 3).inOrder();
+        assertThat(mIndex.find("braz")).asList().containsExactly(3);
+        assertThat(mIndex.find("nited")).isEmpty();
+    }
+
+    @Test
+    public void find_narrowingAndWideningPrefixes() {
+        assertThat(mIndex.find("k")).asList().containsExactly(1, 2, 3).inOrder();
+        assertThat(mIndex.find("ki")).asList().containsExactly(2);
+        assertThat(mIndex.find("kix")).isEmpty();
+        assertThat(mIndex.find("k")).asList().containsExactly(1, 2, 3).inOrder();
+        assertThat(mIndex.find("g")).asList().containsExactly(2);
+    }
+}
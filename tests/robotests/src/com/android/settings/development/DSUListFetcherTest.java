@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.development;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import com.android.settings.testutils.shadow.ShadowSettingsExecutors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class DSUListFetcherTest {
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private final Map<String, String> mBodies = new ConcurrentHashMap<>();
+    private final AtomicInteger mFullResponses = new AtomicInteger();
+    private HttpServer mServer;
+    private File mCacheDir;
+    private DSUListFetcher mFetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        // A local stand-in for the server hosting the lists.
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", this::handle);
+        mServer.start();
+        mCacheDir = mTemporaryFolder.newFolder();
+        mFetcher = new DSUListFetcher(mCacheDir,
+                url -> (HttpURLConnection) url.openConnection());
+
+        mBodies.put("/root.json", "{\"include\": [\"" + url("/a.json") + "\", null, \""
+                + url("/b.json") + "\"], \"images\": [" + image("root") + "]}");
+        mBodies.put("/a.json", "{\"include\": [\"" + url("/c.json") + "\"], \"images\": ["
+                + image("a") + "]}");
+        mBodies.put("/b.json", "{\"images\": [" + image("b") + "], \"unknown\": {\"x\": [1]}}");
+        mBodies.put("/c.json", "{\"images\": [" + image("c") + "]}");
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_followsIncludesInOrder() throws Exception {
+        final DSUListFetcher.Result result = mFetcher.fetch(url("/root.json"));
+
+        assertThat(names(result)).containsExactly("c", "a", "b", "root").inOrder();
+        assertThat(result.isModified()).isTrue();
+        assertThat(result.getImages().get(0).getJSONArray("vndk").getInt(0)).isEqualTo(30);
+    }
+
+    @Test
+    public void fetch_unchanged_isNotModifiedAndNotDownloadedAgain() throws Exception {
+        mFetcher.fetch(url("/root.json"));
+        mFullResponses.set(0);
+
+        final DSUListFetcher.Result result = mFetcher.fetch(url("/root.json"));
+
+        assertThat(names(result)).containsExactly("c", "a", "b", "root").inOrder();
+        assertThat(result.isModified()).isFalse();
+        assertThat(mFullResponses.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void fetch_includeChanged_isModified() throws Exception {
+        mFetcher.fetch(url("/root.json"));
+        mBodies.put("/b.json", "{\"images\": [" + image("b2") + "]}");
+
+        final DSUListFetcher.Result result = mFetcher.fetch(url("/root.json"));
+
+        assertThat(names(result)).containsExactly("c", "a", "b2", "root").inOrder();
+        assertThat(result.isModified()).isTrue();
+    }
+
+    @Test
+    public void fetch_poolBusy_fetchesIncludesOnCallingThread() throws Exception {
+        ShadowSettingsExecutors.setDeferTasks(true);
+
+        final DSUListFetcher.Result result = mFetcher.fetch(url("/root.json"));
+
+        assertThat(names(result)).containsExactly("c", "a", "b", "root").inOrder();
+        // The queued tasks are already done when a pool thread gets to them.
+        mFullResponses.set(0);
+        ShadowSettingsExecutors.runTasks();
+        assertThat(mFullResponses.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void fetch_includedTooDeep_skipsDeeperLists() throws Exception {
+        // root.json includes l1.json, which includes l2.json, and so on.
+        mBodies.put("/root.json", "{\"include\": [\"" + url("/l1.json") + "\"]}");
+        final int levels = DSUListFetcher.MAX_INCLUDE_DEPTH + 1;
+        for (int i = 1; i <= levels; i++) {
+            mBodies.put("/l" + i + ".json", "{\"include\": [\"" + url("/l" + (i + 1) + ".json")
+                    + "\"], \"images\": [" + image("l" + i) + "]}");
+        }
+
+        final DSUListFetcher.Result result = mFetcher.fetch(url("/root.json"));
+
+        assertThat(names(result)).hasSize(DSUListFetcher.MAX_INCLUDE_DEPTH);
+        assertThat(names(result)).doesNotContain("l" + levels);
+    }
+
+    @Test
+    public void loadCached_afterFetch_worksOffline() throws Exception {
+        mFetcher.fetch(url("/root.json"));
+        mServer.stop(0);
+
+        final DSUListFetcher.Result result =
+                new DSUListFetcher(mCacheDir).loadCached(url("/root.json"));
+
+        assertThat(names(result)).containsExactly("c", "a", "b", "root").inOrder();
+    }
+
+    @Test
+    public void loadCached_nothingCached_returnsNull() throws Exception {
+        assertThat(mFetcher.loadCached(url("/root.json"))).isNull();
+    }
+
+    @Test
+    public void fetch_missingInclude_throwsIOException() throws Exception {
+        mBodies.remove("/c.json");
+
+        assertThrows(IOException.class, () -> mFetcher.fetch(url("/root.json")));
+    }
+
+    @Test
+    public void fetch_malformedList_throwsJSONException() throws Exception {
+        mBodies.put("/b.json", "{\"images\": [\"not an image\"]}");
+
+        assertThrows(JSONException.class, () -> mFetcher.fetch(url("/root.json")));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final String body = mBodies.get(exchange.getRequestURI().getPath());
+        if (body == null) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            exchange.close();
+            return;
+        }
+        final String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            exchange.close();
+            return;
+        }
+        mFullResponses.incrementAndGet();
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("ETag", etag);
+        // Streamed, with no length up front.
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http", mServer.getAddress().getHostString(),
+                mServer.getAddress().getPort(), path);
+    }
+
+    private static String image(String name) {
+        return "{\"name\": \"" + name + "\", \"details\": \"\", \"cpu_abi\": \"x86_64\", "
+                + "\"vndk\": [30], \"uri\": \"https://example.com/" + name + ".zip\"}";
+    }
+
+    private static List<String> names(DSUListFetcher.Result result) throws JSONException {
+        final List<String> names = new ArrayList<>();
+        for (JSONObject image : result.getImages()) {
+            names.add(image.getString("name"));
+        }
+        return names;
+    }
+}
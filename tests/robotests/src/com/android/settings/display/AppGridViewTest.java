@@ -151,8 +151,8 @@ public class AppGridViewTest {
     }
 
     private void setUpResolveInfos(int appCount) {
-        when(mContext.getPackageManager().queryIntentActivities(
-                any(Intent.class), anyInt()))
+        when(mContext.getPackageManager().queryIntentActivitiesAsUser(
+                any(Intent.class), anyInt(), anyInt()))
                 .thenReturn(createFakeResolveInfos(appCount));
     }
 
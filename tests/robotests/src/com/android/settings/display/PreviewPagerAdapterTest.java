@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.display;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.view.ContextThemeWrapper;
+import android.view.ViewStub;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.R;
+import com.android.settings.testutils.shadow.ShadowSettingsExecutors;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowSettingsExecutors.class, ShadowThreadUtils.class})
+public class PreviewPagerAdapterTest {
+
+    private static final int[] PREVIEW_SAMPLE_RES_IDS = {R.layout.screen_zoom_preview_1};
+    private static final int LAYER_COUNT = 5;
+
+    private PreviewPagerAdapter mAdapter;
+    private FrameLayout mFrame;
+
+    @Before
+    public void setUp() {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final Configuration[] configurations = new Configuration[LAYER_COUNT];
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            configurations[i] = new Configuration();
+        }
+        mAdapter = new PreviewPagerAdapter(context, /* isLayoutRtl= */ false,
+                PREVIEW_SAMPLE_RES_IDS, configurations);
+        mFrame = (FrameLayout) mAdapter.instantiateItem(new LinearLayout(context), 0);
+    }
+
+    @Test
+    public void setPreviewLayer_preInflatesAdjacentLayers() {
+        mAdapter.setPreviewLayer(2, -1, 0, /* animate= */ false);
+
+        assertThat(mFrame.getChildAt(1)).isNotInstanceOf(ViewStub.class);
+        assertThat(mFrame.getChildAt(3)).isNotInstanceOf(ViewStub.class);
+        assertThat(mFrame.getChildAt(0)).isInstanceOf(ViewStub.class);
+        assertThat(mFrame.getChildAt(4)).isInstanceOf(ViewStub.class);
+    }
+
+    @Test
+    public void setPreviewLayer_moveByOneStep_layerAlreadyInflated() {
+        mAdapter.setPreviewLayer(2, -1, 0, /* animate= */ false);
+
+        // No stub is left to inflate on the UI thread for the layer moved to.
+        assertThat(mFrame.getChildAt(3)).isNotInstanceOf(ViewStub.class);
+        mAdapter.setPreviewLayer(3, 2, 0, /* animate= */ false);
+        assertThat(mFrame.getChildAt(4)).isNotInstanceOf(ViewStub.class);
+        mAdapter.setPreviewLayer(4, 3, 0, /* animate= */ false);
+
+        assertThat(mFrame.getChildCount()).isEqualTo(LAYER_COUNT);
+    }
+
+    @Test
+    public void setPreviewLayer_preInflatedLayer_hasItsOwnTheme() {
+        mAdapter.setPreviewLayer(2, -1, 0, /* animate= */ false);
+
+        final Context layerContext = mFrame.getChildAt(3).getContext();
+        assertThat(layerContext).isInstanceOf(ContextThemeWrapper.class);
+        final Context configContext = ((ContextThemeWrapper) layerContext).getBaseContext();
+        assertThat(layerContext.getTheme()).isNotSameInstanceAs(configContext.getTheme());
+    }
+
+    @Test
+    public void setPreviewLayer_withStrides_preInflatesLayersAtStrides() {
+        mAdapter.setAdjacentLayerStrides(1, 2);
+
+        mAdapter.setPreviewLayer(2, -1, 0, /* animate= */ false);
+
+        assertThat(mFrame.getChildAt(0)).isNotInstanceOf(ViewStub.class);
+        assertThat(mFrame.getChildAt(4)).isNotInstanceOf(ViewStub.class);
+    }
+}
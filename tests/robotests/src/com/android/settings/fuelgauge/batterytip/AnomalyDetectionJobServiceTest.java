@@ -28,12 +28,14 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -323,4 +325,40 @@ public class AnomalyDetectionJobServiceTest {
 
         assertThat(mAnomalyDetectionJobService.mIsJobCanceled).isFalse();
     }
+
+    @Test
+    public void onStartJob_stoppedMidDrain_completesCommittedChunksOnly() {
+        BatteryDatabaseManager.setUpForTest(mBatteryDatabaseManager);
+        try {
+            doAnswer(invocation -> {
+                ((Runnable) invocation.getArgument(0)).run();
+                return null;
+            }).when(mBatteryDatabaseManager).runInTransaction(any());
+            doReturn(new AnomalyDetectionJobService.PendingAnomaly(UID, SYSTEM_PACKAGE,
+                    ANOMALY_TYPE, AnomalyDatabaseHelper.State.NEW, 0L))
+                    .when(mAnomalyDetectionJobService).resolveAnomaly(any(), any(), any(), any(),
+                            any(), any(), any(), any(), any());
+            when(mJobWorkItem.getIntent()).thenReturn(new Intent().putExtras(mBundle));
+            final int stopAt = AnomalyDetectionJobService.WORK_CHUNK_SIZE + 2;
+            final int[] dequeued = {0};
+            when(mJobParameters.dequeueWork()).thenAnswer(invocation -> {
+                if (++dequeued[0] == stopAt) {
+                    mAnomalyDetectionJobService.onStopJob(mJobParameters);
+                }
+                return mJobWorkItem;
+            });
+
+            mAnomalyDetectionJobService.onStartJob(mJobParameters);
+
+            // Every dequeued anomaly is committed, one transaction per chunk, but the work of
+            // the chunk committed after the stop is left to be redelivered.
+            verify(mBatteryDatabaseManager, times(2)).runInTransaction(any());
+            verify(mBatteryDatabaseManager, times(stopAt)).insertAnomaly(anyInt(), anyString(),
+                    anyInt(), anyInt(), anyLong());
+            verify(mJobParameters, times(AnomalyDetectionJobService.WORK_CHUNK_SIZE))
+                    .completeWork(mJobWorkItem);
+        } finally {
+            BatteryDatabaseManager.setUpForTest(null);
+        }
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batterytip;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.content.Context;
+import android.util.SparseLongArray;
+
+import com.android.settings.fuelgauge.batterytip.AnomalyDatabaseHelper.ActionType;
+import com.android.settings.fuelgauge.batterytip.AnomalyDatabaseHelper.State;
+import com.android.settings.testutils.DatabaseTestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryDatabaseManagerTest {
+
+    private static final int UID = 10010;
+    private static final String PACKAGE_NAME = "com.android.app";
+    private static final String OTHER_PACKAGE_NAME = "com.android.app.other";
+    private static final int ANOMALY_TYPE = 1;
+
+    private Context mContext;
+    private BatteryDatabaseManager mBatteryDatabaseManager;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mBatteryDatabaseManager = BatteryDatabaseManager.getInstance(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseTestUtils.clearDb(mContext);
+    }
+
+    @Test
+    public void queryActionTime_reflectsInsertsAndDeletes() {
+        mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID, PACKAGE_NAME, 1000L);
+        assertThat(mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION).get(UID))
+                .isEqualTo(1000L);
+
+        // Now served from memory, which must follow the writes.
+        mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID, PACKAGE_NAME, 2000L);
+        assertThat(mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION).get(UID))
+                .isEqualTo(2000L);
+
+        mBatteryDatabaseManager.deleteAction(ActionType.RESTRICTION, UID, PACKAGE_NAME);
+        assertThat(mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION).size())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void queryActionTime_severalPackagesForUid_returnsLatest() {
+        mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID, PACKAGE_NAME, 3000L);
+        mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID, OTHER_PACKAGE_NAME,
+                1000L);
+
+        final SparseLongArray timeStamps =
+                mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION);
+
+        assertThat(timeStamps.size()).isEqualTo(1);
+        assertThat(timeStamps.get(UID)).isEqualTo(3000L);
+    }
+
+    @Test
+    public void runInTransaction_commitsAllInserts() {
+        mBatteryDatabaseManager.runInTransaction(() -> {
+            mBatteryDatabaseManager.insertAnomaly(UID, PACKAGE_NAME, ANOMALY_TYPE, State.NEW,
+                    1000L);
+            mBatteryDatabaseManager.insertAnomaly(UID + 1, OTHER_PACKAGE_NAME, ANOMALY_TYPE,
+                    State.NEW, 2000L);
+        });
+
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(0L, State.NEW)).hasSize(2);
+    }
+
+    @Test
+    public void runInTransaction_throws_rollsBackEverything() {
+        mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID, PACKAGE_NAME, 1000L);
+        mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION);
+
+        assertThrows(IllegalStateException.class, () ->
+                mBatteryDatabaseManager.runInTransaction(() -> {
+                    mBatteryDatabaseManager.insertAnomaly(UID, PACKAGE_NAME, ANOMALY_TYPE,
+                            State.NEW, 1000L);
+                    mBatteryDatabaseManager.insertAction(ActionType.RESTRICTION, UID,
+                            PACKAGE_NAME, 2000L);
+                    throw new IllegalStateException();
+                }));
+
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(0L, State.NEW)).isEmpty();
+        assertThat(mBatteryDatabaseManager.queryActionTime(ActionType.RESTRICTION).get(UID))
+                .isEqualTo(1000L);
+    }
+}
@@ -161,4 +161,17 @@ public class HighUsageDetectorTest {
         assertThat(appInfos).containsExactly(mLowAppInfo, mHighAppInfo);
         assertThat(appInfos.get(0)).isEqualTo(mHighAppInfo);
     }
+
+    @Test
+    public void testDetect_moreAppsThanCount_keepsTopAppsOnly() {
+        doReturn(true).when(mDataParser).isDeviceHeavilyUsed();
+        ReflectionHelpers.setField(mPolicy, "highUsageAppCount", 1);
+
+        final HighUsageTip highUsageTip = (HighUsageTip) mHighUsageDetector.detect();
+
+        assertThat(highUsageTip.getHighUsageAppList()).containsExactly(mHighAppInfo);
+        // The consumers are shared with other detectors, so they must not be reordered.
+        assertThat(mBatteryUsageStats.getUidBatteryConsumers()).containsExactly(
+                mSystemBatteryConsumer, mLowBatteryConsumer, mHighBatteryConsumer).inOrder();
+    }
 }
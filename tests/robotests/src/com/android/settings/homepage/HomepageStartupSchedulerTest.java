@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.util.ArraySet;
+
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class HomepageStartupSchedulerTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() {
+        mContext.getSharedPreferences(HomepageStartupScheduler.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+    }
+
+    @Test
+    public void noProfile_everythingIsNeeded() {
+        final HomepageStartupScheduler scheduler = newLoadedScheduler();
+
+        assertThat(scheduler.hasProfile()).isFalse();
+        assertThat(scheduler.isNeededAtStartup("top_level_network")).isTrue();
+        assertThat(scheduler.areCardsNeededAtStartup()).isTrue();
+    }
+
+    @Test
+    public void recordedLaunches_onlyRecordedKeysAreNeeded() {
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("a", "b"), false);
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("c"), false);
+
+        final HomepageStartupScheduler scheduler = newLoadedScheduler();
+
+        assertThat(scheduler.hasProfile()).isTrue();
+        assertThat(scheduler.isNeededAtStartup("a")).isTrue();
+        assertThat(scheduler.isNeededAtStartup("c")).isTrue();
+        assertThat(scheduler.isNeededAtStartup("d")).isFalse();
+        assertThat(scheduler.areCardsNeededAtStartup()).isFalse();
+    }
+
+    @Test
+    public void cardsShownInAnyRecentLaunch_cardsAreNeeded() {
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("a"), true);
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("a"), false);
+
+        assertThat(newLoadedScheduler().areCardsNeededAtStartup()).isTrue();
+    }
+
+    @Test
+    public void profileNotReadYet_everythingIsNeeded() {
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("a"), false);
+
+        final HomepageStartupScheduler scheduler = new HomepageStartupScheduler(mContext);
+
+        assertThat(scheduler.hasProfile()).isFalse();
+        assertThat(scheduler.isNeededAtStartup("d")).isTrue();
+        assertThat(scheduler.areCardsNeededAtStartup()).isTrue();
+    }
+
+    @Test
+    public void prefetch_readsProfile() {
+        FakeFeatureFactory.setupForTest();
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("a"), false);
+        final HomepageStartupScheduler scheduler = new HomepageStartupScheduler(mContext);
+
+        scheduler.prefetch();
+
+        assertThat(scheduler.hasProfile()).isTrue();
+        assertThat(scheduler.isNeededAtStartup("d")).isFalse();
+    }
+
+    @Test
+    public void recordLaunch_keepsRecentLaunchesOnly() {
+        new HomepageStartupScheduler(mContext).recordLaunch(keys("old"), false);
+        for (int i = 0; i < HomepageStartupScheduler.MAX_RECORDED_LAUNCHES; i++) {
+            new HomepageStartupScheduler(mContext).recordLaunch(keys("new"), false);
+        }
+
+        final HomepageStartupScheduler scheduler = newLoadedScheduler();
+
+        assertThat(scheduler.isNeededAtStartup("new")).isTrue();
+        assertThat(scheduler.isNeededAtStartup("old")).isFalse();
+    }
+
+    @Test
+    public void save_withoutFirstFrame_recordsNothing() {
+        new HomepageStartupScheduler(mContext).save(null);
+
+        assertThat(newLoadedScheduler().hasProfile()).isFalse();
+    }
+
+    private HomepageStartupScheduler newLoadedScheduler() {
+        final HomepageStartupScheduler scheduler = new HomepageStartupScheduler(mContext);
+        scheduler.loadProfile();
+        return scheduler;
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new ArraySet<>(Arrays.asList(keys));
+    }
+}
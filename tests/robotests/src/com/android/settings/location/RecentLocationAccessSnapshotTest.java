@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.location;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
+import com.android.settingslib.applications.RecentAppOpsAccess;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class RecentLocationAccessSnapshotTest {
+
+    private static final int WORK_USER_ID = 10;
+
+    @Mock
+    private RecentAppOpsAccess mRecentAccess;
+    @Mock
+    private UserManager mUserManager;
+    @Mock
+    private AppOpsManager mAppOpsManager;
+    @Mock
+    private RecentLocationAccessSnapshot.Listener mListener;
+
+    private RecentLocationAccessSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = spy(RuntimeEnvironment.application);
+        when(context.getSystemService(UserManager.class)).thenReturn(mUserManager);
+        when(context.getSystemService(AppOpsManager.class)).thenReturn(mAppOpsManager);
+        when(mUserManager.isManagedProfile(WORK_USER_ID)).thenReturn(true);
+        doReturn(ImmutableList.of(
+                access("first", UserHandle.SYSTEM),
+                access("work", UserHandle.of(WORK_USER_ID)),
+                access("second", UserHandle.SYSTEM)))
+                .when(mRecentAccess).getAppListSorted(false);
+        mSnapshot = new RecentLocationAccessSnapshot(context, mRecentAccess);
+        mSnapshot.addListener(mListener);
+    }
+
+    @Test
+    public void getAccesses_byProfile_filtersAccesses() {
+        assertThat(packages(mSnapshot.getAccesses(false, ProfileSelectFragment.ProfileType.ALL)))
+                .containsExactly("first", "work", "second").inOrder();
+        assertThat(packages(mSnapshot.getAccesses(false,
+                ProfileSelectFragment.ProfileType.PERSONAL)))
+                .containsExactly("first", "second").inOrder();
+        assertThat(packages(mSnapshot.getAccesses(false, ProfileSelectFragment.ProfileType.WORK)))
+                .containsExactly("work");
+    }
+
+    @Test
+    public void getAccesses_severalReaders_queriesOnce() {
+        mSnapshot.getAccesses(false, ProfileSelectFragment.ProfileType.PERSONAL);
+        mSnapshot.getAccesses(false, ProfileSelectFragment.ProfileType.WORK);
+        mSnapshot.getAccesses(false);
+
+        verify(mRecentAccess, times(1)).getAppListSorted(false);
+    }
+
+    @Test
+    public void onOpActiveChanged_listedApp_movesToTopWithoutReload() {
+        mSnapshot.getAccesses(false);
+
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_FINE_LOCATION,
+                UserHandle.getUid(UserHandle.USER_SYSTEM, 10001), "second", false);
+        verify(mListener, never()).onRecentLocationAccessesChanged();
+        idleForChanges();
+
+        verify(mListener).onRecentLocationAccessesChanged();
+        final List<RecentAppOpsAccess.Access> accesses = mSnapshot.getAccesses(false);
+        assertThat(packages(accesses)).containsExactly("second", "first", "work").inOrder();
+        assertThat(accesses.get(0).accessFinishTime).isGreaterThan(0L);
+        verify(mRecentAccess, times(1)).getAppListSorted(false);
+    }
+
+    @Test
+    public void onOpActiveChanged_unlistedAppSeveralTimes_reloadsOnceAfterDelay() {
+        mSnapshot.getAccesses(false);
+        doReturn(ImmutableList.of(access("new", UserHandle.SYSTEM), access("first",
+                UserHandle.SYSTEM))).when(mRecentAccess).getAppListSorted(false);
+
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_FINE_LOCATION,
+                UserHandle.getUid(UserHandle.USER_SYSTEM, 10002), "new", true);
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_FINE_LOCATION,
+                UserHandle.getUid(UserHandle.USER_SYSTEM, 10002), "new", false);
+        verify(mRecentAccess, times(1)).getAppListSorted(false);
+        idleForChanges();
+
+        verify(mListener).onRecentLocationAccessesChanged();
+        verify(mRecentAccess, times(2)).getAppListSorted(false);
+        assertThat(packages(mSnapshot.getAccesses(false))).containsExactly("new", "first")
+                .inOrder();
+        verify(mRecentAccess, times(2)).getAppListSorted(false);
+    }
+
+    @Test
+    public void onOpActiveChanged_appHiddenAfterReload_isIgnored() {
+        mSnapshot.getAccesses(false);
+        final int uid = UserHandle.getUid(UserHandle.USER_SYSTEM, 10003);
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_FINE_LOCATION, uid, "hidden", true);
+        idleForChanges();
+
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_FINE_LOCATION, uid, "hidden", false);
+        mSnapshot.onOpActiveChanged(AppOpsManager.OPSTR_COARSE_LOCATION, uid, "hidden", true);
+        idleForChanges();
+
+        verify(mListener, times(1)).onRecentLocationAccessesChanged();
+        verify(mRecentAccess, times(2)).getAppListSorted(false);
+    }
+
+    private static void idleForChanges() {
+        ShadowLooper.idleMainLooper(RecentLocationAccessSnapshot.CHANGE_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static RecentAppOpsAccess.Access access(String packageName, UserHandle user) {
+        return new RecentAppOpsAccess.Access(packageName, user, null, packageName, "", 0);
+    }
+
+    private static List<String> packages(List<RecentAppOpsAccess.Access> accesses) {
+        final List<String> packages = new ArrayList<>();
+        for (RecentAppOpsAccess.Access access : accesses) {
+            packages.add(access.packageName);
+        }
+        return packages;
+    }
+}
@@ -20,6 +20,8 @@ package com.android.settings.panel;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
@@ -109,6 +111,42 @@ public class PanelFragmentTest {
         assertThat(countdownLatch.isPanelReadyToLoad()).isTrue();
     }
 
+    @Test
+    public void loadPanelWhenReady_progressiveLoading_showsFirstRenderableSlice() {
+        initFakeActivity();
+        mPanelFragment.onCreateView(LayoutInflater.from(mContext),
+                new LinearLayout(mContext), null);
+
+        mPanelFragment.loadPanelWhenReady(true /* hasRenderableSlice */);
+
+        assertThat(mPanelFragment.mLayoutView.findViewById(R.id.panel_parent_layout)
+                .getVisibility()).isEqualTo(View.VISIBLE);
+    }
+
+    @Test
+    public void loadPanelWhenReady_progressiveLoadingDisabled_waitsForAllSlices() {
+        doReturn(false).when(mFakePanelContent).isProgressiveLoadingEnabled();
+        initFakeActivity();
+        mPanelFragment.onCreateView(LayoutInflater.from(mContext),
+                new LinearLayout(mContext), null);
+
+        mPanelFragment.loadPanelWhenReady(true /* hasRenderableSlice */);
+
+        assertThat(mPanelFragment.mLayoutView.findViewById(R.id.panel_parent_layout)
+                .getVisibility()).isEqualTo(View.GONE);
+    }
+
+    @Test
+    public void onCreate_logsOpenEventOnce() {
+        initFakeActivity();
+        verify(mFakeFeatureFactory.metricsFeatureProvider).action(
+                anyInt(),
+                eq(SettingsEnums.PAGE_VISIBLE),
+                anyInt(),
+                any(),
+                anyInt());
+    }
+
     @Test
     public void onCreate_logsOpenEvent() {
         initFakeActivity();
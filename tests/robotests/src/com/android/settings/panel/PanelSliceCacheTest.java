@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.panel;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.slice.Slice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class PanelSliceCacheTest {
+
+    private static final Uri URI = Uri.parse("content://com.android.settings.slices/wifi");
+
+    private Slice mSlice;
+
+    @Before
+    public void setUp() {
+        mSlice = new Slice.Builder(URI).build();
+    }
+
+    @After
+    public void tearDown() {
+        PanelSliceCache.clear();
+    }
+
+    @Test
+    public void getSlice_recentSlice_returnsIt() {
+        PanelSliceCache.putSlice(URI, mSlice);
+
+        assertThat(PanelSliceCache.getSlice(URI)).isSameInstanceAs(mSlice);
+    }
+
+    @Test
+    public void getSlice_tooOld_returnsNull() {
+        PanelSliceCache.putSlice(URI, mSlice);
+
+        ShadowLooper.idleMainLooper(PanelSliceCache.MAX_SLICE_AGE_MS + 1, TimeUnit.MILLISECONDS);
+
+        assertThat(PanelSliceCache.getSlice(URI)).isNull();
+    }
+
+    @Test
+    public void getHeight_keptAfterSliceExpires() {
+        PanelSliceCache.putSlice(URI, mSlice);
+        PanelSliceCache.putHeight(URI, 120);
+
+        ShadowLooper.idleMainLooper(PanelSliceCache.MAX_SLICE_AGE_MS + 1, TimeUnit.MILLISECONDS);
+
+        assertThat(PanelSliceCache.getHeight(URI)).isEqualTo(120);
+    }
+
+    @Test
+    public void remove_forgetsSliceAndHeight() {
+        PanelSliceCache.putSlice(URI, mSlice);
+        PanelSliceCache.putHeight(URI, 120);
+
+        PanelSliceCache.remove(URI);
+
+        assertThat(PanelSliceCache.getSlice(URI)).isNull();
+        assertThat(PanelSliceCache.getHeight(URI)).isEqualTo(0);
+    }
+}
@@ -22,6 +22,8 @@ import android.accounts.Account;
 import android.annotation.UserIdInt;
 import android.content.ContentResolver;
 import android.content.SyncAdapterType;
+import android.content.SyncInfo;
+import android.content.SyncStatusInfo;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
@@ -31,7 +33,9 @@ import android.text.TextUtils;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Implements(ContentResolver.class)
@@ -41,6 +45,8 @@ public class ShadowContentResolver {
     private static Map<String, Integer> sSyncable = new HashMap<>();
     private static Map<String, Boolean> sSyncAutomatically = new HashMap<>();
     private static Map<Integer, Boolean> sMasterSyncAutomatically = new HashMap<>();
+    private static Map<String, SyncStatusInfo> sSyncStatus = new HashMap<>();
+    private static List<SyncInfo> sCurrentSyncs = new ArrayList<>();
 
     @Implementation
     protected static SyncAdapterType[] getSyncAdapterTypesAsUser(int userId) {
@@ -75,6 +81,17 @@ public class ShadowContentResolver {
         }
     }
 
+    @Implementation
+    protected static SyncStatusInfo getSyncStatusAsUser(Account account, String authority,
+            int userId) {
+        return sSyncStatus.get(authority);
+    }
+
+    @Implementation
+    protected static List<SyncInfo> getCurrentSyncsAsUser(int userId) {
+        return sCurrentSyncs;
+    }
+
     @Implementation
     protected static boolean getMasterSyncAutomaticallyAsUser(int userId) {
         return sMasterSyncAutomatically.getOrDefault(userId, true);
@@ -101,10 +118,20 @@ public class ShadowContentResolver {
         sMasterSyncAutomatically.put(userId, syncAutomatically);
     }
 
+    public static void setSyncStatus(String authority, SyncStatusInfo status) {
+        sSyncStatus.put(authority, status);
+    }
+
+    public static void setCurrentSyncs(List<SyncInfo> currentSyncs) {
+        sCurrentSyncs = currentSyncs;
+    }
+
     public static void reset() {
         sSyncable.clear();
         sSyncAutomatically.clear();
         sMasterSyncAutomatically.clear();
+        sSyncStatus.clear();
+        sCurrentSyncs = new ArrayList<>();
         sSyncAdapterTypes = new SyncAdapterType[0];
     }
 }
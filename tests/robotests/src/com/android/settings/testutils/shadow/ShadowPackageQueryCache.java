@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.testutils.shadow;
+
+import com.android.settings.applications.PackageQueryCache;
+
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+
+/** Drops the shared {@link PackageQueryCache} between tests, so that stubbed results don't leak. */
+@Implements(PackageQueryCache.class)
+public class ShadowPackageQueryCache {
+
+    @Resetter
+    public static void reset() {
+        PackageQueryCache.resetForTesting();
+    }
+}
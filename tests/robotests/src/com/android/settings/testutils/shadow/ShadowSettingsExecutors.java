@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.testutils.shadow;
+
+import com.android.settings.core.executor.SettingsExecutors;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the tasks of {@link SettingsExecutors} synchronously, like {@link ShadowThreadUtils} does
+ * for {@code ThreadUtils}.
+ */
+@Implements(SettingsExecutors.class)
+public class ShadowSettingsExecutors {
+
+    private static boolean sDeferTasks;
+    private static final List<Runnable> sTasks = new ArrayList<>();
+
+    @Resetter
+    public static void reset() {
+        sDeferTasks = false;
+        sTasks.clear();
+    }
+
+    @Implementation
+    protected static void dispatch(int pool, Runnable task) {
+        if (sDeferTasks) {
+            sTasks.add(task);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Keeps the tasks dispatched to the pools until {@link #runTasks()}, for tests of what happens
+     * while every pool thread is busy.
+     */
+    public static void setDeferTasks(boolean defer) {
+        sDeferTasks = defer;
+    }
+
+    /** Runs the tasks kept since {@link #setDeferTasks(boolean)}. */
+    public static void runTasks() {
+        final List<Runnable> tasks = new ArrayList<>(sTasks);
+        sTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+}
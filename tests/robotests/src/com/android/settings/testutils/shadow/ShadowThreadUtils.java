@@ -22,15 +22,22 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Implements(ThreadUtils.class)
 public class ShadowThreadUtils {
 
     private static boolean sIsMainThread = true;
     private static final String TAG = "ShadowThreadUtils";
+    private static boolean sDeferMainThreadTasks;
+    private static final List<Runnable> sMainThreadTasks = new ArrayList<>();
 
     @Resetter
     public static void reset() {
         sIsMainThread = true;
+        sDeferMainThreadTasks = false;
+        sMainThreadTasks.clear();
     }
 
     @Implementation
@@ -40,7 +47,11 @@ public class ShadowThreadUtils {
 
     @Implementation
     protected static void postOnMainThread(Runnable runnable) {
-        runnable.run();
+        if (sDeferMainThreadTasks) {
+            sMainThreadTasks.add(runnable);
+        } else {
+            runnable.run();
+        }
     }
 
     @Implementation
@@ -51,4 +62,19 @@ public class ShadowThreadUtils {
     public static void setIsMainThread(boolean isMainThread) {
         sIsMainThread = isMainThread;
     }
+
+    /**
+     * Keeps the tasks posted to the main thread until {@link #runMainThreadTasks()}, for tests of
+     * what happens before the current main thread message is done.
+     */
+    public static void setDeferMainThreadTasks(boolean defer) {
+        sDeferMainThreadTasks = defer;
+    }
+
+    /** Runs the main thread tasks kept since {@link #setDeferMainThreadTasks(boolean)}. */
+    public static void runMainThreadTasks() {
+        final List<Runnable> tasks = new ArrayList<>(sMainThreadTasks);
+        sMainThreadTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
 }
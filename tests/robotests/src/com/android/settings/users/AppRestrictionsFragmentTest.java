@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.PackageInfo;
+
+import com.android.settingslib.users.AppRestrictionsHelper.SelectableAppInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppRestrictionsFragmentTest {
+
+    private static final int USER_ID = 10;
+
+    private TestFragment mFragment;
+
+    @Before
+    public void setUp() {
+        mFragment = new TestFragment();
+    }
+
+    @Test
+    public void loadAppBatches_postsBatchesInOrder() {
+        final List<SelectableAppInfo> apps = createApps(45);
+
+        mFragment.loadAppBatches(0, apps, Collections.emptySet(), USER_ID);
+
+        assertThat(mFragment.mBatchSizes).containsExactly(20, 20, 5).inOrder();
+        assertThat(mFragment.mFirstBatches).containsExactly(true, false, false).inOrder();
+        assertThat(mFragment.mLastBatches).containsExactly(false, false, true).inOrder();
+        assertThat(mFragment.mPackages).hasSize(45);
+        assertThat(mFragment.mPackages.get(44)).isEqualTo("com.example.app44");
+    }
+
+    @Test
+    public void loadAppBatches_fetchesPackageInfoOfEveryApp() {
+        mFragment.loadAppBatches(0, createApps(3), Collections.emptySet(), USER_ID);
+
+        assertThat(mFragment.mPackageInfoRequests).isEqualTo(3);
+        assertThat(mFragment.mPackagesWithInfo).isEqualTo(3);
+    }
+
+    @Test
+    public void loadAppBatches_noApps_postsOneLastBatch() {
+        mFragment.loadAppBatches(0, new ArrayList<>(), Collections.emptySet(), USER_ID);
+
+        assertThat(mFragment.mBatchSizes).containsExactly(0);
+        assertThat(mFragment.mFirstBatches).containsExactly(true);
+        assertThat(mFragment.mLastBatches).containsExactly(true);
+    }
+
+    @Test
+    public void loadAppBatches_stoppedWhileLoading_dropsRemainingBatches() {
+        mFragment.mStopAfterBatches = 1;
+
+        mFragment.loadAppBatches(0, createApps(45), Collections.emptySet(), USER_ID);
+
+        assertThat(mFragment.mBatchSizes).containsExactly(20);
+        assertThat(mFragment.mPackageInfoRequests).isEqualTo(20);
+    }
+
+    @Test
+    public void loadAppBatches_fragmentDestroyed_postsNothing() {
+        mFragment.mTaskScope.cancel();
+
+        mFragment.loadAppBatches(0, createApps(3), Collections.emptySet(), USER_ID);
+
+        assertThat(mFragment.mBatchSizes).isEmpty();
+        assertThat(mFragment.mPackageInfoRequests).isEqualTo(0);
+    }
+
+    private static List<SelectableAppInfo> createApps(int count) {
+        final List<SelectableAppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final SelectableAppInfo app = new SelectableAppInfo();
+            app.packageName = "com.example.app" + i;
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    public static class TestFragment extends AppRestrictionsFragment {
+        final List<Integer> mBatchSizes = new ArrayList<>();
+        final List<Boolean> mFirstBatches = new ArrayList<>();
+        final List<Boolean> mLastBatches = new ArrayList<>();
+        final List<String> mPackages = new ArrayList<>();
+        int mPackageInfoRequests;
+        int mPackagesWithInfo;
+        int mStopAfterBatches = -1;
+
+        @Override
+        PackageInfo getPackageInfo(SelectableAppInfo app, int userId) {
+            mPackageInfoRequests++;
+            final PackageInfo packageInfo = new PackageInfo();
+            packageInfo.packageName = app.packageName;
+            return packageInfo;
+        }
+
+        @Override
+        void populateApps(List<AppInfoHolder> batch, Set<String> receiverPackages,
+                boolean firstBatch, boolean lastBatch) {
+            mBatchSizes.add(batch.size());
+            mFirstBatches.add(firstBatch);
+            mLastBatches.add(lastBatch);
+            for (AppInfoHolder holder : batch) {
+                mPackages.add(holder.app.packageName);
+                if (holder.packageInfo != null) {
+                    mPackagesWithInfo++;
+                }
+            }
+            if (mBatchSizes.size() == mStopAfterBatches) {
+                // Like a pause while the next batch is being fetched.
+                stopLoadingApps();
+            }
+        }
+    }
+}
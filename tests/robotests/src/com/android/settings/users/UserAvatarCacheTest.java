@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.UserInfo;
+import android.graphics.Bitmap;
+import android.os.UserManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserAvatarCacheTest {
+
+    private static final int USER_ID = 10;
+
+    @Mock
+    private UserManager mUserManager;
+
+    private UserAvatarCache mCache;
+    private UserInfo mUser;
+    private Bitmap mIcon;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mCache = UserAvatarCache.getInstance(RuntimeEnvironment.application);
+        mUser = new UserInfo(USER_ID, "user", /* flags= */ 0);
+        mIcon = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        when(mUserManager.getUserIcon(USER_ID)).thenReturn(mIcon);
+    }
+
+    @After
+    public void tearDown() {
+        UserAvatarCache.resetForTesting();
+    }
+
+    @Test
+    public void loadIcons_userAlreadyLoading_waitsForThatLoad() {
+        final AtomicInteger firstLoaded = new AtomicInteger();
+        final AtomicInteger secondLoaded = new AtomicInteger();
+        final AtomicInteger secondLoadedWhileLoading = new AtomicInteger(-1);
+        when(mUserManager.getUserIcon(USER_ID)).thenAnswer(invocation -> {
+            // Tasks run synchronously, so this lands while the first load is in flight.
+            mCache.loadIcons(mUserManager, List.of(mUser), userId -> mIcon,
+                    secondLoaded::incrementAndGet);
+            secondLoadedWhileLoading.set(secondLoaded.get());
+            return mIcon;
+        });
+
+        mCache.loadIcons(mUserManager, List.of(mUser), userId -> mIcon,
+                firstLoaded::incrementAndGet);
+
+        assertThat(secondLoadedWhileLoading.get()).isEqualTo(0);
+        assertThat(firstLoaded.get()).isEqualTo(1);
+        assertThat(secondLoaded.get()).isEqualTo(1);
+        verify(mUserManager, times(1)).getUserIcon(USER_ID);
+        assertThat(mCache.getCachedIcon(mUser)).isSameInstanceAs(mIcon);
+    }
+
+    @Test
+    public void loadIcons_loadFails_cachesFallbackAndRunsCallback() {
+        final AtomicInteger loaded = new AtomicInteger();
+        final Bitmap fallbackIcon = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        when(mUserManager.getUserIcon(USER_ID)).thenThrow(new RuntimeException());
+
+        mCache.loadIcons(mUserManager, List.of(mUser), userId -> fallbackIcon,
+                loaded::incrementAndGet);
+
+        assertThat(loaded.get()).isEqualTo(1);
+        assertThat(mCache.getCachedIcon(mUser)).isSameInstanceAs(fallbackIcon);
+    }
+}
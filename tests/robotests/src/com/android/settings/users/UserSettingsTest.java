@@ -142,6 +142,7 @@ public class UserSettingsTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        UserAvatarCache.resetForTesting();
         mActivity = spy(ActivityController.of(new FragmentActivity()).get());
         mContext = spy(RuntimeEnvironment.application);
         mUserCapabilities = UserCapabilities.create(mContext);
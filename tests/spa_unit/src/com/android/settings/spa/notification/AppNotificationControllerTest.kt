@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.spa.notification
+
+import android.app.INotificationManager
+import android.app.usage.IUsageStatsManager
+import android.content.Context
+import android.content.pm.ApplicationInfo
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.android.settingslib.spaprivileged.model.app.IPackageManagers
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.test.runTest
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.mockito.junit.MockitoJUnit
+import org.mockito.junit.MockitoRule
+import org.mockito.Mockito.`when` as whenever
+
+@RunWith(AndroidJUnit4::class)
+class AppNotificationControllerTest {
+    @get:Rule
+    val mockito: MockitoRule = MockitoJUnit.rule()
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+
+    @Mock
+    private lateinit var packageManagers: IPackageManagers
+
+    @Mock
+    private lateinit var usageStatsManager: IUsageStatsManager
+
+    @Mock
+    private lateinit var notificationManager: INotificationManager
+
+    private lateinit var controller: AppNotificationController
+
+    @Before
+    fun setUp() {
+        val repository = AppNotificationRepository(
+            context,
+            packageManagers,
+            usageStatsManager,
+            notificationManager,
+        )
+        controller = AppNotificationController(repository, APP)
+        whenever(notificationManager.areNotificationsEnabledForPackage(APP.packageName, APP.uid))
+            .thenReturn(true)
+    }
+
+    @Test
+    fun getEnabled_readTwice_queriesOnce() {
+        assertThat(controller.getEnabled()).isTrue()
+        assertThat(controller.getEnabled()).isTrue()
+
+        verify(notificationManager, times(1))
+            .areNotificationsEnabledForPackage(APP.packageName, APP.uid)
+    }
+
+    @Test
+    fun getEnabled_afterInvalidate_queriesAgain() {
+        controller.getEnabled()
+        whenever(notificationManager.areNotificationsEnabledForPackage(APP.packageName, APP.uid))
+            .thenReturn(false)
+
+        controller.invalidate()
+
+        assertThat(controller.getEnabled()).isFalse()
+    }
+
+    @Test
+    fun setEnabled_updatesKnownState() {
+        controller.getEnabled()
+
+        controller.setEnabled(false)
+
+        assertThat(controller.getEnabled()).isFalse()
+        verify(notificationManager, times(1))
+            .areNotificationsEnabledForPackage(APP.packageName, APP.uid)
+    }
+
+    @Test
+    fun isEnabledFlow_stateKnown_doesNotQueryAgain() = runTest {
+        controller.getEnabled()
+
+        assertThat(controller.isEnabledFlow.first()).isTrue()
+        assertThat(controller.isEnabledFlow.first()).isTrue()
+
+        verify(notificationManager, times(1))
+            .areNotificationsEnabledForPackage(APP.packageName, APP.uid)
+    }
+
+    @Test
+    fun isEnabledFlow_afterInvalidate_readsStateChangedElsewhere() = runTest {
+        controller.getEnabled()
+        whenever(notificationManager.areNotificationsEnabledForPackage(APP.packageName, APP.uid))
+            .thenReturn(false)
+
+        controller.invalidate()
+
+        assertThat(controller.isEnabledFlow.first()).isFalse()
+    }
+
+    private companion object {
+        const val PACKAGE_NAME = "package.name"
+        val APP = ApplicationInfo().apply {
+            packageName = PACKAGE_NAME
+            uid = 123
+        }
+    }
+}
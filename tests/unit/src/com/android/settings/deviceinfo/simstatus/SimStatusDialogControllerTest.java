@@ -36,7 +36,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -44,7 +46,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
+import android.content.Intent;
 import android.os.PersistableBundle;
+import android.os.SystemClock;
 import android.telephony.CarrierConfigManager;
 import android.telephony.CellSignalStrength;
 import android.telephony.ServiceState;
@@ -60,6 +64,7 @@ import androidx.lifecycle.LifecycleOwner;
 import androidx.test.annotation.UiThreadTest;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.android.settings.R;
 import com.android.settings.testutils.ResourcesUtils;
@@ -155,6 +160,7 @@ public class SimStatusDialogControllerTest {
                 mUpdatePhoneNumberCount.incrementAndGet();
             }
         };
+        mController.setExecutorsForTesting(Runnable::run, Runnable::run);
         // CellSignalStrength setup
         doReturn(0).when(mCellSignalStrengthCdma).getDbm();
         doReturn(0).when(mCellSignalStrengthCdma).getAsuLevel();
@@ -451,6 +457,132 @@ public class SimStatusDialogControllerTest {
         mController.initialize();
     }
 
+    @Test
+    public void initialize_backgroundReadPending_fillsReadFieldsOnceRead() {
+        final List<Runnable> backgroundTasks = new ArrayList<>();
+        mController.setExecutorsForTesting(backgroundTasks::add, Runnable::run);
+        final CharSequence carrierName = "foobar";
+        doReturn(carrierName).when(mSubscriptionInfo).getCarrierName();
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        final String inServiceText = ResourcesUtils.getResourcesString(
+                mContext, "radioInfo_service_in");
+
+        mController.initialize();
+
+        verify(mDialog).setText(NETWORK_PROVIDER_VALUE_ID, carrierName);
+        verify(mDialog, never()).setText(SERVICE_STATE_VALUE_ID, inServiceText);
+        verify(mTelephonyManager, never()).getServiceState();
+
+        runTasks(backgroundTasks);
+
+        verify(mDialog).setText(SERVICE_STATE_VALUE_ID, inServiceText);
+    }
+
+    @Test
+    public void onSubscriptionsChanged_formerReadPending_dropsItsResults() {
+        final List<Runnable> backgroundTasks = new ArrayList<>();
+        mController.setExecutorsForTesting(backgroundTasks::add, Runnable::run);
+        final ServiceState inServiceState = mock(ServiceState.class);
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_POWER_OFF);
+        when(inServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        // The former read gets the former state, the latter one the new state.
+        doReturn(mServiceState, inServiceState).when(mTelephonyManager).getServiceState();
+        mController.initialize();
+
+        mController.mOnSubscriptionsChangedListener.onSubscriptionsChanged();
+        runTasks(backgroundTasks);
+
+        verify(mDialog, never()).setText(SERVICE_STATE_VALUE_ID,
+                ResourcesUtils.getResourcesString(mContext, "radioInfo_service_off"));
+        verify(mDialog).setText(SERVICE_STATE_VALUE_ID,
+                ResourcesUtils.getResourcesString(mContext, "radioInfo_service_in"));
+    }
+
+    @Test
+    public void initialize_callbackReportsStateDuringRead_keepsReportedState() {
+        final List<Runnable> backgroundTasks = new ArrayList<>();
+        mController.setExecutorsForTesting(backgroundTasks::add, Runnable::run);
+        final ServiceState inServiceState = mock(ServiceState.class);
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_POWER_OFF);
+        when(inServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        mController.initialize();
+
+        mController.mTelephonyCallback.onServiceStateChanged(inServiceState);
+        runTasks(backgroundTasks);
+
+        verify(mDialog, never()).setText(SERVICE_STATE_VALUE_ID,
+                ResourcesUtils.getResourcesString(mContext, "radioInfo_service_off"));
+    }
+
+    @Test
+    public void onSignalStrengthsChanged_burst_showsLatestOnly() {
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        mController.initialize();
+        clearInvocations(mDialog);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            mController.mTelephonyCallback.onSignalStrengthsChanged(newSignalStrength(40));
+            mController.mTelephonyCallback.onSignalStrengthsChanged(newSignalStrength(50));
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        verify(mDialog, never()).setText(SIGNAL_STRENGTH_VALUE_ID, getSignalStrengthText(40));
+        verify(mDialog).setText(SIGNAL_STRENGTH_VALUE_ID, getSignalStrengthText(50));
+    }
+
+    @Test
+    public void onSignalStrengthsChanged_soonAfterUpdate_waitsForInterval() {
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        mController.initialize();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                mController.mTelephonyCallback.onSignalStrengthsChanged(newSignalStrength(40)));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                mController.mTelephonyCallback.onSignalStrengthsChanged(newSignalStrength(50)));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        verify(mDialog, never()).setText(SIGNAL_STRENGTH_VALUE_ID, getSignalStrengthText(50));
+
+        SystemClock.sleep(SimStatusDialogController.SIGNAL_STRENGTH_UPDATE_INTERVAL_MS);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        verify(mDialog).setText(SIGNAL_STRENGTH_VALUE_ID, getSignalStrengthText(50));
+    }
+
+    @Test
+    public void carrierConfigChanged_readsConfigAgain() {
+        when(mServiceState.getState()).thenReturn(ServiceState.STATE_IN_SERVICE);
+        mController.initialize();
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(anyInt());
+
+        mController.mCarrierConfigReceiver.onReceive(mContext,
+                new Intent(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED).putExtra(
+                        CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
+                        mSubscriptionInfo.getSubscriptionId()));
+        mController.mTelephonyCallback.onServiceStateChanged(mServiceState);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(anyInt());
+    }
+
+    private static void runTasks(List<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private SignalStrength newSignalStrength(int level) {
+        final CellSignalStrength cellSignalStrength = mock(CellSignalStrength.class);
+        doReturn(level).when(cellSignalStrength).getDbm();
+        doReturn(level).when(cellSignalStrength).getAsuLevel();
+        final SignalStrength signalStrength = mock(SignalStrength.class);
+        doReturn(Collections.singletonList(cellSignalStrength)).when(signalStrength)
+                .getCellSignalStrengths();
+        return signalStrength;
+    }
+
+    private String getSignalStrengthText(int level) {
+        return ResourcesUtils.getResourcesString(mContext, "sim_signal_strength", level, level);
+    }
+
     private void setupCellSignalStrength_lteWcdma(int lteDbm, int lteAsu, int wcdmaDbm,
             int wcdmaAsu) {
         doReturn(lteDbm).when(mCellSignalStrengthLte).getDbm();
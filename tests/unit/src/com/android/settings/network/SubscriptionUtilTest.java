@@ -24,7 +24,10 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -40,6 +43,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.android.settings.R;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -78,6 +82,11 @@ public class SubscriptionUtilTest {
         when(mTelMgr.getUiccSlotsInfo()).thenReturn(null);
     }
 
+    @After
+    public void tearDown() {
+        SubscriptionSnapshot.resetForTesting();
+    }
+
     @Ignore
     @Test
     public void getAvailableSubscriptions_nullInfoFromSubscriptionManager_nonNullResult() {
@@ -115,6 +124,51 @@ public class SubscriptionUtilTest {
         assertThat(subs).hasSize(2);
     }
 
+    @Test
+    public void getAvailableSubscriptions_notTracked_queriesEveryTime() {
+        when(mSubMgr.getAvailableSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mock(SubscriptionInfo.class)));
+
+        SubscriptionUtil.getAvailableSubscriptions(mContext);
+        SubscriptionUtil.getAvailableSubscriptions(mContext);
+
+        verify(mSubMgr, times(2)).getAvailableSubscriptionInfoList();
+    }
+
+    @Test
+    public void getAvailableSubscriptions_tracked_queriesOncePerChange() {
+        when(mSubMgr.getAvailableSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mock(SubscriptionInfo.class)));
+        SubscriptionSnapshot.startTracking(mContext);
+
+        SubscriptionUtil.getAvailableSubscriptions(mContext);
+        final List<SubscriptionInfo> subs = SubscriptionUtil.getAvailableSubscriptions(mContext);
+        verify(mSubMgr, times(1)).getAvailableSubscriptionInfoList();
+        assertThat(subs).hasSize(1);
+
+        SubscriptionSnapshot.invalidate();
+        SubscriptionUtil.getAvailableSubscriptions(mContext);
+        verify(mSubMgr, times(2)).getAvailableSubscriptionInfoList();
+    }
+
+    @Test
+    public void getAvailableSubscriptions_trackedFromOtherContext_sharesSnapshot() {
+        when(mSubMgr.getAvailableSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mock(SubscriptionInfo.class)));
+        final SubscriptionManager otherSubMgr = mock(SubscriptionManager.class);
+        final Context otherContext = spy(ApplicationProvider.getApplicationContext());
+        when(otherContext.getSystemService(SubscriptionManager.class)).thenReturn(otherSubMgr);
+        SubscriptionSnapshot.startTracking(mContext);
+
+        SubscriptionUtil.getAvailableSubscriptions(mContext);
+        final List<SubscriptionInfo> subs =
+                SubscriptionUtil.getAvailableSubscriptions(otherContext);
+
+        assertThat(subs).hasSize(1);
+        verify(mSubMgr, times(1)).getAvailableSubscriptionInfoList();
+        verify(otherSubMgr, never()).getAvailableSubscriptionInfoList();
+    }
+
     @Test
     public void getActiveSubscriptions_nullInfoFromSubscriptionManager_nonNullResult() {
         when(mSubMgr.getActiveSubscriptionInfoList()).thenReturn(null);
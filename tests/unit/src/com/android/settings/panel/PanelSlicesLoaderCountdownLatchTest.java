@@ -89,4 +89,34 @@ public class PanelSlicesLoaderCountdownLatchTest {
         // Verify the second call returns false without external state change
         assertThat(mSliceCountdownLatch.isPanelReadyToLoad()).isFalse();
     }
+
+    @Test
+    public void isPanelReadyToLoad_renderableSlice_returnsTrueBeforeAllSlicesLoaded() {
+        mSliceCountdownLatch.markSliceLoaded(URIS[0]);
+
+        assertThat(mSliceCountdownLatch.isPanelReadyToLoad(true /* hasRenderableSlice */))
+                .isTrue();
+    }
+
+    @Test
+    public void isPanelReadyToLoad_noRenderableSlice_waitsForAllSlices() {
+        mSliceCountdownLatch.markSliceLoaded(URIS[0]);
+
+        assertThat(mSliceCountdownLatch.isPanelReadyToLoad(false /* hasRenderableSlice */))
+                .isFalse();
+    }
+
+    @Test
+    public void isPanelReadyToLoad_renderableSlice_onlyReturnsTrueOnce() {
+        assertThat(mSliceCountdownLatch.isPanelReadyToLoad(true /* hasRenderableSlice */))
+                .isTrue();
+
+        for (int i = 0; i < URIS.length; i++) {
+            mSliceCountdownLatch.markSliceLoaded(URIS[i]);
+        }
+
+        assertThat(mSliceCountdownLatch.isPanelReadyToLoad(true /* hasRenderableSlice */))
+                .isFalse();
+        assertThat(mSliceCountdownLatch.isPanelReadyToLoad()).isFalse();
+    }
 }